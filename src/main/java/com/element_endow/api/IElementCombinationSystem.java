@@ -11,6 +11,39 @@ public interface IElementCombinationSystem {
      */
     void checkAndApplyCombinations(LivingEntity entity);
 
+    /**
+     * 将实体加入组合重检队列，由服务端tick按预算处理
+     */
+    default void scheduleCombinationCheck(LivingEntity entity) {
+        checkAndApplyCombinations(entity);
+    }
+
+    /**
+     * 按每tick预算处理排队中的组合重检
+     */
+    default void processScheduledChecks() {
+    }
+
+    /**
+     * 应用已完成的异步组合求值结果（在tick开始时调用）
+     */
+    default void applyCompletedChecks() {
+    }
+
+    /**
+     * 实体轮询组合的间隔（tick）
+     */
+    default int getPollInterval() {
+        return 40;
+    }
+
+    /**
+     * 获取等待重检的实体数
+     */
+    default int getPendingCheckCount() {
+        return 0;
+    }
+
     /**
      * 处理攻击时的组合触发效果
      */
@@ -55,6 +88,7 @@ public interface IElementCombinationSystem {
         public final java.util.List<ReactionResult.AttributeModifierApplication> selfAttributeModifiers = new java.util.ArrayList<>();
         public final java.util.List<net.minecraft.world.effect.MobEffectInstance> targetEffects = new java.util.ArrayList<>();
         public final java.util.List<net.minecraft.world.effect.MobEffectInstance> selfEffects = new java.util.ArrayList<>();
+        public final java.util.List<ReactionResult.DotApplication> targetDots = new java.util.ArrayList<>();
 
         public CombinationTriggerResult() {}
     }
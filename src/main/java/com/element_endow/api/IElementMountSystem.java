@@ -15,6 +15,24 @@ public interface IElementMountSystem {
      */
     void applyAdvancedMount(LivingEntity target, AdvancedMountData mountData);
 
+    /**
+     * 应用挂载效果并返回是否实际挂载（未命中概率、元素未注册或被堆叠规则拒绝时为false）
+     * 默认实现无法判断，总是返回true
+     */
+    default boolean tryApplyMount(LivingEntity target, String elementId, double amount, int duration,
+                                  double probability, String stackBehavior) {
+        applyMount(target, elementId, amount, duration, probability, stackBehavior);
+        return true;
+    }
+
+    /**
+     * 应用高级挂载效果并返回是否实际挂载，默认实现总是返回true
+     */
+    default boolean tryApplyAdvancedMount(LivingEntity target, AdvancedMountData mountData) {
+        applyAdvancedMount(target, mountData);
+        return true;
+    }
+
     /**
      * 移除挂载效果
      */
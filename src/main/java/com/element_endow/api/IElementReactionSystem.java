@@ -3,6 +3,8 @@ package com.element_endow.api;
 import com.element_endow.data.ReactionLoader;
 import net.minecraft.world.entity.LivingEntity;
 
+import java.util.List;
+
 public interface IElementReactionSystem {
 
     /**
@@ -10,6 +12,20 @@ public interface IElementReactionSystem {
      */
     ReactionResult processAttackReaction(LivingEntity attacker, LivingEntity target, double baseDamage);
 
+    /**
+     * 批量处理同一攻击者对多个目标的攻击反应
+     * @param damages 按目标顺序的基础伤害，长度不小于目标数
+     * @return 按目标顺序的结果，缓冲区在下一次批量调用时复用
+     */
+    default ReactionBatchResult processAttackReactions(LivingEntity attacker, List<LivingEntity> targets, double[] damages) {
+        ReactionBatchResult batch = new ReactionBatchResult();
+        batch.prepare(targets.size());
+        for (int i = 0; i < targets.size(); i++) {
+            batch.set(i, processAttackReaction(attacker, targets.get(i), damages[i]));
+        }
+        return batch;
+    }
+
     /**
      * 处理防御时的元素反应
      */
@@ -23,6 +23,35 @@ public interface IElementSystem {
     double getElementValue(LivingEntity entity, String elementId);
     void setElementValue(LivingEntity entity, String elementId, double value);
     boolean hasElement(LivingEntity entity, String elementId);
+
+    /**
+     * 批量消耗元素（元素ID -> 消耗量），元素值不会低于下限
+     */
+    default void consumeElements(LivingEntity entity, java.util.Map<String, Double> consumption) {
+        for (java.util.Map.Entry<String, Double> entry : consumption.entrySet()) {
+            setElementValue(entity, entry.getKey(), getElementValue(entity, entry.getKey()) - entry.getValue());
+        }
+    }
+
+    /**
+     * 获取元素序号（按注册顺序分配），未注册返回-1
+     */
+    int getElementOrdinal(String elementId);
+
+    /**
+     * 通过序号获取元素ID
+     */
+    String getElementByOrdinal(int ordinal);
+
+    /**
+     * 已注册元素数量，即序号上限
+     */
+    int getElementCount();
+
+    /**
+     * 按序号读取实体所有已启用元素的值，未启用元素为0
+     */
+    double[] getElementVector(LivingEntity entity);
     DeferredRegister<Attribute> getAttributeRegister();
     Optional<Attribute> getElementAttribute(String elementId);
 
@@ -69,6 +98,13 @@ public interface IElementSystem {
     boolean applyTimedAttributeModifier(LivingEntity entity, ResourceLocation attributeId,
                                         AttributeModifier modifier, int durationTicks);
 
+    /**
+     * 按差异应用有时效的属性修饰符
+     * 数值未变的修饰符只延长时效，不触碰属性实例；剩余时效超过一半时不做任何处理
+     */
+    ModifierUpdate refreshTimedAttributeModifier(LivingEntity entity, ResourceLocation attributeId,
+                                                 AttributeModifier modifier, int durationTicks);
+
     /**
      * 检查并移除过期的属性修饰符
      */
@@ -80,6 +116,18 @@ public interface IElementSystem {
     java.util.Map<String, TimedModifierInfo> getActiveModifierInfo(LivingEntity entity);
 
 
+    //修饰符差异应用结果
+    enum ModifierUpdate {
+        //修饰符新增或数值变化，已写入属性实例
+        APPLIED,
+        //数值未变，只延长了时效
+        REFRESHED,
+        //数值未变且时效充足，未做处理
+        UNCHANGED,
+        //属性不存在或应用失败
+        FAILED
+    }
+
     //时效修饰符信息类
     class TimedModifierInfo {
         public final ResourceLocation attributeId;
@@ -0,0 +1,47 @@
+package com.element_endow.api;
+
+/**
+ * 批量反应结果缓冲区
+ * 按目标顺序保存结果，结果对象在下一次批量调用时被复用，调用方不应长期持有
+ */
+public class ReactionBatchResult {
+    private ReactionResult[] results = new ReactionResult[0];
+    private int size;
+
+    /**
+     * 准备指定数量的空结果，只在容量不足时扩容
+     */
+    public void prepare(int size) {
+        if (results.length < size) {
+            ReactionResult[] grown = new ReactionResult[Math.max(size, results.length * 2)];
+            System.arraycopy(results, 0, grown, 0, results.length);
+            results = grown;
+        }
+        for (int i = 0; i < size; i++) {
+            if (results[i] == null) {
+                results[i] = new ReactionResult();
+            } else {
+                results[i].reset();
+            }
+        }
+        this.size = size;
+    }
+
+    /**
+     * 直接替换某个位置的结果
+     */
+    void set(int index, ReactionResult result) {
+        results[index] = result;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public ReactionResult get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for batch size " + size);
+        }
+        return results[index];
+    }
+}
\ No newline at end of file
@@ -5,7 +5,9 @@ import net.minecraft.world.entity.ai.attributes.AttributeModifier;
 import net.minecraft.resources.ResourceLocation;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 public class ReactionResult {
@@ -17,6 +19,13 @@ public class ReactionResult {
     public final List<MobEffectInstance> selfEffects;
     public final List<MountApplication> mountApplications;
     public final List<IElementMountSystem.AdvancedMountData> advancedMountApplications;
+    //扩散到目标周围实体的范围效果
+    public final List<AoeApplication> aoeApplications;
+    //施加到目标的持续伤害
+    public final List<DotApplication> targetDots;
+    //本次命中消耗的元素量（元素ID -> 消耗量），由调用方一次性批量扣除
+    public final Map<String, Double> targetConsumption;
+    public final Map<String, Double> selfConsumption;
 
     //属性修饰符
     public final List<AttributeModifierApplication> targetAttributeModifiers;
@@ -31,10 +40,46 @@ public class ReactionResult {
         this.selfEffects = new ArrayList<>();
         this.mountApplications = new ArrayList<>();
         this.advancedMountApplications = new ArrayList<>();
+        this.aoeApplications = new ArrayList<>();
+        this.targetDots = new ArrayList<>();
+        this.targetConsumption = new HashMap<>();
+        this.selfConsumption = new HashMap<>();
         this.targetAttributeModifiers = new ArrayList<>();
         this.selfAttributeModifiers = new ArrayList<>();
     }
 
+    /**
+     * 恢复初始状态，供批量处理复用
+     */
+    public void reset() {
+        this.damageMultiplier = 1.0;
+        this.defenseMultiplier = 1.0;
+        this.extraDamage = 0.0;
+        this.damageReduction = 0.0;
+        this.targetEffects.clear();
+        this.selfEffects.clear();
+        this.mountApplications.clear();
+        this.advancedMountApplications.clear();
+        this.aoeApplications.clear();
+        this.targetDots.clear();
+        this.targetConsumption.clear();
+        this.selfConsumption.clear();
+        this.targetAttributeModifiers.clear();
+        this.selfAttributeModifiers.clear();
+    }
+
+    /**
+     * 累加元素消耗
+     */
+    public static void addConsumption(Map<String, Double> consumption, Map<String, Double> amounts) {
+        if (amounts == null) {
+            return;
+        }
+        for (Map.Entry<String, Double> entry : amounts.entrySet()) {
+            consumption.merge(entry.getKey(), entry.getValue(), Double::sum);
+        }
+    }
+
     public static class MountApplication {
         public final String elementId;
         public final double amount;
@@ -49,6 +94,43 @@ public class ReactionResult {
         }
     }
 
+    //持续伤害应用类
+    public static class DotApplication {
+        public final String id;//同ID的DoT在同一目标上合并
+        public final double damage;//每跳基础伤害
+        public final int interval;//跳伤间隔（tick）
+        public final int duration;//持续时间（tick）
+        public final String scalingElement;//伤害加成参考的施加者元素
+        public final double scaling;//每点元素值增加的每跳伤害
+
+        public DotApplication(String id, double damage, int interval, int duration, String scalingElement, double scaling) {
+            this.id = id;
+            this.damage = damage;
+            this.interval = interval;
+            this.duration = duration;
+            this.scalingElement = scalingElement;
+            this.scaling = scaling;
+        }
+    }
+
+    //范围效果应用类
+    public static class AoeApplication {
+        public final double radius;
+        public final int maxTargets;
+        public final List<String> elementFilter;//范围内实体需持有其中任一元素，为空时不过滤
+        public final List<MobEffectInstance> effects;
+        public final MountApplication mount;
+
+        public AoeApplication(double radius, int maxTargets, List<String> elementFilter,
+                              List<MobEffectInstance> effects, MountApplication mount) {
+            this.radius = radius;
+            this.maxTargets = maxTargets;
+            this.elementFilter = elementFilter;
+            this.effects = effects;
+            this.mount = mount;
+        }
+    }
+
     //属性修饰符应用类
     public static class AttributeModifierApplication {
         public final ResourceLocation attributeId;
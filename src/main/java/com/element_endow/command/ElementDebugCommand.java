@@ -1,10 +1,17 @@
 package com.element_endow.command;
 
 import com.element_endow.api.ElementSystemAPI;
+import com.element_endow.core.ElementCombinationSystem;
+import com.element_endow.core.ElementReactionSystem;
+import com.element_endow.core.ElementSystemImpl;
+import com.element_endow.data.ElementDataManager;
+import com.element_endow.event.EntitySpawnHandler;
 import com.mojang.brigadier.Command;
+import com.mojang.brigadier.arguments.StringArgumentType;
 import com.mojang.brigadier.builder.LiteralArgumentBuilder;
 import net.minecraft.commands.CommandSourceStack;
 import net.minecraft.commands.Commands;
+import net.minecraft.commands.SharedSuggestionProvider;
 import net.minecraft.commands.arguments.EntityArgument;
 import net.minecraft.network.chat.Component;
 import net.minecraft.world.entity.Entity;
@@ -16,9 +23,20 @@ public class ElementDebugCommand {
         return Commands.literal("elementdebug")
                 .requires(cs -> cs.hasPermission(2))
                 .then(Commands.literal("reload")
-                        .executes(ctx -> reloadData(ctx.getSource())))
+                        .executes(ctx -> reloadData(ctx.getSource()))
+                        .then(Commands.argument("rule", StringArgumentType.greedyString())
+                                .suggests((ctx, builder) -> SharedSuggestionProvider.suggest(
+                                        ElementDataManager.getKnownRuleIds(), builder))
+                                .executes(ctx -> reloadRule(ctx.getSource(), StringArgumentType.getString(ctx, "rule")))))
+                .then(Commands.literal("reload-dir")
+                        .then(Commands.argument("type", StringArgumentType.word())
+                                .suggests((ctx, builder) -> SharedSuggestionProvider.suggest(
+                                        ElementDataManager.RULE_DIRECTORIES, builder))
+                                .executes(ctx -> reloadDirectory(ctx.getSource(), StringArgumentType.getString(ctx, "type")))))
                 .then(Commands.literal("checkcombinations")
                         .executes(ctx -> checkCombinations(ctx.getSource())))
+                .then(Commands.literal("stats")
+                        .executes(ctx -> showStats(ctx.getSource())))
                 .then(Commands.literal("forcecheck")
                 .then(Commands.literal("listcombinations")
                         .executes(ctx -> listCombinations(ctx.getSource()))));
@@ -36,6 +54,45 @@ public class ElementDebugCommand {
         }
     }
 
+    private static int reloadRule(CommandSourceStack source, String ruleId) {
+        try {
+            var result = ElementDataManager.reloadRule(source.getServer().getResourceManager(), ruleId);
+            if (result == null) {
+                source.sendFailure(Component.literal("Unknown rule: " + ruleId));
+                return 0;
+            }
+            sendReloadResult(source, result);
+            return Command.SINGLE_SUCCESS;
+        } catch (Exception e) {
+            source.sendFailure(Component.literal("Failed to reload rule: " + e.getMessage()));
+            return 0;
+        }
+    }
+
+    private static int reloadDirectory(CommandSourceStack source, String directory) {
+        try {
+            var result = ElementDataManager.reloadDirectory(source.getServer().getResourceManager(), directory);
+            if (result == null) {
+                source.sendFailure(Component.literal("Unknown rule type: " + directory
+                        + ", expected one of " + ElementDataManager.RULE_DIRECTORIES));
+                return 0;
+            }
+            sendReloadResult(source, result);
+            return Command.SINGLE_SUCCESS;
+        } catch (Exception e) {
+            source.sendFailure(Component.literal("Failed to reload rules: " + e.getMessage()));
+            return 0;
+        }
+    }
+
+    private static void sendReloadResult(CommandSourceStack source, ElementDataManager.PartialReload result) {
+        var scan = result.scan;
+        String target = result.fileId != null ? result.directory + "/" + result.fileId : result.directory;
+        source.sendSuccess(() -> Component.literal(String.format(
+                "Reloaded %s: %d unchanged, %d changed, %d added, %d removed, %d errors (generation %d)",
+                target, scan.kept, scan.changed, scan.added, scan.dropped, scan.errorCount, result.generation)), true);
+    }
+
     private static int checkCombinations(CommandSourceStack source) {
         if (source.getEntity() instanceof Player player) {
             try {
@@ -54,6 +111,71 @@ public class ElementDebugCommand {
         return 0;
     }
 
+    private static int showStats(CommandSourceStack source) {
+        try {
+            var combinationSystem = ElementSystemAPI.getElementSystem().getCombinationSystem();
+            if (combinationSystem instanceof ElementCombinationSystem system) {
+                var stats = system.getSchedulerStats();
+                source.sendSuccess(() -> Component.literal(String.format(
+                        "Combination checks: backlog=%d, peak=%d, last tick=%d, total=%d",
+                        stats.backlog, stats.peakBacklog, stats.lastProcessed, stats.totalProcessed)), false);
+
+                var modifierStats = system.getModifierStats();
+                source.sendSuccess(() -> Component.literal(String.format(
+                        "Combination modifiers: applied=%d, refreshed=%d, unchanged=%d",
+                        modifierStats.applications, modifierStats.refreshes, modifierStats.noops)), false);
+
+                var cacheStats = system.getCacheStats();
+                source.sendSuccess(() -> Component.literal(String.format(
+                        "Combination cache: %d entities, %d carried over reload",
+                        cacheStats.cachedEntities, cacheStats.carriedEntries)), false);
+            } else {
+                source.sendSuccess(() -> Component.literal("Combination checks: backlog="
+                        + combinationSystem.getPendingCheckCount()), false);
+            }
+
+            var reactionSystem = ElementSystemAPI.getElementSystem().getReactionSystem();
+            if (reactionSystem instanceof ElementReactionSystem system) {
+                var cacheStats = system.getOutcomeCacheStats();
+                source.sendSuccess(() -> Component.literal(String.format(
+                        "Reaction outcome cache: %d/%d entries, hits=%d, misses=%d, carried over reload=%d, hit rate=%.1f%%",
+                        cacheStats.size, cacheStats.maxSize, cacheStats.hits, cacheStats.misses, cacheStats.carried,
+                        cacheStats.getHitRate() * 100)), false);
+
+                var cooldownStats = system.getCooldownStats();
+                source.sendSuccess(() -> Component.literal(String.format(
+                        "Reaction cooldowns: %d tracked pairs, %d skipped reactions",
+                        cooldownStats.trackedPairs, cooldownStats.cooldownHits)), false);
+            }
+
+            if (ElementSystemAPI.getElementSystem() instanceof ElementSystemImpl impl) {
+                var spatialStats = impl.getSpatialIndex().getStats();
+                source.sendSuccess(() -> Component.literal(String.format(
+                        "Element spatial index: %d entities in %d sections across %d levels",
+                        spatialStats.entities, spatialStats.sections, spatialStats.levels)), false);
+
+                var dotStats = impl.getDotScheduler().getStats();
+                source.sendSuccess(() -> Component.literal(String.format(
+                        "Damage over time: %d active, %d damage ticks, %d merged applications",
+                        dotStats.activeDots, dotStats.damageTicks, dotStats.merges)), false);
+
+                var effectStats = impl.getEffectSink().getStats();
+                source.sendSuccess(() -> Component.literal(String.format(
+                        "Effect sink: %d offered, %d merged, %d applied",
+                        effectStats.offered, effectStats.merged, effectStats.applied)), false);
+            }
+
+            var bindingTable = ElementDataManager.getEntityBindingLoader().getBindingTable();
+            source.sendSuccess(() -> Component.literal(String.format(
+                    "Entity bindings: %d entity types, %d spawned entities pending, %d conditional",
+                    bindingTable.getBindingCount(), EntitySpawnHandler.getPendingBindingCount(),
+                    EntitySpawnHandler.getConditionalBindingCount())), false);
+            return Command.SINGLE_SUCCESS;
+        } catch (Exception e) {
+            source.sendFailure(Component.literal("Error reading stats: " + e.getMessage()));
+            return 0;
+        }
+    }
 
     private static int listCombinations(CommandSourceStack source) {
         try {
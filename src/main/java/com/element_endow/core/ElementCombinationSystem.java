@@ -4,10 +4,16 @@ import com.element_endow.api.IElementCombinationSystem;
 import com.element_endow.api.IElementSystem;
 import com.element_endow.api.ReactionResult;
 import com.element_endow.core.cache.CombinationCache;
-import com.element_endow.core.cache.ConditionCache;
+import com.element_endow.core.compiled.CombinationIndex;
+import com.element_endow.core.compiled.CompiledCombination;
+import com.element_endow.core.effect.EffectSink;
+import com.element_endow.core.scheduler.CombinationScheduler;
+import com.element_endow.core.scheduler.ParallelCombinationEvaluator;
+import com.element_endow.core.snapshot.EntitySnapshot;
 import com.element_endow.data.CombinationLoader;
-import com.google.gson.JsonElement;
-import net.minecraft.core.registries.BuiltInRegistries;
+import com.element_endow.data.RuleRegistry;
+import com.element_endow.data.RuleSet;
+import com.element_endow.util.ConditionChecker;
 import net.minecraft.world.effect.MobEffect;
 import net.minecraft.world.effect.MobEffectInstance;
 import net.minecraft.world.entity.LivingEntity;
@@ -22,17 +28,27 @@ public class ElementCombinationSystem implements IElementCombinationSystem {
     private static final Logger LOGGER = LogManager.getLogger();
 
     private final IElementSystem elementSystem;
+    private final ElementConfig config;
+    private final RuleRegistry rules;
     private final CombinationLoader combinationLoader;
     private final CombinationCache combinationCache;
-    private final ConditionCache conditionCache;
+    private final CombinationScheduler scheduler;
     private final Map<LivingEntity, Map<String, UUID>> activeModifiers;
+    private volatile CombinationIndex combinationIndex = CombinationIndex.EMPTY;
+    private ParallelCombinationEvaluator parallelEvaluator;
 
-    public ElementCombinationSystem(IElementSystem elementSystem) {
+    //修饰符差异应用统计
+    private long modifierApplications = 0;
+    private long modifierRefreshes = 0;
+    private long modifierNoops = 0;
+
+    public ElementCombinationSystem(IElementSystem elementSystem, ElementConfig config, RuleRegistry rules) {
         this.elementSystem = elementSystem;
-        this.combinationLoader = new CombinationLoader();
-        this.combinationLoader.loadCombinations();
+        this.config = config;
+        this.rules = rules;
+        this.combinationLoader = rules.getCombinationLoader();
         this.combinationCache = new CombinationCache();
-        this.conditionCache = new ConditionCache();
+        this.scheduler = new CombinationScheduler();
         this.activeModifiers = new WeakHashMap<>();
     }
 
@@ -42,80 +58,223 @@ public class ElementCombinationSystem implements IElementCombinationSystem {
             return;
         }
 
+        int tick = entity.tickCount;
+        CombinationIndex index = getCombinationIndex(entity);
+
+        //获取实体当前元素值
+        double[] elementValues = elementSystem.getElementVector(entity);
+
         //检查缓存是否需要重新计算
-        if (!combinationCache.shouldRecheck(entity, elementSystem, entity.tickCount)) {
+        CombinationCache.RecheckScope scope = combinationCache.getRecheckScope(entity, elementValues, index, tick);
+        if (scope == CombinationCache.RecheckScope.NONE) {
             return;
         }
 
-        Set<String> previousCombinations = combinationCache.getCachedCombinations(entity);
-        Set<String> newCombinations = new HashSet<>();
+        //元素值变化时重检全部组合，否则只重检轮询间隔到期的组合
+        boolean fullCheck = scope == CombinationCache.RecheckScope.FULL;
+        Set<String> newCombinations = fullCheck ? new HashSet<>() : combinationCache.getCachedCombinations(entity);
 
-        //获取实体当前元素值
-        Map<String, Double> entityElementValues = getEntityElementValues(entity);
-        //检查所有组合
-        for (CombinationLoader.ElementCombination combination : combinationLoader.getCombinations().values()) {
-            if (matchesCombination(entity, entityElementValues, combination)) {
+        for (CompiledCombination combination : index.getCombinations()) {
+            if (!fullCheck && !combinationCache.isDue(entity, combination, tick)) {
+                continue;
+            }
+
+            if (matchesCombination(entity, elementValues, combination)) {
                 newCombinations.add(combination.id);
-                if (!previousCombinations.contains(combination.id)) {
-                    applyCombinationEffects(entity, combination);
-                }
-            } else if (previousCombinations.contains(combination.id)) {
-                removeCombinationEffects(entity, combination.id);
+            } else {
+                newCombinations.remove(combination.id);
             }
         }
 
-        //更新缓存
-        combinationCache.updateCache(entity, newCombinations, elementSystem, entity.tickCount);
+        if (!fullCheck) {
+            //增量重载中删除的组合不在新索引中，不会被逐个重检
+            newCombinations.removeIf(combinationId -> index.get(combinationId) == null);
+        }
+
+        applyCombinationDiff(entity, newCombinations, elementValues, index, fullCheck, tick);
+    }
+
+    @Override
+    public void scheduleCombinationCheck(LivingEntity entity) {
+        if (entity == null || !entity.isAlive()) {
+            return;
+        }
+        scheduler.schedule(entity);
+    }
+
+    @Override
+    public void processScheduledChecks() {
+        if (scheduler.getBacklogSize() == 0) {
+            return;
+        }
+
+        if (config.isParallelCombinations()) {
+            submitParallelBatch();
+            return;
+        }
+        //并行求值已关闭，上一批结果取回后停止线程池
+        if (parallelEvaluator != null && !parallelEvaluator.isBusy()) {
+            shutdownParallelEvaluator();
+        }
 
-        //定期清理条件缓存
-        if (entity.tickCount % 200 == 0) {
-            conditionCache.cleanup();
+        scheduler.drain(config.getCombinationBudgetEntities(),
+                config.getCombinationBudgetMicros() * 1000L,
+                this::checkAndApplyCombinations);
+    }
+
+    @Override
+    public void applyCompletedChecks() {
+        if (parallelEvaluator == null || !parallelEvaluator.isBusy()) {
+            return;
+        }
+
+        //尚未计算完成时留到之后的tick取回，不阻塞主线程
+        ParallelCombinationEvaluator.CompletedBatch batch = parallelEvaluator.collectIfDone();
+        if (batch == null) {
+            return;
+        }
+
+        //求值期间索引已重建（重载或元素表变化），结果对应旧索引，实体重新排队检查
+        boolean stale = batch.index != getCombinationIndex();
+        for (ParallelCombinationEvaluator.EvaluationResult result : batch.results) {
+            EntitySnapshot snapshot = result.snapshot;
+            LivingEntity entity = snapshot.entity;
+            if (!entity.isAlive() || entity.isRemoved()) {
+                continue;
+            }
+            if (stale) {
+                scheduler.schedule(entity);
+            } else {
+                applyCombinationDiff(entity, result.matchedCombinations, snapshot.elementValues,
+                        batch.index.forDimension(snapshot.dimension), true, snapshot.tickCount);
+            }
         }
     }
 
     /**
-     * 获取实体当前元素值
+     * 停止并行求值线程池并丢弃未取回的批次，下次启用时重新创建
      */
-    private Map<String, Double> getEntityElementValues(LivingEntity entity) {
-        Map<String, Double> values = new HashMap<>();
-        for (String elementId : elementSystem.getEnabledElements()) {
-            double value = elementSystem.getElementValue(entity, elementId);
-            if (value > 0) {
-                values.put(elementId, value);
-            }
+    public void shutdownParallelEvaluator() {
+        if (parallelEvaluator != null) {
+            parallelEvaluator.shutdown();
+            parallelEvaluator = null;
         }
-        return values;
     }
 
-    private boolean matchesCombination(LivingEntity entity,
-                                       Map<String, Double> entityElementValues,
-                                       CombinationLoader.ElementCombination combination) {
+    @Override
+    public int getPendingCheckCount() {
+        return scheduler.getBacklogSize();
+    }
+
+    @Override
+    public int getPollInterval() {
+        return getCombinationIndex().getPollInterval();
+    }
+
+    public CombinationScheduler.SchedulerStats getSchedulerStats() {
+        return scheduler.getStats();
+    }
+
+    public ModifierStats getModifierStats() {
+        return new ModifierStats(modifierApplications, modifierRefreshes, modifierNoops);
+    }
+
+    /**
+     * 主线程采集快照并提交到线程池，上一批未取回时本tick不再提交
+     */
+    private void submitParallelBatch() {
+        if (parallelEvaluator == null) {
+            parallelEvaluator = new ParallelCombinationEvaluator(config.getParallelThreads());
+        }
+        if (parallelEvaluator.isBusy()) {
+            return;
+        }
 
-        //检查必需元素
-        for (String requiredElement : combination.requiredElements) {
-            if (!entityElementValues.containsKey(requiredElement)) {
-                return false;
+        CombinationIndex index = getCombinationIndex();
+        List<EntitySnapshot> batch = new ArrayList<>();
+        scheduler.drain(config.getCombinationBudgetEntities(),
+                config.getCombinationBudgetMicros() * 1000L,
+                entity -> {
+                    //线程池中总是重检全部组合
+                    double[] elementValues = elementSystem.getElementVector(entity);
+                    if (combinationCache.getRecheckScope(entity, elementValues,
+                            index.forDimension(entity.level().dimension().location()), entity.tickCount)
+                            != CombinationCache.RecheckScope.NONE) {
+                        batch.add(EntitySnapshot.capture(entity, elementSystem, elementValues));
+                    }
+                });
+
+        if (!batch.isEmpty()) {
+            parallelEvaluator.submit(batch, index);
+        }
+    }
+
+    /**
+     * 对比新旧激活组合，只对变化的组合应用或移除效果
+     */
+    private void applyCombinationDiff(LivingEntity entity, Set<String> newCombinations, double[] elementValues,
+                                      CombinationIndex index, boolean fullCheck, int tickCount) {
+        Set<String> previousCombinations = combinationCache.getCachedCombinations(entity);
+
+        for (String combinationId : newCombinations) {
+            CompiledCombination combination = index.get(combinationId);
+            if (combination == null) {
+                continue;
+            }
+
+            if (!previousCombinations.contains(combinationId)) {
+                applyCombinationEffects(entity, combination);
+            } else {
+                //保持激活的组合只刷新修饰符时效
+                updateCombinationModifiers(entity, combination);
             }
         }
 
-        //检查禁止元素
-        for (String forbidden : combination.forbiddenElements) {
-            if (entityElementValues.containsKey(forbidden)) {
-                return false;
+        for (String combinationId : previousCombinations) {
+            if (!newCombinations.contains(combinationId)) {
+                removeCombinationEffects(entity, combinationId);
             }
         }
 
-        //检查最小值要求
-        for (Map.Entry<String, Double> entry : combination.minValues.entrySet()) {
-            Double currentValue = entityElementValues.get(entry.getKey());
-            if (currentValue == null || currentValue < entry.getValue()) {
-                return false;
+        //更新缓存
+        combinationCache.updateCache(entity, newCombinations, elementValues, index, fullCheck, tickCount);
+    }
+
+    /**
+     * 获取组合编译索引
+     * 规则集替换后优先采用准备阶段编译的索引，不可用或元素注册数变化时以当前索引为基础增量重建；
+     * 实体缓存不在替换时统一清空，而是在实体下次重检时迁移，只重检变化的组合
+     */
+    public CombinationIndex getCombinationIndex() {
+        CombinationIndex index = combinationIndex;
+        RuleSet ruleSet = rules.getRuleSet();
+        if (index.isStale(elementSystem, ruleSet.generation)) {
+            index = ruleSet.combinationIndex;
+            if (index == null || index.isStale(elementSystem, ruleSet.generation)) {
+                index = compileIndex(ruleSet.combinations.values(), ruleSet.generation, combinationIndex);
             }
+            combinationIndex = index;
+        }
+        return index;
+    }
+
+    /**
+     * 获取实体所在维度的组合分片
+     */
+    public CombinationIndex getCombinationIndex(LivingEntity entity) {
+        return getCombinationIndex().forDimension(entity.level().dimension().location());
+    }
+
+    private boolean matchesCombination(LivingEntity entity, double[] elementValues,
+                                       CompiledCombination combination) {
+        //检查必需元素、禁止元素与最小值要求
+        if (!combination.matchesElements(elementValues)) {
+            return false;
         }
 
-        //检查组合条件
-        if (combination.conditions != null && !combination.conditions.isEmpty()) {
-            return conditionCache.checkWithCache(entity, combination.conditions);
+        //检查组合条件，重检频率已由组合的轮询间隔限定，无需再缓存条件结果
+        if (combination.hasConditions()) {
+            return ConditionChecker.checkConditions(combination.conditions, entity, entity.level());
         }
 
         return true;
@@ -124,41 +283,43 @@ public class ElementCombinationSystem implements IElementCombinationSystem {
     /**
      * 应用组合效果
      */
-    private void applyCombinationEffects(LivingEntity entity, CombinationLoader.ElementCombination combination) {
-        Map<String, UUID> entityModifiers = activeModifiers.computeIfAbsent(entity, k -> new HashMap<>());
-
+    private void applyCombinationEffects(LivingEntity entity, CompiledCombination combination) {
         //应用属性效果
-        for (CombinationLoader.AttributeEffect effect : combination.attributeEffects) {
-            applyAttributeEffect(entity, effect, combination.id, entityModifiers);
-        }
+        updateCombinationModifiers(entity, combination);
 
         //应用状态效果
-        for (CombinationLoader.StatusEffect effect : combination.statusEffects) {
+        for (CombinationLoader.StatusEffect effect : combination.source.statusEffects) {
             applyStatusEffect(entity, effect, combination.id);
         }
     }
 
     /**
-     * 应用属性效果
+     * 按差异更新组合的属性修饰符，数值未变时只延长时效
      */
-    private void applyAttributeEffect(LivingEntity entity, CombinationLoader.AttributeEffect effect,
-                                      String combinationId, Map<String, UUID> entityModifiers) {
-        try {
-            ResourceLocation attributeId = ResourceLocation.tryParse(effect.attribute);
-            if (attributeId == null) return;
+    private void updateCombinationModifiers(LivingEntity entity, CompiledCombination combination) {
+        if (combination.modifiers.length == 0) {
+            return;
+        }
 
-            String modifierKey = combinationId + ":" + effect.attribute;
-            UUID modifierId = UUID.nameUUIDFromBytes(modifierKey.getBytes());
+        Map<String, UUID> entityModifiers = activeModifiers.computeIfAbsent(entity, k -> new HashMap<>());
+        for (int i = 0; i < combination.modifiers.length; i++) {
+            ResourceLocation attributeId = combination.modifierAttributes[i];
+            AttributeModifier modifier = combination.modifiers[i];
+
+            IElementSystem.ModifierUpdate update = elementSystem.refreshTimedAttributeModifier(
+                    entity, attributeId, modifier, CompiledCombination.MODIFIER_DURATION);
+            if (update == IElementSystem.ModifierUpdate.FAILED) {
+                continue;
+            }
 
-            AttributeModifier modifier = createAttributeModifier(modifierId, effect);
-            if (modifier != null) {
-                boolean success = elementSystem.applyTimedAttributeModifier(entity, attributeId, modifier, 12000); // 10分钟
-                if (success) {
-                    entityModifiers.put(modifierKey, modifierId);
-                }
+            if (update == IElementSystem.ModifierUpdate.APPLIED) {
+                modifierApplications++;
+            } else if (update == IElementSystem.ModifierUpdate.REFRESHED) {
+                modifierRefreshes++;
+            } else {
+                modifierNoops++;
             }
-        } catch (Exception e) {
-            LOGGER.error("Failed to apply attribute effect: {}", effect.attribute, e);
+            entityModifiers.put(combination.id + ":" + attributeId, modifier.getId());
         }
     }
 
@@ -167,8 +328,7 @@ public class ElementCombinationSystem implements IElementCombinationSystem {
      */
     private void applyStatusEffect(LivingEntity entity, CombinationLoader.StatusEffect effect, String combinationId) {
         try {
-            ResourceLocation effectId = new ResourceLocation(effect.effect);
-            MobEffect mobEffect = BuiltInRegistries.MOB_EFFECT.get(effectId);
+            MobEffect mobEffect = effect.getMobEffect();
 
             if (mobEffect == null) {
                 LOGGER.warn("Status effect not found: {}", effect.effect);
@@ -184,35 +344,12 @@ public class ElementCombinationSystem implements IElementCombinationSystem {
                     true
             );
 
-            entity.addEffect(effectInstance);
+            EffectSink.queue(entity, effectInstance);
         } catch (Exception e) {
             LOGGER.error("Failed to apply status effect: {}", effect.effect, e);
         }
     }
 
-    private AttributeModifier createAttributeModifier(UUID modifierId, CombinationLoader.AttributeEffect effect) {
-        try {
-            AttributeModifier.Operation operation = getOperation(effect.operation);
-            return new AttributeModifier(
-                    modifierId,
-                    "element_endow.combination." + effect.operation,
-                    effect.value,
-                    operation
-            );
-        } catch (Exception e) {
-            return null;
-        }
-    }
-
-    private AttributeModifier.Operation getOperation(String operation) {
-        switch (operation.toLowerCase()) {
-            case "add": return AttributeModifier.Operation.ADDITION;
-            case "multiply_base": return AttributeModifier.Operation.MULTIPLY_BASE;
-            case "multiply_total": return AttributeModifier.Operation.MULTIPLY_TOTAL;
-            default: return AttributeModifier.Operation.ADDITION;
-        }
-    }
-
     /**
      * 处理触发效果
      */
@@ -291,8 +428,7 @@ public class ElementCombinationSystem implements IElementCombinationSystem {
      */
     private MobEffectInstance createEffectInstance(CombinationLoader.EffectData effect) {
         try {
-            ResourceLocation effectId = new ResourceLocation(effect.effect);
-            MobEffect mobEffect = BuiltInRegistries.MOB_EFFECT.get(effectId);
+            MobEffect mobEffect = effect.getMobEffect();
             return mobEffect != null ? new MobEffectInstance(
                     mobEffect,
                     effect.duration,
@@ -350,15 +486,25 @@ public class ElementCombinationSystem implements IElementCombinationSystem {
     @Override
     public void reloadCombinations() {
         combinationLoader.loadCombinations();
-        combinationCache.clear();
-        conditionCache.clear();
-        activeModifiers.clear();
     }
 
-    public void loadFromResources(Map<ResourceLocation, JsonElement> resources) {
-        combinationLoader.loadFromResources(resources);
-        combinationCache.clear();
-        conditionCache.clear();
+    /**
+     * 编译组合索引，可在重载准备阶段的工作线程调用
+     */
+    public CombinationIndex compileIndex(Collection<CombinationLoader.ElementCombination> combinations, int generation,
+                                         CombinationIndex previous) {
+        return CombinationIndex.build(combinations, elementSystem, generation, previous);
+    }
+
+    /**
+     * 当前使用的索引，供重载准备阶段作为增量构建的基础
+     */
+    public CombinationIndex getCurrentIndex() {
+        return combinationIndex;
+    }
+
+    public CombinationCache.CacheStats getCacheStats() {
+        return combinationCache.getStats();
     }
 
     public void invalidateEntityCache(LivingEntity entity) {
@@ -367,6 +513,19 @@ public class ElementCombinationSystem implements IElementCombinationSystem {
 
     public void onEntityRemoved(LivingEntity entity) {
         combinationCache.invalidate(entity);
+        scheduler.remove(entity);
         activeModifiers.remove(entity);
     }
+
+    public static class ModifierStats {
+        public final long applications;
+        public final long refreshes;
+        public final long noops;
+
+        public ModifierStats(long applications, long refreshes, long noops) {
+            this.applications = applications;
+            this.refreshes = refreshes;
+            this.noops = noops;
+        }
+    }
 }
\ No newline at end of file
@@ -10,9 +10,44 @@ import java.util.List;
 import java.util.Properties;
 
 public class ElementConfig {
+    //组合重检每tick最多处理的实体数
+    private static final int DEFAULT_COMBINATION_BUDGET_ENTITIES = 256;
+    //组合重检每tick的时间预算（微秒）
+    private static final int DEFAULT_COMBINATION_BUDGET_MICROS = 2000;
+    //是否在线程池中并行匹配组合
+    private static final boolean DEFAULT_PARALLEL_COMBINATIONS = false;
+    //并行线程数，0表示按CPU核心数自动选择
+    private static final int DEFAULT_PARALLEL_THREADS = 0;
+    //确定性反应结果缓存的最大条目数
+    private static final int DEFAULT_REACTION_CACHE_SIZE = 1024;
+    //单次命中最多触发的反应数，0表示不限制
+    private static final int DEFAULT_MAX_REACTIONS_PER_HIT = 0;
+    //挂载后连锁反应的最大层数，0表示关闭连锁
+    private static final int DEFAULT_CASCADE_MAX_DEPTH = 0;
+    //单次连锁的时间预算（微秒）
+    private static final int DEFAULT_CASCADE_BUDGET_MICROS = 500;
+    //目标触发连锁后的冷却（tick）
+    private static final int DEFAULT_CASCADE_COOLDOWN = 10;
+    //是否把校验后的规则缓存到磁盘，加速下次启动
+    private static final boolean DEFAULT_RULE_DISK_CACHE = true;
+    //每tick最多应用的待处理生物绑定数，0表示加入世界时立即应用
+    private static final int DEFAULT_BINDING_BUDGET_ENTITIES = 64;
+
     private final List<String> elements;
     private final File configFile;
 
+    private int combinationBudgetEntities = DEFAULT_COMBINATION_BUDGET_ENTITIES;
+    private int combinationBudgetMicros = DEFAULT_COMBINATION_BUDGET_MICROS;
+    private boolean parallelCombinations = DEFAULT_PARALLEL_COMBINATIONS;
+    private int parallelThreads = DEFAULT_PARALLEL_THREADS;
+    private int reactionCacheSize = DEFAULT_REACTION_CACHE_SIZE;
+    private int maxReactionsPerHit = DEFAULT_MAX_REACTIONS_PER_HIT;
+    private int cascadeMaxDepth = DEFAULT_CASCADE_MAX_DEPTH;
+    private int cascadeBudgetMicros = DEFAULT_CASCADE_BUDGET_MICROS;
+    private int cascadeCooldown = DEFAULT_CASCADE_COOLDOWN;
+    private boolean ruleDiskCache = DEFAULT_RULE_DISK_CACHE;
+    private int bindingBudgetEntities = DEFAULT_BINDING_BUDGET_ENTITIES;
+
     public ElementConfig() {
         this.elements = new ArrayList<>();
         this.configFile = new File("config/element_endow_elements.properties");
@@ -23,6 +58,50 @@ public class ElementConfig {
         return new ArrayList<>(elements);
     }
 
+    public int getCombinationBudgetEntities() {
+        return combinationBudgetEntities;
+    }
+
+    public int getCombinationBudgetMicros() {
+        return combinationBudgetMicros;
+    }
+
+    public boolean isParallelCombinations() {
+        return parallelCombinations;
+    }
+
+    public int getParallelThreads() {
+        return parallelThreads;
+    }
+
+    public int getReactionCacheSize() {
+        return reactionCacheSize;
+    }
+
+    public int getMaxReactionsPerHit() {
+        return maxReactionsPerHit;
+    }
+
+    public int getCascadeMaxDepth() {
+        return cascadeMaxDepth;
+    }
+
+    public int getCascadeBudgetMicros() {
+        return cascadeBudgetMicros;
+    }
+
+    public int getCascadeCooldown() {
+        return cascadeCooldown;
+    }
+
+    public boolean isRuleDiskCache() {
+        return ruleDiskCache;
+    }
+
+    public int getBindingBudgetEntities() {
+        return bindingBudgetEntities;
+    }
+
     public void load() {
         elements.clear();
         try {
@@ -45,6 +124,18 @@ public class ElementConfig {
                     }
                 }
             }
+
+            combinationBudgetEntities = readInt(props, "combination_budget_entities", DEFAULT_COMBINATION_BUDGET_ENTITIES);
+            combinationBudgetMicros = readInt(props, "combination_budget_micros", DEFAULT_COMBINATION_BUDGET_MICROS);
+            parallelCombinations = readBoolean(props, "parallel_combinations", DEFAULT_PARALLEL_COMBINATIONS);
+            parallelThreads = readInt(props, "parallel_threads", DEFAULT_PARALLEL_THREADS);
+            reactionCacheSize = readInt(props, "reaction_cache_size", DEFAULT_REACTION_CACHE_SIZE);
+            maxReactionsPerHit = readInt(props, "max_reactions_per_hit", DEFAULT_MAX_REACTIONS_PER_HIT);
+            cascadeMaxDepth = readInt(props, "cascade_max_depth", DEFAULT_CASCADE_MAX_DEPTH);
+            cascadeBudgetMicros = readInt(props, "cascade_budget_micros", DEFAULT_CASCADE_BUDGET_MICROS);
+            cascadeCooldown = readInt(props, "cascade_cooldown", DEFAULT_CASCADE_COOLDOWN);
+            ruleDiskCache = readBoolean(props, "rule_disk_cache", DEFAULT_RULE_DISK_CACHE);
+            bindingBudgetEntities = readInt(props, "binding_budget_entities", DEFAULT_BINDING_BUDGET_ENTITIES);
         } catch (Exception e) {
             ElementEndow.LOGGER.error("Failed to load element config", e);
         }
@@ -60,6 +151,17 @@ public class ElementConfig {
 
             Properties props = new Properties();
             props.setProperty("elements", sb.toString());
+            props.setProperty("combination_budget_entities", String.valueOf(combinationBudgetEntities));
+            props.setProperty("combination_budget_micros", String.valueOf(combinationBudgetMicros));
+            props.setProperty("parallel_combinations", String.valueOf(parallelCombinations));
+            props.setProperty("parallel_threads", String.valueOf(parallelThreads));
+            props.setProperty("reaction_cache_size", String.valueOf(reactionCacheSize));
+            props.setProperty("max_reactions_per_hit", String.valueOf(maxReactionsPerHit));
+            props.setProperty("cascade_max_depth", String.valueOf(cascadeMaxDepth));
+            props.setProperty("cascade_budget_micros", String.valueOf(cascadeBudgetMicros));
+            props.setProperty("cascade_cooldown", String.valueOf(cascadeCooldown));
+            props.setProperty("rule_disk_cache", String.valueOf(ruleDiskCache));
+            props.setProperty("binding_budget_entities", String.valueOf(bindingBudgetEntities));
 
             configFile.getParentFile().mkdirs();
             try (FileWriter writer = new FileWriter(configFile)) {
@@ -83,6 +185,27 @@ public class ElementConfig {
         }
     }
 
+    private int readInt(Properties props, String key, int defaultValue) {
+        String value = props.getProperty(key);
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            ElementEndow.LOGGER.warn("Invalid value for config key {}: {}", key, value);
+            return defaultValue;
+        }
+    }
+
+    private boolean readBoolean(Properties props, String key, boolean defaultValue) {
+        String value = props.getProperty(key);
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        return Boolean.parseBoolean(value.trim());
+    }
+
     private void createDefaultConfig() {
         try {
             configFile.getParentFile().mkdirs();
@@ -90,6 +213,28 @@ public class ElementConfig {
                 writer.write("# Element Endow Configuration\n");
                 writer.write("# Format: modid:element_name\n");
                 writer.write("elements=\n");
+                writer.write("# Max entities whose combinations are rechecked per tick\n");
+                writer.write("combination_budget_entities=" + DEFAULT_COMBINATION_BUDGET_ENTITIES + "\n");
+                writer.write("# Time budget for combination rechecks per tick, in microseconds\n");
+                writer.write("combination_budget_micros=" + DEFAULT_COMBINATION_BUDGET_MICROS + "\n");
+                writer.write("# Evaluate combinations on a worker pool from entity snapshots\n");
+                writer.write("parallel_combinations=" + DEFAULT_PARALLEL_COMBINATIONS + "\n");
+                writer.write("# Worker threads for parallel evaluation, 0 = auto\n");
+                writer.write("parallel_threads=" + DEFAULT_PARALLEL_THREADS + "\n");
+                writer.write("# Max cached outcomes of condition-free reactions, keyed by element masks\n");
+                writer.write("reaction_cache_size=" + DEFAULT_REACTION_CACHE_SIZE + "\n");
+                writer.write("# Max reactions triggered per attack or defense pass of a hit, 0 = unlimited\n");
+                writer.write("max_reactions_per_hit=" + DEFAULT_MAX_REACTIONS_PER_HIT + "\n");
+                writer.write("# Max depth of reactions cascading from newly mounted elements, 0 = disabled\n");
+                writer.write("cascade_max_depth=" + DEFAULT_CASCADE_MAX_DEPTH + "\n");
+                writer.write("# Time budget for one reaction cascade, in microseconds\n");
+                writer.write("cascade_budget_micros=" + DEFAULT_CASCADE_BUDGET_MICROS + "\n");
+                writer.write("# Ticks before a target can cascade again\n");
+                writer.write("cascade_cooldown=" + DEFAULT_CASCADE_COOLDOWN + "\n");
+                writer.write("# Cache validated rules on disk and skip validation of unchanged files on next start\n");
+                writer.write("rule_disk_cache=" + DEFAULT_RULE_DISK_CACHE + "\n");
+                writer.write("# Max spawned entities whose element bindings are applied per tick, 0 = apply on join\n");
+                writer.write("binding_budget_entities=" + DEFAULT_BINDING_BUDGET_ENTITIES + "\n");
             }
         } catch (Exception e) {
             ElementEndow.LOGGER.error("Failed to create default config", e);
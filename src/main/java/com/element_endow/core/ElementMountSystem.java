@@ -27,34 +27,50 @@ public class ElementMountSystem implements IElementMountSystem {
     public void applyMount(LivingEntity target, String elementId,
                            double amount, int duration, double probability,
                            String stackBehavior) {
+        tryApplyMount(target, elementId, amount, duration, probability, stackBehavior);
+    }
+
+    @Override
+    public boolean tryApplyMount(LivingEntity target, String elementId,
+                                 double amount, int duration, double probability,
+                                 String stackBehavior) {
 
         if (target.level().random.nextDouble() >= probability) {
-            return;
+            return false;
         }
 
         if (!elementSystem.isElementRegistered(elementId)) {
-            return;
+            return false;
         }
 
         Map<String, List<MountData>> entityMountsMap = entityMounts.computeIfAbsent(target, k -> new HashMap<>());
-        MountStackManager.applyStackedMount(target,
+        MountData mount = MountStackManager.applyStackedMount(target,
                 elementId,
                 amount,
                 duration,
                 stackBehavior,
                 5,
                 entityMountsMap);
+        if (mount == null) {
+            return false;
+        }
         applyMountEffect(target, elementId);
+        return true;
     }
 
     @Override
     public void applyAdvancedMount(LivingEntity target, AdvancedMountData mountData) {
+        tryApplyAdvancedMount(target, mountData);
+    }
+
+    @Override
+    public boolean tryApplyAdvancedMount(LivingEntity target, AdvancedMountData mountData) {
         if (target.level().random.nextDouble() >= mountData.probability) {
-            return;
+            return false;
         }
 
         if (!elementSystem.isElementRegistered(mountData.elementId)) {
-            return;
+            return false;
         }
 
         int currentTime = (int) target.level().getGameTime();
@@ -67,10 +83,13 @@ public class ElementMountSystem implements IElementMountSystem {
                 mountData.elementId
         );
 
-        applyMount(target, mountData.elementId, scaledAmount, mountData.baseDuration, 1.0, mountData.stackBehavior);
+        if (!tryApplyMount(target, mountData.elementId, scaledAmount, mountData.baseDuration, 1.0, mountData.stackBehavior)) {
+            return false;
+        }
 
         Map<String, AdvancedMountData> advancedMounts = entityAdvancedMounts.computeIfAbsent(target, k -> new HashMap<>());
         advancedMounts.put(mountData.elementId, mountData);
+        return true;
     }
 
     @Override
@@ -1,49 +1,91 @@
 package com.element_endow.core;
 
+import com.element_endow.api.IElementMountSystem;
 import com.element_endow.api.IElementSystem;
+import com.element_endow.api.ReactionBatchResult;
 import com.element_endow.api.ReactionResult;
-import com.element_endow.data.ElementDataManager;
+import com.element_endow.core.cache.ReactionCooldownTracker;
+import com.element_endow.core.cache.ReactionOutcomeCache;
+import com.element_endow.core.compiled.CompiledReaction;
+import com.element_endow.core.compiled.ElementMask;
+import com.element_endow.core.compiled.ReactionIndex;
+import com.element_endow.core.compiled.ReactionPlan;
+import com.element_endow.core.effect.EffectSink;
+import com.element_endow.core.spatial.ElementSpatialIndex;
 import com.element_endow.data.ReactionLoader;
-import com.element_endow.util.ConditionChecker;
+import com.element_endow.data.RuleRegistry;
+import com.element_endow.data.RuleSet;
+import com.element_endow.event.EntitySpawnHandler;
+import net.minecraft.world.effect.MobEffectInstance;
+import net.minecraft.world.entity.Entity;
 import net.minecraft.world.entity.LivingEntity;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
 public class ElementReactionSystem implements com.element_endow.api.IElementReactionSystem {
     private static final Logger LOGGER = LogManager.getLogger();
 
     private final IElementSystem elementSystem;
+    private final RuleRegistry rules;
     private final ReactionLoader reactionLoader;
+    private final ReactionOutcomeCache outcomeCache;
+    private final ReactionCooldownTracker cooldownTracker;
+    private final ElementConfig config;
+    private final ElementSpatialIndex spatialIndex;
+    private volatile ReactionIndex reactionIndex = ReactionIndex.EMPTY;
+    //批量处理复用的结果缓冲区，仅在主线程访问
+    private final ReactionBatchResult batchResult = new ReactionBatchResult();
+    private ReactionPlan[] batchPlans = new ReactionPlan[0];
 
-    public ElementReactionSystem(IElementSystem elementSystem) {
+    public ElementReactionSystem(IElementSystem elementSystem, ElementConfig config, ElementSpatialIndex spatialIndex,
+                                 RuleRegistry rules) {
         this.elementSystem = elementSystem;
-        this.reactionLoader = ElementDataManager.getReactionLoader();
+        this.config = config;
+        this.spatialIndex = spatialIndex;
+        this.rules = rules;
+        this.reactionLoader = rules.getReactionLoader();
+        this.outcomeCache = new ReactionOutcomeCache(config.getReactionCacheSize());
+        this.cooldownTracker = new ReactionCooldownTracker();
         LOGGER.info("Elemental reaction system initialization complete");
     }
 
     @Override
     public ReactionResult processAttackReaction(LivingEntity attacker, LivingEntity target, double baseDamage) {
+        return processAttackReaction(attacker, elementSystem.getElementVector(attacker), target, baseDamage);
+    }
+
+    /**
+     * 使用给定的攻击方元素值处理攻击反应，用于投射物发射时的元素快照
+     * @param attackerValues 按序号索引的攻击方元素值
+     */
+    public ReactionResult processAttackReaction(LivingEntity attacker, double[] attackerValues,
+                                                LivingEntity target, double baseDamage) {
         ReactionResult result = new ReactionResult();
 
         try {
-            //获取攻击者和目标的元素
-            java.util.Collection<String> attackerElements = new java.util.ArrayList<>();
-            java.util.Collection<String> targetElements = new java.util.ArrayList<>();
-
-            for (String elementId : elementSystem.getEnabledElements()) {
-                if (elementSystem.hasElement(attacker, elementId)) {
-                    attackerElements.add(elementId);
-                }
-                if (elementSystem.hasElement(target, elementId)) {
-                    targetElements.add(elementId);
-                }
+            ReactionIndex index = getReactionIndex();
+            if (index.isMaskable()) {
+                processReactions(index, attacker, attackerValues, target, true, result);
+            } else {
+                //元素数超过掩码容量，逐元素比较
+                Collection<String> attackerElements = collectElements(attackerValues);
+                Collection<String> targetElements = collectElements(target);
+                reactionLoader.processAttackReactions(attackerElements, targetElements, result, attacker, target,
+                        index, cooldownTracker);
             }
 
-            //使用反应加载器处理攻击反应逻辑
-            reactionLoader.processAttackReactions(attackerElements, targetElements, result, attacker, target);
+            spreadAoe(attacker, target, result);
 
-            LOGGER.debug("Processed attack reaction: {} attacker elements, {} target elements, damage multiplier: {}",
-                    attackerElements.size(), targetElements.size(), result.damageMultiplier);
+            LOGGER.debug("Processed attack reaction, damage multiplier: {}", result.damageMultiplier);
 
         } catch (Exception e) {
             LOGGER.error("Error processing attack reaction", e);
@@ -52,29 +94,105 @@ public class ElementReactionSystem implements com.element_endow.api.IElementReac
         return result;
     }
 
+    /**
+     * 批量处理攻击反应
+     * 攻击方掩码与攻击方/世界条件只求值一次，逐目标的查找与应用在调用线程上按目标顺序执行；
+     * 元素值读取自实体属性，不能在其他线程上进行
+     */
     @Override
-    public ReactionResult processDefenseReaction(LivingEntity attacker, LivingEntity defender, double incomingDamage) {
-        ReactionResult result = new ReactionResult();
+    public ReactionBatchResult processAttackReactions(LivingEntity attacker, List<LivingEntity> targets, double[] damages) {
+        int count = targets.size();
+        batchResult.prepare(count);
+        if (count == 0) {
+            return batchResult;
+        }
 
         try {
-            //获取攻击者和防御者的元素
-            java.util.Collection<String> attackerElements = new java.util.ArrayList<>();
-            java.util.Collection<String> defenderElements = new java.util.ArrayList<>();
+            //批量接口同样是首次交互，待处理的生成绑定先应用
+            EntitySpawnHandler.ensureBindingsApplied(attacker);
+            for (int i = 0; i < count; i++) {
+                EntitySpawnHandler.ensureBindingsApplied(targets.get(i));
+            }
 
-            for (String elementId : elementSystem.getEnabledElements()) {
-                if (elementSystem.hasElement(attacker, elementId)) {
-                    attackerElements.add(elementId);
+            ReactionIndex index = getReactionIndex();
+            if (!index.isMaskable()) {
+                //元素数超过掩码容量，逐目标走旧路径
+                Collection<String> attackerElements = collectElements(attacker);
+                for (int i = 0; i < count; i++) {
+                    LivingEntity target = targets.get(i);
+                    ReactionResult result = batchResult.get(i);
+                    reactionLoader.processAttackReactions(attackerElements, collectElements(target), result,
+                            attacker, target, index, cooldownTracker);
+                    spreadAoe(attacker, target, result);
                 }
-                if (elementSystem.hasElement(defender, elementId)) {
-                    defenderElements.add(elementId);
+                return batchResult;
+            }
+
+            long attackerMask = ElementMask.of(elementSystem.getElementVector(attacker));
+            if (attackerMask == 0L) {
+                return batchResult;
+            }
+            ReactionIndex shard = index.forDimension(attacker.level().dimension().location());
+
+            if (batchPlans.length < count) {
+                batchPlans = new ReactionPlan[count];
+            }
+            ReactionPlan[] plans = batchPlans;
+
+            for (int i = 0; i < count; i++) {
+                long targetMask = ElementMask.of(elementSystem.getElementVector(targets.get(i)));
+                plans[i] = targetMask == 0L ? null : outcomeCache.get(shard, attackerMask, targetMask, true);
+            }
+
+            //攻击方与世界条件按反应缓存，整批只求值一次
+            Map<CompiledReaction, Boolean> attackerSide = new IdentityHashMap<>();
+            for (int i = 0; i < count; i++) {
+                ReactionPlan plan = plans[i];
+                plans[i] = null;
+                if (plan == null) {
+                    continue;
                 }
+                LivingEntity target = targets.get(i);
+                ReactionResult result = batchResult.get(i);
+                applyPlan(plan, shard, attacker, target, true, result, attackerSide);
+                spreadAoe(attacker, target, result);
             }
 
-            //使用反应加载器处理防御反应逻辑
-            reactionLoader.processDefenseReactions(attackerElements, defenderElements, result, attacker, defender);
+            LOGGER.debug("Processed batch attack reactions for {} targets", count);
 
-            LOGGER.debug("Processed defense reaction: {} attacker elements, {} defender elements, defense multiplier: {}",
-                    attackerElements.size(), defenderElements.size(), result.defenseMultiplier);
+        } catch (Exception e) {
+            LOGGER.error("Error processing batch attack reactions", e);
+        }
+
+        return batchResult;
+    }
+
+    @Override
+    public ReactionResult processDefenseReaction(LivingEntity attacker, LivingEntity defender, double incomingDamage) {
+        return processDefenseReaction(attacker, elementSystem.getElementVector(attacker), defender, incomingDamage);
+    }
+
+    /**
+     * 使用给定的攻击方元素值处理防御反应，用于投射物发射时的元素快照
+     * @param attackerValues 按序号索引的攻击方元素值
+     */
+    public ReactionResult processDefenseReaction(LivingEntity attacker, double[] attackerValues,
+                                                 LivingEntity defender, double incomingDamage) {
+        ReactionResult result = new ReactionResult();
+
+        try {
+            ReactionIndex index = getReactionIndex();
+            if (index.isMaskable()) {
+                processReactions(index, attacker, attackerValues, defender, false, result);
+            } else {
+                //元素数超过掩码容量，逐元素比较
+                Collection<String> attackerElements = collectElements(attackerValues);
+                Collection<String> defenderElements = collectElements(defender);
+                reactionLoader.processDefenseReactions(attackerElements, defenderElements, result, attacker, defender,
+                        index, cooldownTracker);
+            }
+
+            LOGGER.debug("Processed defense reaction, defense multiplier: {}", result.defenseMultiplier);
 
         } catch (Exception e) {
             LOGGER.error("Error processing defense reaction", e);
@@ -83,6 +201,342 @@ public class ElementReactionSystem implements com.element_endow.api.IElementReac
         return result;
     }
 
+    /**
+     * 按优先级求值，同一互斥组只触发一个反应，达到单次命中上限后停止
+     * 全部为无冷却的确定性反应时直接使用缓存的合并结果
+     */
+    private void processReactions(ReactionIndex index, LivingEntity attacker, double[] attackerValues,
+                                  LivingEntity target, boolean attack, ReactionResult result) {
+        //命中发生在目标所在维度
+        index = index.forDimension(target.level().dimension().location());
+        long attackerMask = ElementMask.of(attackerValues);
+        long targetMask = ElementMask.of(elementSystem.getElementVector(target));
+
+        //任意一方没有元素时不可能发生反应
+        if (attackerMask == 0L || targetMask == 0L) {
+            return;
+        }
+
+        applyPlan(outcomeCache.get(index, attackerMask, targetMask, attack), index, attacker, target, attack, result, null);
+    }
+
+    /**
+     * 应用反应计划
+     * @param attackerSide 批量处理时缓存的攻击方与世界条件结果，单次处理时为null
+     */
+    private void applyPlan(ReactionPlan plan, ReactionIndex index, LivingEntity attacker, LivingEntity target,
+                           boolean attack, ReactionResult result, Map<CompiledReaction, Boolean> attackerSide) {
+        if (plan.isDeterministic()) {
+            plan.outcome.applyTo(result, target, attacker);
+            return;
+        }
+
+        int maxReactions = index.getMaxReactionsPerHit();
+        int currentTick = (int) attacker.level().getGameTime();
+        int triggered = 0;
+        Set<String> usedGroups = null;
+
+        for (CompiledReaction reaction : plan.reactions) {
+            if (reaction.exclusiveGroup != null && usedGroups != null && usedGroups.contains(reaction.exclusiveGroup)) {
+                continue;
+            }
+
+            //冷却中的反应在条件检查之前跳过
+            if (reaction.hasCooldown() && cooldownTracker.isOnCooldown(attacker.getId(), target.getId(),
+                    reaction.cooldownSlot, attack, currentTick)) {
+                continue;
+            }
+
+            if (!reaction.deterministic && !checkConditions(reaction, attacker, target, attackerSide)) {
+                continue;
+            }
+
+            if (attack) {
+                reactionLoader.applyAttackReaction(reaction.source, result, attacker, target);
+            } else {
+                reactionLoader.applyDefenseReaction(reaction.source, result, attacker, target);
+            }
+            triggered++;
+
+            if (reaction.hasCooldown()) {
+                cooldownTracker.startCooldown(attacker.getId(), target.getId(),
+                        reaction.cooldownSlot, attack, currentTick, reaction.cooldown);
+            }
+            if (reaction.exclusiveGroup != null) {
+                if (usedGroups == null) {
+                    usedGroups = new HashSet<>();
+                }
+                usedGroups.add(reaction.exclusiveGroup);
+            }
+            if (maxReactions > 0 && triggered >= maxReactions) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * 连锁反应：挂载带来的新元素与目标已有元素再次反应
+     * 每层只检查涉及上一层新挂载元素的元素对，受最大层数与时间预算限制；
+     * 同一次连锁中每个反应最多触发一次，连锁结束后目标进入冷却
+     * @return 连锁反应的合并结果，其中的挂载已在连锁过程中应用；没有触发任何反应时返回null
+     */
+    public ReactionResult processCascade(LivingEntity source, LivingEntity target, Collection<String> mountedElements) {
+        int maxDepth = config.getCascadeMaxDepth();
+        if (maxDepth <= 0 || mountedElements.isEmpty() || target.level().isClientSide) {
+            return null;
+        }
+
+        ReactionIndex index = getReactionIndex().forDimension(target.level().dimension().location());
+        if (!index.isMaskable()) {
+            return null;
+        }
+
+        int currentTick = (int) target.level().getGameTime();
+        if (cooldownTracker.isCascadeOnCooldown(target.getId(), currentTick)) {
+            return null;
+        }
+
+        long deadline = System.nanoTime() + config.getCascadeBudgetMicros() * 1000L;
+        int maxReactions = index.getMaxReactionsPerHit();
+        ReactionResult result = new ReactionResult();
+        //已触发的反应，防止元素互相挂载形成循环
+        Set<String> fired = new HashSet<>();
+        long frontier = maskOf(mountedElements);
+        int depth = 0;
+
+        cascade:
+        while (frontier != 0L && depth < maxDepth) {
+            long targetMask = ElementMask.of(elementSystem.getElementVector(target));
+            //挂载可能未命中概率，只保留目标确实持有的元素
+            frontier &= targetMask;
+            if (frontier == 0L) {
+                break;
+            }
+
+            int triggered = 0;
+            Set<String> usedGroups = null;
+            for (CompiledReaction reaction : index.collectReactions(frontier, targetMask)) {
+                if (System.nanoTime() - deadline > 0) {
+                    LOGGER.debug("Reaction cascade on {} stopped at depth {}: time budget exceeded", target, depth);
+                    break cascade;
+                }
+
+                //同一元素自身不构成反应
+                if (reaction.ordinalA == reaction.ordinalB || fired.contains(reaction.id)) {
+                    continue;
+                }
+                if (reaction.exclusiveGroup != null && usedGroups != null && usedGroups.contains(reaction.exclusiveGroup)) {
+                    continue;
+                }
+                if (reaction.hasCooldown() && cooldownTracker.isOnCooldown(source.getId(), target.getId(),
+                        reaction.cooldownSlot, true, currentTick)) {
+                    continue;
+                }
+                if (!reaction.deterministic && !(reaction.checkAttackerSide(source) && reaction.checkTarget(target))) {
+                    continue;
+                }
+
+                reactionLoader.applyAttackReaction(reaction.source, result, source, target);
+                fired.add(reaction.id);
+                triggered++;
+
+                if (reaction.hasCooldown()) {
+                    cooldownTracker.startCooldown(source.getId(), target.getId(),
+                            reaction.cooldownSlot, true, currentTick, reaction.cooldown);
+                }
+                if (reaction.exclusiveGroup != null) {
+                    if (usedGroups == null) {
+                        usedGroups = new HashSet<>();
+                    }
+                    usedGroups.add(reaction.exclusiveGroup);
+                }
+                if (maxReactions > 0 && triggered >= maxReactions) {
+                    break;
+                }
+            }
+
+            if (triggered == 0) {
+                break;
+            }
+            depth++;
+            //本层挂载的元素成为下一层的检查范围
+            frontier = applyCascadeMounts(target, result);
+        }
+
+        //预算耗尽时本层已产生的挂载仍然生效
+        applyCascadeMounts(target, result);
+
+        if (fired.isEmpty()) {
+            return null;
+        }
+
+        cooldownTracker.startCascadeCooldown(target.getId(), currentTick, config.getCascadeCooldown());
+        spreadAoe(source, target, result);
+        LOGGER.debug("Reaction cascade on {} triggered {} reactions over {} levels", target, fired.size(), depth);
+        return result;
+    }
+
+    /**
+     * 应用连锁中产生的挂载并清空，返回实际挂载元素的掩码
+     */
+    private long applyCascadeMounts(LivingEntity target, ReactionResult result) {
+        long mounted = 0L;
+        for (ReactionResult.MountApplication mount : result.mountApplications) {
+            //概率在这里判定一次，挂载系统不再重复掷骰
+            if (target.getRandom().nextDouble() < mount.probability
+                    && elementSystem.getMountSystem().tryApplyMount(target, mount.elementId, mount.amount,
+                    mount.duration, 1.0, "refresh")) {
+                mounted |= ElementMask.bit(elementSystem.getElementOrdinal(mount.elementId));
+            }
+        }
+        for (IElementMountSystem.AdvancedMountData advancedMount : result.advancedMountApplications) {
+            if (elementSystem.getMountSystem().tryApplyAdvancedMount(target, advancedMount)) {
+                mounted |= ElementMask.bit(elementSystem.getElementOrdinal(advancedMount.elementId));
+            }
+        }
+        result.mountApplications.clear();
+        result.advancedMountApplications.clear();
+        return mounted;
+    }
+
+    private long maskOf(Collection<String> elementIds) {
+        long mask = 0L;
+        for (String elementId : elementIds) {
+            mask |= ElementMask.bit(elementSystem.getElementOrdinal(elementId));
+        }
+        return mask;
+    }
+
+    /**
+     * 将范围效果扩散到目标周围持有元素的实体，候选实体来自空间索引
+     */
+    private void spreadAoe(LivingEntity attacker, LivingEntity target, ReactionResult result) {
+        if (result.aoeApplications.isEmpty() || target.level().isClientSide) {
+            return;
+        }
+
+        Set<Entity> exclude = Collections.newSetFromMap(new IdentityHashMap<>());
+        exclude.add(attacker);
+        exclude.add(target);
+
+        for (ReactionResult.AoeApplication aoe : result.aoeApplications) {
+            long filterMask = 0L;
+            for (String elementId : aoe.elementFilter) {
+                filterMask |= ElementMask.bit(elementSystem.getElementOrdinal(elementId));
+            }
+            //过滤元素均未注册，不可能有实体满足
+            if (!aoe.elementFilter.isEmpty() && filterMask == 0L) {
+                continue;
+            }
+
+            for (LivingEntity entity : spatialIndex.query(target.level(), target.position(), aoe.radius,
+                    filterMask, aoe.maxTargets, exclude)) {
+                for (MobEffectInstance effect : aoe.effects) {
+                    EffectSink.queue(entity, new MobEffectInstance(effect));
+                }
+
+                //挂载概率由挂载系统判定，这里不再重复掷骰
+                if (aoe.mount != null) {
+                    elementSystem.getMountSystem().applyMount(entity, aoe.mount.elementId, aoe.mount.amount,
+                            aoe.mount.duration, aoe.mount.probability, "refresh");
+                }
+            }
+        }
+    }
+
+    private boolean checkConditions(CompiledReaction reaction, LivingEntity attacker, LivingEntity target,
+                                    Map<CompiledReaction, Boolean> attackerSide) {
+        if (attackerSide == null) {
+            return reaction.checkAttackerSide(attacker) && reaction.checkTarget(target);
+        }
+        Boolean passed = attackerSide.get(reaction);
+        if (passed == null) {
+            passed = reaction.checkAttackerSide(attacker);
+            attackerSide.put(reaction, passed);
+        }
+        return passed && reaction.checkTarget(target);
+    }
+
+    private Collection<String> collectElements(LivingEntity entity) {
+        Collection<String> elements = new ArrayList<>();
+        for (String elementId : elementSystem.getEnabledElements()) {
+            if (elementSystem.hasElement(entity, elementId)) {
+                elements.add(elementId);
+            }
+        }
+        return elements;
+    }
+
+    private Collection<String> collectElements(double[] values) {
+        Collection<String> elements = new ArrayList<>();
+        for (int ordinal = 0; ordinal < values.length; ordinal++) {
+            String elementId = values[ordinal] > 0 ? elementSystem.getElementByOrdinal(ordinal) : null;
+            if (elementId != null) {
+                elements.add(elementId);
+            }
+        }
+        return elements;
+    }
+
+    /**
+     * 获取反应编译索引
+     * 规则集替换后优先采用准备阶段编译的索引，不可用时以当前索引为基础增量重建；
+     * 结果缓存按代数淘汰，只在元素注册数变化时清空，增量重载时保留未变化反应的冷却
+     */
+    public ReactionIndex getReactionIndex() {
+        ReactionIndex index = reactionIndex;
+        RuleSet ruleSet = rules.getRuleSet();
+        if (index.isStale(elementSystem, ruleSet.generation)) {
+            ReactionIndex previous = index;
+            index = ruleSet.reactionIndex;
+            if (index == null || index.isStale(elementSystem, ruleSet.generation)) {
+                index = compileIndex(ruleSet.reactions.values(), ruleSet.generation, previous);
+            }
+            reactionIndex = index;
+            if (previous.getGeneration() == ruleSet.generation) {
+                //同一代内元素序号变化，掩码含义已改变
+                outcomeCache.clear();
+            }
+            if (index.isIncrementalFrom(previous.getGeneration())) {
+                cooldownTracker.retain(index.getCooldownSlots(), index.getChangedCooldownSlots());
+            } else {
+                cooldownTracker.reset(index.getCooldownSlots());
+            }
+        }
+        return index;
+    }
+
+    /**
+     * 编译反应索引，可在重载准备阶段的工作线程调用
+     * @param previous 增量构建的基础，通常为当前索引
+     */
+    public ReactionIndex compileIndex(Collection<ReactionLoader.ElementReaction> reactions, int generation,
+                                      ReactionIndex previous) {
+        return ReactionIndex.build(reactions, elementSystem, generation, config.getMaxReactionsPerHit(), previous);
+    }
+
+    /**
+     * 当前使用的索引，供重载准备阶段作为增量构建的基础
+     */
+    public ReactionIndex getCurrentIndex() {
+        return reactionIndex;
+    }
+
+    public ReactionOutcomeCache.CacheStats getOutcomeCacheStats() {
+        return outcomeCache.getStats();
+    }
+
+    public ReactionCooldownTracker.CooldownStats getCooldownStats() {
+        return cooldownTracker.getStats();
+    }
+
+    /**
+     * 清空反应与连锁反应的冷却，服务端停止时调用
+     */
+    public void clearCooldowns() {
+        cooldownTracker.clear();
+    }
+
     @Override
     public ReactionLoader getReactionLoader() {
         return reactionLoader;
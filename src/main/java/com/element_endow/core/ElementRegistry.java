@@ -10,6 +10,7 @@ import org.apache.logging.log4j.Logger;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 public class ElementRegistry {
     private static final Logger LOGGER = LogManager.getLogger();
@@ -19,10 +20,15 @@ public class ElementRegistry {
 
     private final Map<String, RegistryObject<Attribute>> registeredAttributes;
     private final Map<String, AttributeData> attributeData;
+    //元素序号，按注册顺序分配且不再变化，用于紧凑的数组/位掩码表示
+    private final Map<String, Integer> elementOrdinals;
+    private final List<String> elementsByOrdinal;
 
     public ElementRegistry() {
         this.registeredAttributes = new ConcurrentHashMap<>();
         this.attributeData = new ConcurrentHashMap<>();
+        this.elementOrdinals = new ConcurrentHashMap<>();
+        this.elementsByOrdinal = new CopyOnWriteArrayList<>();
     }
 
     public boolean registerElement(String elementId, String displayName,
@@ -43,6 +49,8 @@ public class ElementRegistry {
 
             registeredAttributes.put(elementId, attribute);
             attributeData.put(elementId, new AttributeData(displayName, defaultValue, minValue, maxValue));
+            elementOrdinals.put(elementId, elementsByOrdinal.size());
+            elementsByOrdinal.add(elementId);
             return true;
         } catch (Exception e) {
             LOGGER.error("Failed to register element: {}", elementId, e);
@@ -63,6 +71,22 @@ public class ElementRegistry {
         return Collections.unmodifiableCollection(registeredAttributes.keySet());
     }
 
+    /**
+     * 获取元素序号，未注册返回-1
+     */
+    public int getElementOrdinal(String elementId) {
+        Integer ordinal = elementOrdinals.get(elementId);
+        return ordinal != null ? ordinal : -1;
+    }
+
+    public String getElementByOrdinal(int ordinal) {
+        return ordinal >= 0 && ordinal < elementsByOrdinal.size() ? elementsByOrdinal.get(ordinal) : null;
+    }
+
+    public int getElementCount() {
+        return elementsByOrdinal.size();
+    }
+
     public AttributeData getAttributeData(String elementId) {
         return attributeData.get(elementId);
     }
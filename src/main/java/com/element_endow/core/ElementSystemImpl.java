@@ -1,7 +1,12 @@
 package com.element_endow.core;
 
 import com.element_endow.api.*;
-import com.google.gson.JsonElement;
+import com.element_endow.core.compiled.ElementMask;
+import com.element_endow.core.dot.DotScheduler;
+import com.element_endow.core.effect.EffectSink;
+import com.element_endow.core.spatial.ElementSpatialIndex;
+import com.element_endow.data.ElementDataManager;
+import com.element_endow.data.RuleRegistry;
 import net.minecraft.world.entity.LivingEntity;
 import net.minecraft.world.entity.ai.attributes.Attribute;
 import net.minecraft.world.entity.ai.attributes.AttributeInstance;
@@ -24,6 +29,9 @@ public class ElementSystemImpl implements IElementSystem {
     private final ElementReactionSystem reactionSystem;
     private final ElementCombinationSystem combinationSystem;
     private final ElementMountSystem mountSystem;
+    private final ElementSpatialIndex spatialIndex;
+    private final DotScheduler dotScheduler;
+    private final EffectSink effectSink;
 
     // 时效性修饰符管理
     private final Map<LivingEntity, Map<UUID, TimedModifierInfo>> timedModifiers = new WeakHashMap<>();
@@ -32,8 +40,12 @@ public class ElementSystemImpl implements IElementSystem {
         this.registry = new ElementRegistry();
         this.config = new ElementConfig();
         this.disabledElements = ConcurrentHashMap.newKeySet();
-        this.reactionSystem = new ElementReactionSystem(this);
-        this.combinationSystem = new ElementCombinationSystem(this);
+        this.spatialIndex = new ElementSpatialIndex();
+        this.dotScheduler = new DotScheduler(this);
+        this.effectSink = new EffectSink();
+        RuleRegistry rules = ElementDataManager.getRuleRegistry();
+        this.reactionSystem = new ElementReactionSystem(this, config, spatialIndex, rules);
+        this.combinationSystem = new ElementCombinationSystem(this, config, rules);
         this.mountSystem = new ElementMountSystem(this);
 
         initializeFromConfig();
@@ -129,11 +141,81 @@ public class ElementSystemImpl implements IElementSystem {
         }
     }
 
+    /**
+     * 一次性扣除本次命中的全部元素消耗
+     * 只修改基础值，组合缓存与空间索引在全部扣除后各刷新一次，归零的元素立即退出元素掩码
+     */
+    @Override
+    public void consumeElements(LivingEntity entity, Map<String, Double> consumption) {
+        if (consumption.isEmpty()) {
+            return;
+        }
+
+        boolean changed = false;
+        for (Map.Entry<String, Double> entry : consumption.entrySet()) {
+            String elementId = entry.getKey();
+            Optional<Attribute> attribute = registry.getElementAttribute(elementId);
+            ElementRegistry.AttributeData data = registry.getAttributeData(elementId);
+            if (attribute.isEmpty() || data == null) {
+                continue;
+            }
+
+            AttributeInstance instance = entity.getAttribute(attribute.get());
+            if (instance == null) {
+                continue;
+            }
+
+            double oldValue = instance.getBaseValue();
+            double newValue = Math.max(data.minValue, oldValue - entry.getValue());
+            if (Math.abs(oldValue - newValue) > 0.001) {
+                instance.setBaseValue(newValue);
+                changed = true;
+            }
+        }
+
+        if (!changed) {
+            return;
+        }
+
+        combinationSystem.invalidateEntityCache(entity);
+        if (!entity.level().isClientSide) {
+            spatialIndex.update(entity, ElementMask.of(getElementVector(entity)));
+        }
+    }
+
     @Override
     public boolean hasElement(LivingEntity entity, String elementId) {
         return getElementValue(entity, elementId) > 0;
     }
 
+    @Override
+    public int getElementOrdinal(String elementId) {
+        return registry.getElementOrdinal(elementId);
+    }
+
+    @Override
+    public String getElementByOrdinal(int ordinal) {
+        return registry.getElementByOrdinal(ordinal);
+    }
+
+    @Override
+    public int getElementCount() {
+        return registry.getElementCount();
+    }
+
+    @Override
+    public double[] getElementVector(LivingEntity entity) {
+        int count = registry.getElementCount();
+        double[] values = new double[count];
+        for (int ordinal = 0; ordinal < count; ordinal++) {
+            String elementId = registry.getElementByOrdinal(ordinal);
+            if (elementId != null && !disabledElements.contains(elementId)) {
+                values[ordinal] = getElementValue(entity, elementId);
+            }
+        }
+        return values;
+    }
+
     @Override
     public DeferredRegister<Attribute> getAttributeRegister() {
         return ElementRegistry.ATTRIBUTES;
@@ -208,6 +290,10 @@ public class ElementSystemImpl implements IElementSystem {
             AttributeInstance instance = entity.getAttribute(attributeOpt.get());
             if (instance != null && instance.getModifier(modifierId) != null) {
                 instance.removeModifier(modifierId);
+                Map<UUID, TimedModifierInfo> entityModifiers = timedModifiers.get(entity);
+                if (entityModifiers != null) {
+                    entityModifiers.remove(modifierId);
+                }
                 return true;
             }
         }
@@ -234,13 +320,17 @@ public class ElementSystemImpl implements IElementSystem {
             // 记录应用前的值
             double beforeValue = instance.getValue();
 
-            // 移除可能存在的相同UUID的旧修饰符
-            if (instance.getModifier(modifier.getId()) != null) {
-                instance.removeModifier(modifier.getId());
-            }
+            // 相同UUID的旧修饰符数值未变时只重置时效，避免重复移除添加
+            AttributeModifier existing = instance.getModifier(modifier.getId());
+            if (existing == null || existing.getAmount() != modifier.getAmount()
+                    || existing.getOperation() != modifier.getOperation()) {
+                if (existing != null) {
+                    instance.removeModifier(modifier.getId());
+                }
 
-            // 应用新修饰符
-            instance.addTransientModifier(modifier);
+                // 应用新修饰符
+                instance.addTransientModifier(modifier);
+            }
 
             // 记录时效
             long currentTime = entity.level().getGameTime();
@@ -274,6 +364,54 @@ public class ElementSystemImpl implements IElementSystem {
         }
     }
 
+    @Override
+    public ModifierUpdate refreshTimedAttributeModifier(LivingEntity entity, ResourceLocation attributeId,
+                                                        AttributeModifier modifier, int durationTicks) {
+        try {
+            Optional<Attribute> attributeOpt = getAttributeById(attributeId);
+            if (attributeOpt.isEmpty()) {
+                LOGGER.warn("Attribute not registered: {}", attributeId);
+                return ModifierUpdate.FAILED;
+            }
+
+            AttributeInstance instance = entity.getAttribute(attributeOpt.get());
+            if (instance == null) {
+                return ModifierUpdate.FAILED;
+            }
+
+            long currentTime = entity.level().getGameTime();
+            Map<UUID, TimedModifierInfo> entityModifiers = timedModifiers.computeIfAbsent(entity, k -> new HashMap<>());
+            AttributeModifier existing = instance.getModifier(modifier.getId());
+
+            //数值与运算方式都未变，只处理时效
+            if (existing != null && existing.getAmount() == modifier.getAmount()
+                    && existing.getOperation() == modifier.getOperation()) {
+                TimedModifierInfo info = entityModifiers.get(modifier.getId());
+                if (info != null && durationTicks > 0
+                        && info.applyTime + info.duration - currentTime >= durationTicks / 2) {
+                    return ModifierUpdate.UNCHANGED;
+                }
+
+                entityModifiers.put(modifier.getId(), new TimedModifierInfo(
+                        attributeId, modifier.getId(), currentTime, durationTicks, modifier.getAmount()));
+                return ModifierUpdate.REFRESHED;
+            }
+
+            if (existing != null) {
+                instance.removeModifier(modifier.getId());
+            }
+            instance.addTransientModifier(modifier);
+
+            entityModifiers.put(modifier.getId(), new TimedModifierInfo(
+                    attributeId, modifier.getId(), currentTime, durationTicks, modifier.getAmount()));
+            return ModifierUpdate.APPLIED;
+
+        } catch (Exception e) {
+            LOGGER.error("Error refreshing timed attribute modifier: {}", attributeId, e);
+            return ModifierUpdate.FAILED;
+        }
+    }
+
     @Override
     public void checkAndRemoveExpiredModifiers(LivingEntity entity) {
         if (entity == null || !entity.isAlive()) {
@@ -286,24 +424,21 @@ public class ElementSystemImpl implements IElementSystem {
         }
 
         long currentTime = entity.level().getGameTime();
-        List<UUID> toRemove = new ArrayList<>();
-
-        for (Map.Entry<UUID, TimedModifierInfo> entry : entityModifiers.entrySet()) {
-            TimedModifierInfo info = entry.getValue();
+        List<TimedModifierInfo> toRemove = new ArrayList<>();
 
+        for (TimedModifierInfo info : entityModifiers.values()) {
             if (info.isExpired(currentTime)) {
-                // 移除过期的修饰符
-                removeAttributeModifier(entity, info.attributeId, info.modifierId);
-                toRemove.add(entry.getKey());
-
-                LOGGER.debug("Removed expired attribute modifier: entity={}, attribute={}, value={}",
-                        entity, info.attributeId, info.value);
+                toRemove.add(info);
             }
         }
 
-        // 清理记录
-        for (UUID modifierId : toRemove) {
-            entityModifiers.remove(modifierId);
+        // 移除过期的修饰符并清理记录
+        for (TimedModifierInfo info : toRemove) {
+            removeAttributeModifier(entity, info.attributeId, info.modifierId);
+            entityModifiers.remove(info.modifierId);
+
+            LOGGER.debug("Removed expired attribute modifier: entity={}, attribute={}, value={}",
+                    entity, info.attributeId, info.value);
         }
 
         if (entityModifiers.isEmpty()) {
@@ -353,11 +488,6 @@ public class ElementSystemImpl implements IElementSystem {
         LOGGER.info("Element system data reloaded");
     }
 
-    // 添加数据包加载支持
-    public void loadCombinationsFromResources(Map<ResourceLocation, JsonElement> resources) {
-        combinationSystem.loadFromResources(resources);
-    }
-
     private String formatDisplayName(String elementId) {
         String[] parts = elementId.split(":");
         if (parts.length == 2) {
@@ -369,4 +499,20 @@ public class ElementSystemImpl implements IElementSystem {
     public ElementRegistry getRegistry() {
         return this.registry;
     }
+
+    public ElementConfig getConfig() {
+        return this.config;
+    }
+
+    public ElementSpatialIndex getSpatialIndex() {
+        return this.spatialIndex;
+    }
+
+    public DotScheduler getDotScheduler() {
+        return this.dotScheduler;
+    }
+
+    public EffectSink getEffectSink() {
+        return this.effectSink;
+    }
 }
\ No newline at end of file
@@ -1,6 +1,7 @@
 package com.element_endow.core.cache;
 
-import com.element_endow.api.IElementSystem;
+import com.element_endow.core.compiled.CombinationIndex;
+import com.element_endow.core.compiled.CompiledCombination;
 import net.minecraft.world.entity.LivingEntity;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -9,68 +10,149 @@ import java.util.*;
 
 /**
  * 组合状态缓存
+ * 每个组合按自身轮询间隔到期，元素值变化时整体重检
+ * 组合索引增量重建后，上一代的条目沿用到新索引，只有变化的组合立即到期
  */
 public class CombinationCache {
     private static final Logger LOGGER = LogManager.getLogger();
 
     //缓存：实体-激活的组合
     private final Map<LivingEntity, CacheEntry> cache = new WeakHashMap<>();
+    //重载后沿用到新索引的条目数
+    private long carriedEntries = 0;
 
     //元素变化检测阈值
     private static final double ELEMENT_CHANGE_THRESHOLD = 0.01;
-    //缓存有效期（ticks）
-    private static final int CACHE_DURATION = 40; // 2秒
+
+    /**
+     * 重检范围
+     */
+    public enum RecheckScope {
+        //无需重检
+        NONE,
+        //只重检到期的组合
+        DUE,
+        //重检全部组合
+        FULL
+    }
 
     private static class CacheEntry {
         public final Set<String> activeCombinations;
-        public final Map<String, Double> elementSnapshot;
-        public final long lastUpdateTime;
+        //按元素序号索引的元素值快照
+        public final double[] elementSnapshot;
+        //缓存所属的组合索引，索引完整重建后整体失效
+        public final CombinationIndex index;
+        //按组合槽位记录的下次重检tick
+        public final int[] nextCheckTicks;
+        public final int nextDueTick;
         public final int tickCount;
 
-        public CacheEntry(Set<String> combinations, Map<String, Double> elements, long time, int ticks) {
+        public CacheEntry(Set<String> combinations, double[] elements, CombinationIndex index,
+                          int[] nextCheckTicks, int ticks) {
             this.activeCombinations = combinations;
             this.elementSnapshot = elements;
-            this.lastUpdateTime = time;
+            this.index = index;
+            this.nextCheckTicks = nextCheckTicks;
             this.tickCount = ticks;
+
+            int nextDue = Integer.MAX_VALUE;
+            for (int tick : nextCheckTicks) {
+                nextDue = Math.min(nextDue, tick);
+            }
+            this.nextDueTick = nextDue;
         }
     }
 
     /**
-     * 检查是否需要重新计算组合
+     * 确定实体需要重检的范围
      */
-    public boolean shouldRecheck(LivingEntity entity, IElementSystem elementSystem, int currentTick) {
+    public RecheckScope getRecheckScope(LivingEntity entity, double[] elementValues,
+                                        CombinationIndex index, int currentTick) {
         CacheEntry entry = cache.get(entity);
+        if (entry != null && entry.index != index) {
+            entry = carryOver(entity, entry, index);
+        }
 
-        // 没有缓存，需要检查
+        //没有缓存或索引已完整重建，需要全部检查
         if (entry == null) {
-            return true;
+            return RecheckScope.FULL;
         }
 
-        //缓存过期
-        if (currentTick - entry.tickCount > CACHE_DURATION) {
-            return true;
+        //元素值有显著变化
+        if (hasElementValuesChanged(elementValues, entry.elementSnapshot)) {
+            return RecheckScope.FULL;
+        }
+
+        //部分组合的轮询间隔到期
+        return currentTick >= entry.nextDueTick ? RecheckScope.DUE : RecheckScope.NONE;
+    }
+
+    /**
+     * 索引由条目所属的一代增量构建而来时，把条目迁移到新索引：
+     * 未变化组合的重检时间不变，新增、修改与删除的组合槽位立即到期；否则返回null
+     */
+    private CacheEntry carryOver(LivingEntity entity, CacheEntry entry, CombinationIndex index) {
+        if (!index.isIncrementalFrom(entry.index)) {
+            return null;
+        }
+
+        int[] nextCheckTicks = Arrays.copyOf(entry.nextCheckTicks, index.getSlotCount());
+        Arrays.fill(nextCheckTicks, Math.min(entry.nextCheckTicks.length, nextCheckTicks.length),
+                nextCheckTicks.length, Integer.MAX_VALUE);
+        BitSet changedSlots = index.getChangedSlots();
+        for (int slot = changedSlots.nextSetBit(0); slot >= 0 && slot < nextCheckTicks.length;
+             slot = changedSlots.nextSetBit(slot + 1)) {
+            nextCheckTicks[slot] = Integer.MIN_VALUE;
         }
 
-        //检查元素值是否有显著变化
-        return hasElementValuesChanged(entity, elementSystem, entry.elementSnapshot);
+        CacheEntry carried = new CacheEntry(entry.activeCombinations, entry.elementSnapshot, index,
+                nextCheckTicks, entry.tickCount);
+        cache.put(entity, carried);
+        carriedEntries++;
+        return carried;
+    }
+
+    /**
+     * 检查某个组合是否到期
+     */
+    public boolean isDue(LivingEntity entity, CompiledCombination combination, int currentTick) {
+        CacheEntry entry = cache.get(entity);
+        if (entry == null || combination.slot >= entry.nextCheckTicks.length) {
+            return true;
+        }
+        return currentTick >= entry.nextCheckTicks[combination.slot];
     }
 
     /**
      * 更新缓存
+     * @param fullCheck 是否重检了全部组合，否则只刷新到期组合的下次重检时间
      */
-    public void updateCache(LivingEntity entity, Set<String> combinations,
-                            IElementSystem elementSystem, int currentTick) {
-        //创建元素快照
-        Map<String, Double> elementSnapshot = createElementSnapshot(entity, elementSystem);
+    public void updateCache(LivingEntity entity, Set<String> combinations, double[] elementValues,
+                            CombinationIndex index, boolean fullCheck, int currentTick) {
+        CacheEntry previous = cache.get(entity);
+        boolean keepSchedule = !fullCheck && previous != null && previous.index == index;
+
+        //按完整索引的槽位数分配，维度分片中的组合保留原槽位
+        int[] nextCheckTicks = new int[index.getSlotCount()];
+        Arrays.fill(nextCheckTicks, Integer.MAX_VALUE);
+        for (CompiledCombination combination : index.getCombinations()) {
+            int slot = combination.slot;
+            if (keepSchedule && currentTick < previous.nextCheckTicks[slot]) {
+                nextCheckTicks[slot] = previous.nextCheckTicks[slot];
+            } else {
+                nextCheckTicks[slot] = combination.pollInterval > 0
+                        ? currentTick + combination.pollInterval
+                        : Integer.MAX_VALUE;
+            }
+        }
 
-        CacheEntry entry = new CacheEntry(
+        cache.put(entity, new CacheEntry(
                 new HashSet<>(combinations),
-                elementSnapshot,
-                System.currentTimeMillis(),
+                elementValues.clone(),
+                index,
+                nextCheckTicks,
                 currentTick
-        );
-
-        cache.put(entity, entry);
+        ));
     }
 
     /**
@@ -95,37 +177,22 @@ public class CombinationCache {
         cache.clear();
     }
 
-    /**
-     * 创建元素值快照
-     */
-    private Map<String, Double> createElementSnapshot(LivingEntity entity, IElementSystem elementSystem) {
-        Map<String, Double> snapshot = new HashMap<>();
-        for (String elementId : elementSystem.getEnabledElements()) {
-            double value = elementSystem.getElementValue(entity, elementId);
-            if (value > 0) {
-                snapshot.put(elementId, value);
-            }
-        }
-        return snapshot;
-    }
-
     /**
      * 检查元素值是否发生显著变化
      */
-    private boolean hasElementValuesChanged(LivingEntity entity, IElementSystem elementSystem,
-                                            Map<String, Double> snapshot) {
-        //检查差异（与快照）
-        for (String elementId : elementSystem.getEnabledElements()) {
-            double currentValue = elementSystem.getElementValue(entity, elementId);
-            Double snapshotValue = snapshot.get(elementId);
+    private boolean hasElementValuesChanged(double[] current, double[] snapshot) {
+        int length = Math.max(current.length, snapshot.length);
+        for (int ordinal = 0; ordinal < length; ordinal++) {
+            double currentValue = ordinal < current.length ? current[ordinal] : 0.0;
+            double snapshotValue = ordinal < snapshot.length ? snapshot[ordinal] : 0.0;
 
             //新增或移除元素
-            if ((currentValue > 0) != (snapshotValue != null && snapshotValue > 0)) {
+            if ((currentValue > 0) != (snapshotValue > 0)) {
                 return true;
             }
 
             //值变化超过阈值
-            if (snapshotValue != null && Math.abs(currentValue - snapshotValue) > ELEMENT_CHANGE_THRESHOLD) {
+            if (snapshotValue > 0 && Math.abs(currentValue - snapshotValue) > ELEMENT_CHANGE_THRESHOLD) {
                 return true;
             }
         }
@@ -137,14 +204,16 @@ public class CombinationCache {
      * 获取缓存统计信息（用于调试）
      */
     public CacheStats getStats() {
-        return new CacheStats(cache.size());
+        return new CacheStats(cache.size(), carriedEntries);
     }
 
     public static class CacheStats {
         public final int cachedEntities;
+        public final long carriedEntries;
 
-        public CacheStats(int cachedEntities) {
+        public CacheStats(int cachedEntities, long carriedEntries) {
             this.cachedEntities = cachedEntities;
+            this.carriedEntries = carriedEntries;
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,186 @@
+package com.element_endow.core.cache;
+
+import it.unimi.dsi.fastutil.ints.Int2IntMap;
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectIterator;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * 反应内置冷却表
+ * 以(攻击者ID, 目标ID)为键，每个键对应一个按冷却槽位索引的到期tick数组，
+ * 攻击与防御方向各占一个槽位；另按目标ID记录连锁反应的冷却
+ */
+public class ReactionCooldownTracker {
+    //清理过期条目的间隔（tick）
+    private static final int PURGE_INTERVAL = 200;
+
+    private final Long2ObjectOpenHashMap<int[]> cooldowns = new Long2ObjectOpenHashMap<>();
+    //目标ID -> 连锁反应冷却到期tick
+    private final Int2IntOpenHashMap cascadeCooldowns = new Int2IntOpenHashMap();
+    private int slotCount = 0;
+    private int lastPurgeTick = 0;
+    private long cooldownHits = 0;
+
+    /**
+     * 重置冷却表，反应索引重建后槽位会变化
+     */
+    public synchronized void reset(int cooldownSlots) {
+        cooldowns.clear();
+        cascadeCooldowns.clear();
+        slotCount = cooldownSlots * 2;
+    }
+
+    /**
+     * 清空全部冷却，保留槽位数
+     * 到期时间按世界游戏时间记录，实体ID在新世界中会重复使用，服务端停止时必须清空
+     */
+    public synchronized void clear() {
+        cooldowns.clear();
+        cascadeCooldowns.clear();
+        lastPurgeTick = 0;
+    }
+
+    /**
+     * 增量重载后保留未变化反应的冷却，重新编译的槽位清零，冷却表按新的槽位数扩展
+     */
+    public synchronized void retain(int cooldownSlots, BitSet changedSlots) {
+        int newSlotCount = cooldownSlots * 2;
+        ObjectIterator<Long2ObjectMap.Entry<int[]>> iterator = cooldowns.long2ObjectEntrySet().fastIterator();
+        while (iterator.hasNext()) {
+            Long2ObjectMap.Entry<int[]> entry = iterator.next();
+            int[] expiries = entry.getValue().length == newSlotCount
+                    ? entry.getValue()
+                    : Arrays.copyOf(entry.getValue(), newSlotCount);
+            for (int slot = changedSlots.nextSetBit(0); slot >= 0; slot = changedSlots.nextSetBit(slot + 1)) {
+                if (slotIndex(slot, true) < newSlotCount) {
+                    expiries[slotIndex(slot, true)] = 0;
+                    expiries[slotIndex(slot, false)] = 0;
+                }
+            }
+            entry.setValue(expiries);
+        }
+        slotCount = newSlotCount;
+    }
+
+    /**
+     * 检查反应是否在冷却中，冷却中会计入统计
+     */
+    public synchronized boolean isOnCooldown(int attackerId, int targetId, int cooldownSlot, boolean attack, int currentTick) {
+        int[] expiries = cooldowns.get(pairKey(attackerId, targetId));
+        if (expiries == null) {
+            return false;
+        }
+
+        int expiry = expiries[slotIndex(cooldownSlot, attack)];
+        //按差值比较，tick计数溢出后仍然正确
+        if (expiry != 0 && currentTick - expiry < 0) {
+            cooldownHits++;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 记录反应触发，开始冷却
+     */
+    public synchronized void startCooldown(int attackerId, int targetId, int cooldownSlot, boolean attack,
+                                           int currentTick, int cooldown) {
+        if (slotCount == 0) {
+            return;
+        }
+
+        int[] expiries = cooldowns.computeIfAbsent(pairKey(attackerId, targetId), k -> new int[slotCount]);
+        int expiry = currentTick + cooldown;
+        //0表示没有冷却
+        expiries[slotIndex(cooldownSlot, attack)] = expiry != 0 ? expiry : 1;
+
+        if (currentTick - lastPurgeTick >= PURGE_INTERVAL) {
+            purge(currentTick);
+            lastPurgeTick = currentTick;
+        }
+    }
+
+    /**
+     * 检查目标是否处于连锁反应冷却中
+     */
+    public synchronized boolean isCascadeOnCooldown(int targetId, int currentTick) {
+        int expiry = cascadeCooldowns.get(targetId);
+        if (expiry != 0 && currentTick - expiry < 0) {
+            cooldownHits++;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 连锁结束后开始目标的连锁冷却
+     */
+    public synchronized void startCascadeCooldown(int targetId, int currentTick, int cooldown) {
+        if (cooldown <= 0) {
+            return;
+        }
+        int expiry = currentTick + cooldown;
+        cascadeCooldowns.put(targetId, expiry != 0 ? expiry : 1);
+
+        if (currentTick - lastPurgeTick >= PURGE_INTERVAL) {
+            purge(currentTick);
+            lastPurgeTick = currentTick;
+        }
+    }
+
+    /**
+     * 移除所有槽位都已过期的键
+     */
+    private void purge(int currentTick) {
+        ObjectIterator<Long2ObjectMap.Entry<int[]>> iterator = cooldowns.long2ObjectEntrySet().fastIterator();
+        while (iterator.hasNext()) {
+            int[] expiries = iterator.next().getValue();
+            boolean active = false;
+            for (int expiry : expiries) {
+                if (expiry != 0 && currentTick - expiry < 0) {
+                    active = true;
+                    break;
+                }
+            }
+            if (!active) {
+                iterator.remove();
+            }
+        }
+
+        ObjectIterator<Int2IntMap.Entry> cascadeIterator = cascadeCooldowns.int2IntEntrySet().fastIterator();
+        while (cascadeIterator.hasNext()) {
+            if (currentTick - cascadeIterator.next().getIntValue() >= 0) {
+                cascadeIterator.remove();
+            }
+        }
+    }
+
+    /**
+     * 获取冷却统计信息（用于调试）
+     */
+    public synchronized CooldownStats getStats() {
+        return new CooldownStats(cooldowns.size() + cascadeCooldowns.size(), cooldownHits);
+    }
+
+    private static long pairKey(int attackerId, int targetId) {
+        return ((long) attackerId << 32) | (targetId & 0xFFFFFFFFL);
+    }
+
+    private static int slotIndex(int cooldownSlot, boolean attack) {
+        return cooldownSlot * 2 + (attack ? 0 : 1);
+    }
+
+    public static class CooldownStats {
+        public final int trackedPairs;
+        public final long cooldownHits;
+
+        public CooldownStats(int trackedPairs, long cooldownHits) {
+            this.trackedPairs = trackedPairs;
+            this.cooldownHits = cooldownHits;
+        }
+    }
+}
\ No newline at end of file
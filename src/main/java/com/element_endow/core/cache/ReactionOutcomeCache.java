@@ -0,0 +1,127 @@
+package com.element_endow.core.cache;
+
+import com.element_endow.core.compiled.ReactionIndex;
+import com.element_endow.core.compiled.ReactionPlan;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 反应求值计划缓存
+ * 以(维度分片, 攻击方掩码, 目标掩码, 攻防方向)为键，按LRU淘汰；确定性计划中带有已合并的结果
+ * 条目记录构建时的规则集代数，规则重载后不整体清空；增量重载时不涉及变化元素对的条目沿用到新一代，
+ * 其余旧代条目在命中时重建或随LRU淘汰
+ */
+public class ReactionOutcomeCache {
+    private final int maxSize;
+    private final Map<OutcomeKey, CachedPlan> cache;
+
+    private long hits = 0;
+    private long misses = 0;
+    //沿用到新一代的条目数
+    private long carried = 0;
+
+    private static final class OutcomeKey {
+        final int shardId;
+        final long attackerMask;
+        final long targetMask;
+        final boolean attack;
+
+        OutcomeKey(int shardId, long attackerMask, long targetMask, boolean attack) {
+            this.shardId = shardId;
+            this.attackerMask = attackerMask;
+            this.targetMask = targetMask;
+            this.attack = attack;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof OutcomeKey)) return false;
+            OutcomeKey that = (OutcomeKey) o;
+            return shardId == that.shardId && attackerMask == that.attackerMask
+                    && targetMask == that.targetMask && attack == that.attack;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = shardId;
+            result = 31 * result + Long.hashCode(attackerMask);
+            result = 31 * result + Long.hashCode(targetMask);
+            return 31 * result + (attack ? 1 : 0);
+        }
+    }
+
+    private static final class CachedPlan {
+        final ReactionPlan plan;
+        int generation;
+
+        CachedPlan(ReactionPlan plan, int generation) {
+            this.plan = plan;
+            this.generation = generation;
+        }
+    }
+
+    public ReactionOutcomeCache(int maxSize) {
+        this.maxSize = Math.max(16, maxSize);
+        this.cache = new LinkedHashMap<>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<OutcomeKey, CachedPlan> eldest) {
+                return size() > ReactionOutcomeCache.this.maxSize;
+            }
+        };
+    }
+
+    /**
+     * 获取掩码对的求值计划，未命中时从索引构建
+     */
+    public synchronized ReactionPlan get(ReactionIndex index, long attackerMask, long targetMask, boolean attack) {
+        OutcomeKey key = new OutcomeKey(index.getShardId(), attackerMask, targetMask, attack);
+        CachedPlan cached = cache.get(key);
+        if (cached != null && index.isPlanCurrent(cached.generation, attackerMask, targetMask)) {
+            if (cached.generation != index.getGeneration()) {
+                cached.generation = index.getGeneration();
+                carried++;
+            }
+            hits++;
+            return cached.plan;
+        }
+
+        misses++;
+        ReactionPlan plan = ReactionPlan.build(index, attackerMask, targetMask, attack);
+        cache.put(key, new CachedPlan(plan, index.getGeneration()));
+        return plan;
+    }
+
+    public synchronized void clear() {
+        cache.clear();
+    }
+
+    /**
+     * 获取缓存统计信息（用于调试）
+     */
+    public synchronized CacheStats getStats() {
+        return new CacheStats(cache.size(), maxSize, hits, misses, carried);
+    }
+
+    public static class CacheStats {
+        public final int size;
+        public final int maxSize;
+        public final long hits;
+        public final long misses;
+        public final long carried;
+
+        public CacheStats(int size, int maxSize, long hits, long misses, long carried) {
+            this.size = size;
+            this.maxSize = maxSize;
+            this.hits = hits;
+            this.misses = misses;
+            this.carried = carried;
+        }
+
+        public double getHitRate() {
+            long total = hits + misses;
+            return total > 0 ? (double) hits / total : 0.0;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,201 @@
+package com.element_endow.core.compiled;
+
+import com.element_endow.api.IElementSystem;
+import com.element_endow.data.CombinationLoader;
+import net.minecraft.resources.ResourceLocation;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 组合编译索引
+ * 加载时构建一次，构建后不可变，可被多个线程同时读取
+ * 带维度条件的组合按维度分片，分片只含该维度可能匹配的组合，与维度无关的组合在分片间共享
+ * 增量构建时未变化的组合沿用上一代的编译结果与槽位，并记录变化的槽位
+ */
+public final class CombinationIndex {
+    public static final CombinationIndex EMPTY = new CombinationIndex(Collections.emptyList(), -1, 0, 0, false, null,
+            Integer.MIN_VALUE, new BitSet());
+    //元素值变化检测的轮询间隔（tick）
+    public static final int VALUE_POLL_INTERVAL = 40;
+
+    private final List<CompiledCombination> combinations;
+    private final Map<String, CompiledCombination> byId;
+    //槽位 -> 组合，增量构建后删除的组合留下空位
+    private final CompiledCombination[] bySlot;
+    //构建时的规则集代数，规则重载后需要重建
+    private final int generation;
+    //构建时已注册的元素数，元素数变化后需要重建
+    private final int elementCount;
+    //实体轮询间隔，取元素值检测间隔与各组合轮询间隔的最小值
+    private final int pollInterval;
+    //完整索引的槽位数，分片中组合保留原槽位
+    private final int slotCount;
+    //存在带维度条件的组合时才需要分片
+    private final boolean dimensional;
+    //分片所属维度，完整索引为null
+    private final ResourceLocation dimension;
+    //增量构建所依据的上一代代数，完整构建时为MIN_VALUE
+    private final int previousGeneration;
+    //增量构建中新增、修改或删除的组合槽位
+    private final BitSet changedSlots;
+    //维度ID -> 分片，只在完整索引上使用
+    private final Map<ResourceLocation, CombinationIndex> shards = new ConcurrentHashMap<>();
+
+    private CombinationIndex(List<CompiledCombination> combinations, int generation, int elementCount, int slotCount,
+                             boolean dimensional, ResourceLocation dimension, int previousGeneration,
+                             BitSet changedSlots) {
+        this.combinations = combinations;
+        this.generation = generation;
+        this.elementCount = elementCount;
+        this.slotCount = slotCount;
+        this.dimensional = dimensional;
+        this.dimension = dimension;
+        this.previousGeneration = previousGeneration;
+        this.changedSlots = changedSlots;
+        int interval = VALUE_POLL_INTERVAL;
+        for (CompiledCombination combination : combinations) {
+            if (combination.pollInterval > 0) {
+                interval = Math.min(interval, combination.pollInterval);
+            }
+        }
+        this.pollInterval = interval;
+        Map<String, CompiledCombination> map = new HashMap<>();
+        CompiledCombination[] slots = new CompiledCombination[slotCount];
+        for (CompiledCombination combination : combinations) {
+            map.put(combination.id, combination);
+            slots[combination.slot] = combination;
+        }
+        this.byId = map;
+        this.bySlot = slots;
+    }
+
+    public static CombinationIndex build(Collection<CombinationLoader.ElementCombination> source,
+                                         IElementSystem elementSystem, int generation) {
+        return build(source, elementSystem, generation, null);
+    }
+
+    /**
+     * 构建索引
+     * @param previous 上一代索引，元素注册数未变化时增量构建：未变化的组合沿用原编译结果，
+     *                 修改的组合保留原槽位，新组合追加在后
+     */
+    public static CombinationIndex build(Collection<CombinationLoader.ElementCombination> source,
+                                         IElementSystem elementSystem, int generation, CombinationIndex previous) {
+        boolean incremental = previous != null && previous.generation >= 0
+                && previous.elementCount == elementSystem.getElementCount();
+
+        //按ID排序，保证槽位稳定
+        List<CombinationLoader.ElementCombination> sorted = new ArrayList<>(source);
+        sorted.sort(Comparator.comparing(combination -> combination.id));
+
+        List<CompiledCombination> compiled = new ArrayList<>(sorted.size());
+        int slotCount = incremental ? previous.slotCount : 0;
+        BitSet changedSlots = new BitSet();
+        Set<String> ids = new HashSet<>();
+        boolean dimensional = false;
+        for (CombinationLoader.ElementCombination combination : sorted) {
+            CompiledCombination old = incremental ? previous.byId.get(combination.id) : null;
+            CompiledCombination compiledCombination;
+            if (old != null && old.source == combination) {
+                compiledCombination = old;
+            } else {
+                int slot = old != null ? old.slot : slotCount++;
+                compiledCombination = CompiledCombination.compile(slot, combination, elementSystem);
+                changedSlots.set(slot);
+            }
+            if (compiledCombination.dimensions != null) {
+                dimensional = true;
+            }
+            ids.add(combination.id);
+            compiled.add(compiledCombination);
+        }
+
+        if (!incremental) {
+            return new CombinationIndex(Collections.unmodifiableList(compiled), generation,
+                    elementSystem.getElementCount(), compiled.size(), dimensional, null, Integer.MIN_VALUE, new BitSet());
+        }
+
+        for (CompiledCombination old : previous.combinations) {
+            if (!ids.contains(old.id)) {
+                changedSlots.set(old.slot);
+            }
+        }
+        return new CombinationIndex(Collections.unmodifiableList(compiled), generation, elementSystem.getElementCount(),
+                slotCount, dimensional, null, previous.generation, changedSlots);
+    }
+
+    /**
+     * 获取维度分片，首次访问时构建
+     * 没有任何带维度条件的组合时直接返回自身
+     */
+    public CombinationIndex forDimension(ResourceLocation dimension) {
+        if (!dimensional) {
+            return this;
+        }
+        return shards.computeIfAbsent(dimension, this::buildShard);
+    }
+
+    private CombinationIndex buildShard(ResourceLocation dimension) {
+        String dimensionId = dimension.toString();
+        List<CompiledCombination> subset = new ArrayList<>();
+        for (CompiledCombination combination : combinations) {
+            if (DimensionScope.allows(combination.dimensions, dimensionId)) {
+                subset.add(combination);
+            }
+        }
+        //分片中的组合都能在该维度匹配，无需再分
+        return new CombinationIndex(Collections.unmodifiableList(subset), generation, elementCount, slotCount, false,
+                dimension, previousGeneration, changedSlots);
+    }
+
+    public List<CompiledCombination> getCombinations() {
+        return combinations;
+    }
+
+    public CompiledCombination get(String id) {
+        return byId.get(id);
+    }
+
+    /**
+     * 按槽位获取组合，只在完整索引上有效
+     */
+    public CompiledCombination getBySlot(int slot) {
+        return slot >= 0 && slot < bySlot.length ? bySlot[slot] : null;
+    }
+
+    public int getPollInterval() {
+        return pollInterval;
+    }
+
+    public int size() {
+        return combinations.size();
+    }
+
+    /**
+     * 槽位数，按完整索引计算，分片与完整索引相同
+     */
+    public int getSlotCount() {
+        return slotCount;
+    }
+
+    public int getGeneration() {
+        return generation;
+    }
+
+    /**
+     * 是否由另一索引所在的一代增量构建而来，且属于同一维度分片；
+     * 成立时另一索引上的缓存只需重检变化的槽位
+     */
+    public boolean isIncrementalFrom(CombinationIndex other) {
+        return other.generation == previousGeneration && Objects.equals(other.dimension, dimension);
+    }
+
+    public BitSet getChangedSlots() {
+        return changedSlots;
+    }
+
+    public boolean isStale(IElementSystem elementSystem, int ruleGeneration) {
+        return generation != ruleGeneration || elementCount != elementSystem.getElementCount();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,275 @@
+package com.element_endow.core.compiled;
+
+import com.element_endow.api.IElementSystem;
+import com.element_endow.data.CombinationLoader;
+import com.element_endow.data.RuleCodec;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.world.entity.ai.attributes.AttributeModifier;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * 编译后的元素组合
+ * 元素ID在加载时解析为序号，匹配时只做数组读取
+ */
+public final class CompiledCombination {
+    //组合属性修饰符的时效（tick）
+    public static final int MODIFIER_DURATION = 12000;
+
+    public final int slot;
+    public final String id;
+    public final CombinationLoader.ElementCombination source;
+
+    //必需元素中存在未注册元素时，组合永远无法匹配
+    public final boolean unsatisfiable;
+    public final int[] requiredOrdinals;
+    public final int[] forbiddenOrdinals;
+    public final int[] minValueOrdinals;
+    public final double[] minValues;
+    //不含维度条件的条件，维度由分片保证
+    public final Map<String, Object> conditions;
+    //可匹配的维度，null表示所有维度
+    public final Set<String> dimensions;
+    //预先构建的属性修饰符，UUID由组合ID与属性ID确定
+    public final ResourceLocation[] modifierAttributes;
+    public final AttributeModifier[] modifiers;
+    public final EvaluationClass evaluationClass;
+    //轮询间隔（tick），0表示只在元素值变化时重检
+    public final int pollInterval;
+    //编译时已注册的元素数，由磁盘缓存还原的结果只在元素数相同时使用
+    public final int elementCount;
+
+    private CompiledCombination(int slot, CombinationLoader.ElementCombination source, boolean unsatisfiable,
+                                int[] requiredOrdinals, int[] forbiddenOrdinals,
+                                int[] minValueOrdinals, double[] minValues,
+                                Map<String, Object> conditions, Set<String> dimensions,
+                                ResourceLocation[] modifierAttributes, AttributeModifier[] modifiers,
+                                EvaluationClass evaluationClass, int pollInterval, int elementCount) {
+        this.slot = slot;
+        this.id = source.id;
+        this.source = source;
+        this.unsatisfiable = unsatisfiable;
+        this.requiredOrdinals = requiredOrdinals;
+        this.forbiddenOrdinals = forbiddenOrdinals;
+        this.minValueOrdinals = minValueOrdinals;
+        this.minValues = minValues;
+        this.conditions = conditions;
+        this.dimensions = dimensions;
+        this.modifierAttributes = modifierAttributes;
+        this.modifiers = modifiers;
+        this.evaluationClass = evaluationClass;
+        this.pollInterval = pollInterval;
+        this.elementCount = elementCount;
+    }
+
+    /**
+     * 编译组合，组合带有从磁盘缓存还原的编译结果且元素数未变化时直接沿用
+     */
+    public static CompiledCombination compile(int slot, CombinationLoader.ElementCombination combination,
+                                              IElementSystem elementSystem) {
+        CompiledCombination restored = combination.compiled;
+        if (restored != null && restored.elementCount == elementSystem.getElementCount()) {
+            return restored.slot == slot ? restored : restored.withSlot(slot);
+        }
+
+        boolean unsatisfiable = false;
+
+        List<Integer> required = new ArrayList<>();
+        for (String elementId : combination.requiredElements) {
+            int ordinal = elementSystem.getElementOrdinal(elementId);
+            if (ordinal < 0) {
+                unsatisfiable = true;
+            } else {
+                required.add(ordinal);
+            }
+        }
+
+        //未注册的禁止元素不可能存在，直接忽略
+        List<Integer> forbidden = new ArrayList<>();
+        for (String elementId : combination.forbiddenElements) {
+            int ordinal = elementSystem.getElementOrdinal(elementId);
+            if (ordinal >= 0) {
+                forbidden.add(ordinal);
+            }
+        }
+
+        int[] minOrdinals = new int[combination.minValues.size()];
+        double[] minValues = new double[combination.minValues.size()];
+        int index = 0;
+        for (Map.Entry<String, Double> entry : combination.minValues.entrySet()) {
+            int ordinal = elementSystem.getElementOrdinal(entry.getKey());
+            if (ordinal < 0) {
+                unsatisfiable = true;
+                continue;
+            }
+            minOrdinals[index] = ordinal;
+            minValues[index] = entry.getValue();
+            index++;
+        }
+
+        List<ResourceLocation> modifierAttributes = new ArrayList<>();
+        List<AttributeModifier> modifiers = new ArrayList<>();
+        for (CombinationLoader.AttributeEffect effect : combination.attributeEffects) {
+            ResourceLocation attributeId = ResourceLocation.tryParse(effect.attribute);
+            if (attributeId == null) {
+                continue;
+            }
+
+            UUID modifierId = UUID.nameUUIDFromBytes((combination.id + ":" + effect.attribute).getBytes());
+            modifierAttributes.add(attributeId);
+            modifiers.add(new AttributeModifier(
+                    modifierId,
+                    "element_endow.combination." + effect.operation,
+                    effect.value,
+                    getOperation(effect.operation)
+            ));
+        }
+
+        Map<String, Object> conditions = DimensionScope.strip(combination.conditions);
+        EvaluationClass evaluationClass = EvaluationClass.infer(conditions);
+        //只依赖元素值但带属性修饰符的组合，仍需在修饰符过期前重检以延长时效
+        int interval = combination.checkInterval > 0 ? combination.checkInterval : evaluationClass.defaultInterval;
+        if (interval == 0 && !modifiers.isEmpty()) {
+            interval = MODIFIER_DURATION / 2;
+        }
+
+        return new CompiledCombination(slot, combination, unsatisfiable,
+                toArray(required), toArray(forbidden),
+                Arrays.copyOf(minOrdinals, index), Arrays.copyOf(minValues, index),
+                conditions, DimensionScope.of(combination.conditions),
+                modifierAttributes.toArray(new ResourceLocation[0]),
+                modifiers.toArray(new AttributeModifier[0]),
+                evaluationClass, interval, elementSystem.getElementCount());
+    }
+
+    /**
+     * 相同编译结果使用另一个槽位
+     */
+    public CompiledCombination withSlot(int slot) {
+        return new CompiledCombination(slot, source, unsatisfiable, requiredOrdinals, forbiddenOrdinals,
+                minValueOrdinals, minValues, conditions, dimensions, modifierAttributes, modifiers,
+                evaluationClass, pollInterval, elementCount);
+    }
+
+    /**
+     * 写入磁盘缓存，槽位在构建索引时分配，不写入
+     */
+    public void write(DataOutput out) throws IOException {
+        out.writeBoolean(unsatisfiable);
+        RuleCodec.writeInts(out, requiredOrdinals);
+        RuleCodec.writeInts(out, forbiddenOrdinals);
+        RuleCodec.writeInts(out, minValueOrdinals);
+        RuleCodec.writeDoubleArray(out, minValues);
+        RuleCodec.writeConditions(out, conditions);
+        RuleCodec.writeStrings(out, dimensions);
+        out.writeInt(modifiers.length);
+        for (int i = 0; i < modifiers.length; i++) {
+            AttributeModifier modifier = modifiers[i];
+            out.writeUTF(modifierAttributes[i].toString());
+            out.writeLong(modifier.getId().getMostSignificantBits());
+            out.writeLong(modifier.getId().getLeastSignificantBits());
+            out.writeUTF(modifier.getName());
+            out.writeDouble(modifier.getAmount());
+            out.writeByte(modifier.getOperation().toValue());
+        }
+        out.writeByte(evaluationClass.ordinal());
+        out.writeInt(pollInterval);
+    }
+
+    /**
+     * 从磁盘缓存读取编译结果
+     * @param elementCount 写入缓存时已注册的元素数
+     */
+    public static CompiledCombination read(DataInput in, CombinationLoader.ElementCombination source, int elementCount)
+            throws IOException {
+        boolean unsatisfiable = in.readBoolean();
+        int[] requiredOrdinals = RuleCodec.readInts(in);
+        int[] forbiddenOrdinals = RuleCodec.readInts(in);
+        int[] minValueOrdinals = RuleCodec.readInts(in);
+        double[] minValues = RuleCodec.readDoubleArray(in);
+        Map<String, Object> conditions = RuleCodec.readConditions(in);
+        Set<String> dimensions = RuleCodec.readStringSet(in);
+        int modifierCount = in.readInt();
+        ResourceLocation[] modifierAttributes = new ResourceLocation[modifierCount];
+        AttributeModifier[] modifiers = new AttributeModifier[modifierCount];
+        for (int i = 0; i < modifierCount; i++) {
+            modifierAttributes[i] = new ResourceLocation(in.readUTF());
+            UUID modifierId = new UUID(in.readLong(), in.readLong());
+            String name = in.readUTF();
+            double amount = in.readDouble();
+            modifiers[i] = new AttributeModifier(modifierId, name, amount,
+                    AttributeModifier.Operation.fromValue(in.readByte()));
+        }
+        EvaluationClass evaluationClass = EvaluationClass.values()[in.readByte()];
+        int pollInterval = in.readInt();
+        return new CompiledCombination(-1, source, unsatisfiable, requiredOrdinals, forbiddenOrdinals,
+                minValueOrdinals, minValues, conditions, dimensions != null ? Set.copyOf(dimensions) : null,
+                modifierAttributes, modifiers, evaluationClass, pollInterval, elementCount);
+    }
+
+    /**
+     * 检查元素部分是否匹配（不含条件）
+     * @param values 按序号索引的元素值，未启用元素为0
+     */
+    public boolean matchesElements(double[] values) {
+        if (unsatisfiable) {
+            return false;
+        }
+
+        for (int ordinal : requiredOrdinals) {
+            if (valueAt(values, ordinal) <= 0) {
+                return false;
+            }
+        }
+
+        for (int ordinal : forbiddenOrdinals) {
+            if (valueAt(values, ordinal) > 0) {
+                return false;
+            }
+        }
+
+        for (int i = 0; i < minValueOrdinals.length; i++) {
+            double value = valueAt(values, minValueOrdinals[i]);
+            if (value <= 0 || value < minValues[i]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    public boolean hasConditions() {
+        return conditions != null;
+    }
+
+    private static AttributeModifier.Operation getOperation(String operation) {
+        if (operation == null) {
+            return AttributeModifier.Operation.ADDITION;
+        }
+        switch (operation.toLowerCase()) {
+            case "multiply_base": return AttributeModifier.Operation.MULTIPLY_BASE;
+            case "multiply_total": return AttributeModifier.Operation.MULTIPLY_TOTAL;
+            default: return AttributeModifier.Operation.ADDITION;
+        }
+    }
+
+    private static double valueAt(double[] values, int ordinal) {
+        return ordinal < values.length ? values[ordinal] : 0.0;
+    }
+
+    private static int[] toArray(List<Integer> list) {
+        int[] array = new int[list.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = list.get(i);
+        }
+        return array;
+    }
+}
\ No newline at end of file
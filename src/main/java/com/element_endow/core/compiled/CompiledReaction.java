@@ -0,0 +1,157 @@
+package com.element_endow.core.compiled;
+
+import com.element_endow.api.IElementSystem;
+import com.element_endow.data.ReactionLoader;
+import com.element_endow.data.RuleCodec;
+import com.element_endow.util.ConditionChecker;
+import net.minecraft.world.entity.LivingEntity;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 编译后的元素反应
+ * 元素ID在加载时解析为位掩码
+ */
+public final class CompiledReaction {
+    public final String id;
+    public final ReactionLoader.ElementReaction source;
+    public final int ordinalA;
+    public final int ordinalB;
+    public final long maskA;
+    public final long maskB;
+    public final int priority;
+    public final String exclusiveGroup;
+    //内置冷却（tick）与冷却表中的槽位，没有冷却时槽位为-1
+    public final int cooldown;
+    public final int cooldownSlot;
+    //不含维度条件的各方条件，维度由分片保证
+    public final Map<String, Object> attackerConditions;
+    public final Map<String, Object> targetConditions;
+    public final Map<String, Object> worldConditions;
+    //可触发的维度，null表示所有维度
+    public final Set<String> dimensions;
+    //除维度外没有任何条件的反应，结果只取决于双方的元素掩码
+    public final boolean deterministic;
+    //编译时已注册的元素数，由磁盘缓存还原的结果只在元素数相同时使用
+    public final int elementCount;
+
+    private CompiledReaction(ReactionLoader.ElementReaction source, int ordinalA, int ordinalB, int cooldownSlot,
+                             Map<String, Object> attackerConditions, Map<String, Object> targetConditions,
+                             Map<String, Object> worldConditions, Set<String> dimensions, int elementCount) {
+        this.id = source.id;
+        this.source = source;
+        this.ordinalA = ordinalA;
+        this.ordinalB = ordinalB;
+        this.maskA = ElementMask.bit(ordinalA);
+        this.maskB = ElementMask.bit(ordinalB);
+        this.priority = source.priority;
+        this.exclusiveGroup = source.exclusiveGroup;
+        this.cooldown = source.internalCooldown;
+        this.cooldownSlot = source.internalCooldown > 0 ? cooldownSlot : -1;
+        this.attackerConditions = attackerConditions;
+        this.targetConditions = targetConditions;
+        this.worldConditions = worldConditions;
+        this.dimensions = dimensions;
+        this.deterministic = attackerConditions == null && targetConditions == null && worldConditions == null;
+        this.elementCount = elementCount;
+    }
+
+    /**
+     * 编译反应，元素未注册时返回null（反应永远不会触发）
+     * 反应带有从磁盘缓存还原的编译结果且元素数未变化时直接沿用
+     * @param cooldownSlot 反应带内置冷却时使用的冷却槽位
+     */
+    public static CompiledReaction compile(ReactionLoader.ElementReaction reaction, IElementSystem elementSystem,
+                                           int cooldownSlot) {
+        CompiledReaction restored = reaction.compiled;
+        if (restored != null && restored.elementCount == elementSystem.getElementCount()) {
+            int slot = reaction.internalCooldown > 0 ? cooldownSlot : -1;
+            return restored.cooldownSlot == slot ? restored : restored.withCooldownSlot(cooldownSlot);
+        }
+
+        int ordinalA = elementSystem.getElementOrdinal(reaction.elementA);
+        int ordinalB = elementSystem.getElementOrdinal(reaction.elementB);
+        if (ElementMask.bit(ordinalA) == 0L || ElementMask.bit(ordinalB) == 0L) {
+            return null;
+        }
+
+        ReactionLoader.ReactionConditions conditions = reaction.conditions;
+        if (conditions == null) {
+            return new CompiledReaction(reaction, ordinalA, ordinalB, cooldownSlot, null, null, null, null,
+                    elementSystem.getElementCount());
+        }
+        Set<String> dimensions = DimensionScope.intersect(DimensionScope.of(conditions.attackerConditions),
+                DimensionScope.intersect(DimensionScope.of(conditions.targetConditions),
+                        DimensionScope.of(conditions.worldConditions)));
+        return new CompiledReaction(reaction, ordinalA, ordinalB, cooldownSlot,
+                DimensionScope.strip(conditions.attackerConditions), DimensionScope.strip(conditions.targetConditions),
+                DimensionScope.strip(conditions.worldConditions), dimensions, elementSystem.getElementCount());
+    }
+
+    /**
+     * 相同编译结果使用另一个冷却槽位
+     */
+    public CompiledReaction withCooldownSlot(int cooldownSlot) {
+        return new CompiledReaction(source, ordinalA, ordinalB, cooldownSlot, attackerConditions, targetConditions,
+                worldConditions, dimensions, elementCount);
+    }
+
+    /**
+     * 写入磁盘缓存，冷却槽位在构建索引时分配，不写入
+     */
+    public void write(DataOutput out) throws IOException {
+        out.writeInt(ordinalA);
+        out.writeInt(ordinalB);
+        RuleCodec.writeConditions(out, attackerConditions);
+        RuleCodec.writeConditions(out, targetConditions);
+        RuleCodec.writeConditions(out, worldConditions);
+        RuleCodec.writeStrings(out, dimensions);
+    }
+
+    /**
+     * 从磁盘缓存读取编译结果
+     * @param elementCount 写入缓存时已注册的元素数
+     */
+    public static CompiledReaction read(DataInput in, ReactionLoader.ElementReaction source, int elementCount)
+            throws IOException {
+        int ordinalA = in.readInt();
+        int ordinalB = in.readInt();
+        Map<String, Object> attackerConditions = RuleCodec.readConditions(in);
+        Map<String, Object> targetConditions = RuleCodec.readConditions(in);
+        Map<String, Object> worldConditions = RuleCodec.readConditions(in);
+        Set<String> dimensions = RuleCodec.readStringSet(in);
+        return new CompiledReaction(source, ordinalA, ordinalB, -1, attackerConditions, targetConditions,
+                worldConditions, dimensions != null ? Set.copyOf(dimensions) : null, elementCount);
+    }
+
+    /**
+     * 一方持有elementA且另一方持有elementB
+     */
+    public boolean matches(long attackerMask, long targetMask) {
+        return ((attackerMask & maskA) != 0 && (targetMask & maskB) != 0)
+                || ((attackerMask & maskB) != 0 && (targetMask & maskA) != 0);
+    }
+
+    public boolean hasCooldown() {
+        return cooldownSlot >= 0;
+    }
+
+    /**
+     * 检查攻击方与世界条件
+     */
+    public boolean checkAttackerSide(LivingEntity attacker) {
+        return (attackerConditions == null || ConditionChecker.checkConditions(attackerConditions, attacker, attacker.level()))
+                && (worldConditions == null || ConditionChecker.checkConditions(worldConditions, attacker, attacker.level()));
+    }
+
+    /**
+     * 检查目标条件
+     */
+    public boolean checkTarget(LivingEntity target) {
+        return targetConditions == null || ConditionChecker.checkConditions(targetConditions, target, target.level());
+    }
+}
\ No newline at end of file
@@ -0,0 +1,73 @@
+package com.element_endow.core.compiled;
+
+import java.util.*;
+
+/**
+ * 规则的维度范围
+ * 编译时从条件中取出dimension条件，用于按维度分片；null表示所有维度
+ */
+public final class DimensionScope {
+    public static final String CONDITION_KEY = "dimension";
+
+    private DimensionScope() {
+    }
+
+    /**
+     * 读取条件中的维度限制，没有维度条件时返回null
+     */
+    public static Set<String> of(Map<String, Object> conditions) {
+        if (conditions == null) {
+            return null;
+        }
+
+        Object value = conditions.get(CONDITION_KEY);
+        if (value instanceof String) {
+            return Set.of((String) value);
+        } else if (value instanceof List) {
+            Set<String> dimensions = new HashSet<>();
+            for (Object dimension : (List<?>) value) {
+                dimensions.add(String.valueOf(dimension));
+            }
+            return Collections.unmodifiableSet(dimensions);
+        }
+
+        //无法识别的格式与ConditionChecker一致，视为不限制
+        return null;
+    }
+
+    /**
+     * 合并两个维度限制，结果为两者的交集
+     */
+    public static Set<String> intersect(Set<String> a, Set<String> b) {
+        if (a == null) {
+            return b;
+        }
+        if (b == null) {
+            return a;
+        }
+
+        Set<String> result = new HashSet<>(a);
+        result.retainAll(b);
+        return Collections.unmodifiableSet(result);
+    }
+
+    /**
+     * 去掉维度条件，分片后不再需要在求值时检查；剩余条件为空时返回null
+     */
+    public static Map<String, Object> strip(Map<String, Object> conditions) {
+        if (conditions == null || conditions.isEmpty()) {
+            return null;
+        }
+        if (!conditions.containsKey(CONDITION_KEY)) {
+            return conditions;
+        }
+
+        Map<String, Object> stripped = new HashMap<>(conditions);
+        stripped.remove(CONDITION_KEY);
+        return stripped.isEmpty() ? null : stripped;
+    }
+
+    public static boolean allows(Set<String> dimensions, String dimension) {
+        return dimensions == null || dimensions.contains(dimension);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,36 @@
+package com.element_endow.core.compiled;
+
+/**
+ * 元素位掩码
+ * 第n位表示序号为n的元素值大于0，只能表示前64个元素
+ */
+public final class ElementMask {
+    public static final int MAX_ELEMENTS = 64;
+
+    private ElementMask() {}
+
+    /**
+     * 从元素值向量构建掩码，超出64的序号被忽略
+     */
+    public static long of(double[] values) {
+        long mask = 0L;
+        int length = Math.min(values.length, MAX_ELEMENTS);
+        for (int ordinal = 0; ordinal < length; ordinal++) {
+            if (values[ordinal] > 0) {
+                mask |= 1L << ordinal;
+            }
+        }
+        return mask;
+    }
+
+    public static long bit(int ordinal) {
+        return ordinal >= 0 && ordinal < MAX_ELEMENTS ? 1L << ordinal : 0L;
+    }
+
+    /**
+     * 当前注册的元素是否都能用掩码表示
+     */
+    public static boolean fits(int elementCount) {
+        return elementCount <= MAX_ELEMENTS;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,193 @@
+package com.element_endow.core.compiled;
+
+import com.element_endow.api.IElementSystem;
+import com.element_endow.data.RuleCodec;
+import com.element_endow.data.entity_bindings.EntityElementBindingLoader;
+import net.minecraft.core.Holder;
+import net.minecraft.core.registries.BuiltInRegistries;
+import net.minecraft.world.entity.EntityType;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * 生物绑定表
+ * 数据包绑定与运行时绑定按优先级合并后，以实体类型的注册表数字ID为下标展开为数组，
+ * 生成时的查找只是一次数组读取；规则重载、运行时绑定变化或元素注册数变化时整体重建
+ */
+public final class EntityBindingTable {
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    public static final EntityBindingTable EMPTY = new EntityBindingTable(new CompiledBinding[0], -1, -1, -1, -1, 0);
+
+    private final CompiledBinding[] byTypeId;
+    private final int ruleGeneration;
+    private final int runtimeVersion;
+    private final int tagVersion;
+    private final int elementCount;
+    private final int bindingCount;
+
+    private EntityBindingTable(CompiledBinding[] byTypeId, int ruleGeneration, int runtimeVersion, int tagVersion,
+                               int elementCount, int bindingCount) {
+        this.byTypeId = byTypeId;
+        this.ruleGeneration = ruleGeneration;
+        this.runtimeVersion = runtimeVersion;
+        this.tagVersion = tagVersion;
+        this.elementCount = elementCount;
+        this.bindingCount = bindingCount;
+    }
+
+    /**
+     * 展开标签绑定并与直接绑定合并后编译
+     * 同一实体类型取优先级高的绑定；优先级相同时直接指定的绑定覆盖标签绑定，运行时绑定覆盖数据包绑定
+     */
+    public static EntityBindingTable build(Map<EntityType<?>, EntityElementBindingLoader.EntityElementBinding> dataPackBindings,
+                                           List<EntityElementBindingLoader.TagBinding> tagBindings,
+                                           Map<EntityType<?>, EntityElementBindingLoader.EntityElementBinding> runtimeBindings,
+                                           IElementSystem elementSystem, int ruleGeneration, int runtimeVersion,
+                                           int tagVersion) {
+        Map<EntityType<?>, EntityElementBindingLoader.EntityElementBinding> merged = new HashMap<>();
+        for (EntityElementBindingLoader.TagBinding tagBinding : tagBindings) {
+            for (Holder<EntityType<?>> holder : BuiltInRegistries.ENTITY_TYPE.getTagOrEmpty(tagBinding.tag)) {
+                merged.merge(holder.value(), tagBinding.binding, EntityBindingTable::byPriority);
+            }
+        }
+        for (Map.Entry<EntityType<?>, EntityElementBindingLoader.EntityElementBinding> entry : dataPackBindings.entrySet()) {
+            merged.merge(entry.getKey(), entry.getValue(), EntityBindingTable::byPriority);
+        }
+        for (Map.Entry<EntityType<?>, EntityElementBindingLoader.EntityElementBinding> entry : runtimeBindings.entrySet()) {
+            merged.merge(entry.getKey(), entry.getValue(), EntityBindingTable::byPriority);
+        }
+
+        int maxId = -1;
+        for (EntityType<?> entityType : merged.keySet()) {
+            maxId = Math.max(maxId, BuiltInRegistries.ENTITY_TYPE.getId(entityType));
+        }
+
+        //同一绑定覆盖多个实体类型时只编译一次
+        Map<EntityElementBindingLoader.EntityElementBinding, CompiledBinding> compiled = new IdentityHashMap<>();
+        CompiledBinding[] byTypeId = new CompiledBinding[maxId + 1];
+        for (Map.Entry<EntityType<?>, EntityElementBindingLoader.EntityElementBinding> entry : merged.entrySet()) {
+            int typeId = BuiltInRegistries.ENTITY_TYPE.getId(entry.getKey());
+            if (typeId >= 0) {
+                byTypeId[typeId] = compiled.computeIfAbsent(entry.getValue(),
+                        binding -> CompiledBinding.compile(binding, elementSystem));
+            }
+        }
+        return new EntityBindingTable(byTypeId, ruleGeneration, runtimeVersion, tagVersion,
+                elementSystem.getElementCount(), merged.size());
+    }
+
+    //后合并的绑定优先级不低于已有绑定时覆盖
+    private static EntityElementBindingLoader.EntityElementBinding byPriority(
+            EntityElementBindingLoader.EntityElementBinding existing, EntityElementBindingLoader.EntityElementBinding next) {
+        return next.priority >= existing.priority ? next : existing;
+    }
+
+    /**
+     * 获取实体类型的绑定，没有绑定时返回null
+     */
+    public CompiledBinding get(EntityType<?> entityType) {
+        int typeId = BuiltInRegistries.ENTITY_TYPE.getId(entityType);
+        return typeId >= 0 && typeId < byTypeId.length ? byTypeId[typeId] : null;
+    }
+
+    /**
+     * 规则代数、运行时绑定版本、标签版本或元素注册数变化时需要重建
+     */
+    public boolean isStale(IElementSystem elementSystem, int ruleGeneration, int runtimeVersion, int tagVersion) {
+        return this.ruleGeneration != ruleGeneration
+                || this.runtimeVersion != runtimeVersion
+                || this.tagVersion != tagVersion
+                || this.elementCount != elementSystem.getElementCount();
+    }
+
+    /**
+     * 按实体类型列出合并后的绑定
+     */
+    public Map<EntityType<?>, EntityElementBindingLoader.EntityElementBinding> toMap() {
+        Map<EntityType<?>, EntityElementBindingLoader.EntityElementBinding> bindings = new HashMap<>();
+        for (int typeId = 0; typeId < byTypeId.length; typeId++) {
+            if (byTypeId[typeId] != null) {
+                bindings.put(BuiltInRegistries.ENTITY_TYPE.byId(typeId), byTypeId[typeId].source);
+            }
+        }
+        return bindings;
+    }
+
+    public int getBindingCount() {
+        return bindingCount;
+    }
+
+    /**
+     * 编译后的生物绑定，元素ID已解析为序号
+     */
+    public static final class CompiledBinding {
+        public final EntityElementBindingLoader.EntityElementBinding source;
+        public final int[] ordinals;
+        public final double[] values;
+        //编译时已注册的元素数，由磁盘缓存还原的结果只在元素数相同时使用
+        public final int elementCount;
+
+        private CompiledBinding(EntityElementBindingLoader.EntityElementBinding source, int[] ordinals, double[] values,
+                                int elementCount) {
+            this.source = source;
+            this.ordinals = ordinals;
+            this.values = values;
+            this.elementCount = elementCount;
+        }
+
+        /**
+         * 编译绑定，绑定带有从磁盘缓存还原的编译结果且元素数未变化时直接沿用
+         */
+        public static CompiledBinding compile(EntityElementBindingLoader.EntityElementBinding binding,
+                                              IElementSystem elementSystem) {
+            CompiledBinding restored = binding.compiled;
+            if (restored != null && restored.elementCount == elementSystem.getElementCount()) {
+                return restored;
+            }
+
+            int[] ordinals = new int[binding.elements.size()];
+            double[] values = new double[binding.elements.size()];
+            int count = 0;
+            for (Map.Entry<String, Double> entry : binding.elements.entrySet()) {
+                if (entry.getValue() == null) {
+                    continue;
+                }
+                int ordinal = elementSystem.getElementOrdinal(entry.getKey());
+                if (ordinal < 0) {
+                    //未注册的元素在编译时跳过，不在每次生成时重复警告
+                    LOGGER.warn("Element {} is not registered, skipping in binding for {}", entry.getKey(), binding.entityType);
+                    continue;
+                }
+                ordinals[count] = ordinal;
+                values[count] = entry.getValue();
+                count++;
+            }
+            return new CompiledBinding(binding, Arrays.copyOf(ordinals, count), Arrays.copyOf(values, count),
+                    elementSystem.getElementCount());
+        }
+
+        public void write(DataOutput out) throws IOException {
+            RuleCodec.writeInts(out, ordinals);
+            RuleCodec.writeDoubleArray(out, values);
+        }
+
+        /**
+         * 从磁盘缓存读取编译结果
+         * @param elementCount 写入缓存时已注册的元素数
+         */
+        public static CompiledBinding read(DataInput in, EntityElementBindingLoader.EntityElementBinding source,
+                                           int elementCount) throws IOException {
+            return new CompiledBinding(source, RuleCodec.readInts(in), RuleCodec.readDoubleArray(in), elementCount);
+        }
+
+        public boolean hasConditions() {
+            return source.hasConditions();
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,59 @@
+package com.element_endow.core.compiled;
+
+import java.util.Map;
+
+/**
+ * 组合求值类别
+ * 根据条件读取的输入推断，决定组合需要多久轮询一次
+ */
+public enum EvaluationClass {
+    //只依赖元素值，元素值变化时才需要重检
+    VALUE_ONLY(0),
+    //依赖实体自身状态（生命值）
+    ENTITY_STATE(20),
+    //依赖实体位置（生物群系、维度）
+    POSITIONAL(40),
+    //依赖世界状态（天气、时间、月相、难度）
+    WORLD_STATE(100);
+
+    //默认轮询间隔（tick），0表示不轮询
+    public final int defaultInterval;
+
+    EvaluationClass(int defaultInterval) {
+        this.defaultInterval = defaultInterval;
+    }
+
+    /**
+     * 从条件键推断类别，多个类别并存时取轮询最频繁的一个
+     */
+    public static EvaluationClass infer(Map<String, Object> conditions) {
+        if (conditions == null || conditions.isEmpty()) {
+            return VALUE_ONLY;
+        }
+
+        EvaluationClass result = VALUE_ONLY;
+        for (String key : conditions.keySet()) {
+            result = moreFrequent(result, fromConditionKey(key));
+        }
+        return result;
+    }
+
+    private static EvaluationClass fromConditionKey(String key) {
+        switch (key) {
+            case "health": return ENTITY_STATE;
+            case "biome":
+            case "dimension": return POSITIONAL;
+            case "weather":
+            case "time":
+            case "moon_phase":
+            case "difficulty": return WORLD_STATE;
+            default: return VALUE_ONLY;
+        }
+    }
+
+    private static EvaluationClass moreFrequent(EvaluationClass a, EvaluationClass b) {
+        if (a.defaultInterval == 0) return b;
+        if (b.defaultInterval == 0) return a;
+        return a.defaultInterval <= b.defaultInterval ? a : b;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,355 @@
+package com.element_endow.core.compiled;
+
+import com.element_endow.api.IElementSystem;
+import com.element_endow.data.ReactionLoader;
+import net.minecraft.resources.ResourceLocation;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 反应编译索引
+ * 按元素对分组，组内按优先级排序；按规则集代数与元素注册数构建，构建后不可变
+ * 带维度条件的反应按维度分片，分片只含该维度可能触发的反应，与维度无关的反应在分片间共享
+ * 增量构建时沿用上一代中未变化的编译反应与冷却槽位，并记录变化涉及的元素对，供缓存判断上一代的条目是否仍然有效
+ */
+public final class ReactionIndex {
+    public static final Comparator<CompiledReaction> PRIORITY_ORDER =
+            Comparator.comparingInt((CompiledReaction reaction) -> reaction.priority).reversed()
+                    .thenComparing(reaction -> reaction.id);
+
+    public static final ReactionIndex EMPTY = new ReactionIndex(
+            Collections.emptyMap(), 0, 0, 0, false, -1, 0, false, 0, Delta.FULL, new ConcurrentHashMap<>(),
+            new AtomicInteger(1), Collections.emptyMap());
+
+    //元素对 -> 按优先级排序的反应
+    private final Map<Integer, List<CompiledReaction>> reactionsByPair;
+    private final int reactionCount;
+    //带内置冷却的反应数，即冷却表槽位数
+    private final int cooldownSlots;
+    //单次命中最多触发的反应数，0表示不限制
+    private final int maxReactionsPerHit;
+    //元素数超过64时无法使用掩码，由调用方回退到逐元素比较
+    private final boolean maskable;
+    private final int generation;
+    private final int elementCount;
+    //存在带维度条件的反应时才需要分片
+    private final boolean dimensional;
+    //分片编号，完整索引为0；反应结果缓存以此区分不同分片的计划
+    private final int shardId;
+    //相对上一代的变化，分片与完整索引相同
+    private final Delta delta;
+    //维度ID -> 分片，只在完整索引上使用
+    private final Map<ResourceLocation, ReactionIndex> shards = new ConcurrentHashMap<>();
+    //维度ID -> 分片编号，增量构建的各代共享，同一维度的分片编号保持不变
+    private final Map<ResourceLocation, Integer> shardIds;
+    private final AtomicInteger nextShardId;
+    //无法使用掩码时，按反应ID分配的冷却槽位，供逐元素比较的回退路径使用
+    private final Map<String, Integer> fallbackCooldownSlots;
+
+    private ReactionIndex(Map<Integer, List<CompiledReaction>> reactionsByPair, int reactionCount, int cooldownSlots,
+                          int maxReactionsPerHit, boolean maskable, int generation, int elementCount,
+                          boolean dimensional, int shardId, Delta delta, Map<ResourceLocation, Integer> shardIds,
+                          AtomicInteger nextShardId, Map<String, Integer> fallbackCooldownSlots) {
+        this.reactionsByPair = reactionsByPair;
+        this.reactionCount = reactionCount;
+        this.cooldownSlots = cooldownSlots;
+        this.maxReactionsPerHit = maxReactionsPerHit;
+        this.maskable = maskable;
+        this.generation = generation;
+        this.elementCount = elementCount;
+        this.dimensional = dimensional;
+        this.shardId = shardId;
+        this.delta = delta;
+        this.shardIds = shardIds;
+        this.nextShardId = nextShardId;
+        this.fallbackCooldownSlots = fallbackCooldownSlots;
+    }
+
+    public static ReactionIndex build(Collection<ReactionLoader.ElementReaction> source,
+                                      IElementSystem elementSystem, int generation, int maxReactionsPerHit) {
+        return build(source, elementSystem, generation, maxReactionsPerHit, null);
+    }
+
+    /**
+     * 构建索引
+     * @param previous 上一代索引，元素注册数与单次命中上限均未变化时增量构建，否则完整构建
+     */
+    public static ReactionIndex build(Collection<ReactionLoader.ElementReaction> source, IElementSystem elementSystem,
+                                      int generation, int maxReactionsPerHit, ReactionIndex previous) {
+        int elementCount = elementSystem.getElementCount();
+        if (!ElementMask.fits(elementCount)) {
+            //回退路径不编译反应，只按ID顺序为带内置冷却的反应分配槽位
+            List<ReactionLoader.ElementReaction> ordered = new ArrayList<>(source);
+            ordered.sort(Comparator.comparing(reaction -> reaction.id));
+            Map<String, Integer> fallbackSlots = new HashMap<>();
+            for (ReactionLoader.ElementReaction reaction : ordered) {
+                if (reaction.internalCooldown > 0) {
+                    fallbackSlots.put(reaction.id, fallbackSlots.size());
+                }
+            }
+            return new ReactionIndex(Collections.emptyMap(), 0, fallbackSlots.size(), maxReactionsPerHit, false,
+                    generation, elementCount, false, 0, Delta.FULL, new ConcurrentHashMap<>(), new AtomicInteger(1),
+                    Map.copyOf(fallbackSlots));
+        }
+
+        boolean incremental = previous != null && previous.maskable && previous.elementCount == elementCount
+                && previous.maxReactionsPerHit == maxReactionsPerHit;
+        Map<String, CompiledReaction> previousById = new HashMap<>();
+        if (incremental) {
+            for (List<CompiledReaction> list : previous.reactionsByPair.values()) {
+                for (CompiledReaction reaction : list) {
+                    previousById.put(reaction.id, reaction);
+                }
+            }
+        }
+
+        //按ID排序，保证冷却槽位稳定；增量构建时已有反应保留原槽位，新反应追加在后
+        List<ReactionLoader.ElementReaction> ordered = new ArrayList<>(source);
+        ordered.sort(Comparator.comparing(reaction -> reaction.id));
+
+        Map<Integer, List<CompiledReaction>> byPair = new HashMap<>();
+        int count = 0;
+        int cooldownSlots = incremental ? previous.cooldownSlots : 0;
+        BitSet changedCooldownSlots = new BitSet();
+        boolean dimensional = false;
+        for (ReactionLoader.ElementReaction reaction : ordered) {
+            CompiledReaction old = previousById.get(reaction.id);
+            CompiledReaction compiled;
+            if (old != null && old.source == reaction) {
+                //规则文件未变化，沿用上一代的编译结果
+                compiled = old;
+            } else {
+                int slot = old != null && old.hasCooldown() ? old.cooldownSlot : cooldownSlots;
+                compiled = CompiledReaction.compile(reaction, elementSystem, slot);
+                if (compiled != null && compiled.hasCooldown()) {
+                    changedCooldownSlots.set(slot);
+                    if (slot == cooldownSlots) {
+                        cooldownSlots++;
+                    }
+                }
+            }
+            if (compiled == null) {
+                continue;
+            }
+            if (compiled.dimensions != null) {
+                dimensional = true;
+            }
+            byPair.computeIfAbsent(pairKey(compiled.ordinalA, compiled.ordinalB), k -> new ArrayList<>()).add(compiled);
+            count++;
+        }
+
+        Map<Integer, List<CompiledReaction>> sorted = new HashMap<>();
+        for (Map.Entry<Integer, List<CompiledReaction>> entry : byPair.entrySet()) {
+            List<CompiledReaction> list = entry.getValue();
+            list.sort(PRIORITY_ORDER);
+            sorted.put(entry.getKey(), List.copyOf(list));
+        }
+
+        if (!incremental) {
+            return new ReactionIndex(sorted, count, cooldownSlots, maxReactionsPerHit, true, generation, elementCount,
+                    dimensional, 0, Delta.FULL, new ConcurrentHashMap<>(), new AtomicInteger(1), Collections.emptyMap());
+        }
+
+        //对比两代每个元素对的反应列表，列表中任一反应不是同一实例即视为变化
+        Set<Integer> pairs = new HashSet<>(sorted.keySet());
+        pairs.addAll(previous.reactionsByPair.keySet());
+        List<Long> changedPairs = new ArrayList<>();
+        for (int pair : pairs) {
+            if (!sameReactions(sorted.get(pair), previous.reactionsByPair.get(pair))) {
+                changedPairs.add(ElementMask.bit(pair / ElementMask.MAX_ELEMENTS));
+                changedPairs.add(ElementMask.bit(pair % ElementMask.MAX_ELEMENTS));
+            }
+        }
+        long[] changed = new long[changedPairs.size()];
+        for (int i = 0; i < changed.length; i++) {
+            changed[i] = changedPairs.get(i);
+        }
+
+        return new ReactionIndex(sorted, count, cooldownSlots, maxReactionsPerHit, true, generation, elementCount,
+                dimensional, 0, new Delta(previous.generation, changed, changedCooldownSlots),
+                previous.shardIds, previous.nextShardId, Collections.emptyMap());
+    }
+
+    private static boolean sameReactions(List<CompiledReaction> a, List<CompiledReaction> b) {
+        if (a == null || b == null) {
+            return a == b;
+        }
+        if (a.size() != b.size()) {
+            return false;
+        }
+        for (int i = 0; i < a.size(); i++) {
+            if (a.get(i) != b.get(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 获取维度分片，首次访问时构建
+     * 没有任何带维度条件的反应时直接返回自身
+     */
+    public ReactionIndex forDimension(ResourceLocation dimension) {
+        if (!dimensional) {
+            return this;
+        }
+        return shards.computeIfAbsent(dimension, this::buildShard);
+    }
+
+    private ReactionIndex buildShard(ResourceLocation dimension) {
+        String dimensionId = dimension.toString();
+        Map<Integer, List<CompiledReaction>> byPair = new HashMap<>();
+        int count = 0;
+        for (Map.Entry<Integer, List<CompiledReaction>> entry : reactionsByPair.entrySet()) {
+            List<CompiledReaction> list = new ArrayList<>();
+            for (CompiledReaction reaction : entry.getValue()) {
+                if (DimensionScope.allows(reaction.dimensions, dimensionId)) {
+                    list.add(reaction);
+                }
+            }
+            if (!list.isEmpty()) {
+                byPair.put(entry.getKey(), List.copyOf(list));
+                count += list.size();
+            }
+        }
+
+        //分片共享完整索引的编译反应与冷却槽位
+        return new ReactionIndex(byPair, count, cooldownSlots, maxReactionsPerHit, maskable, generation, elementCount,
+                false, shardIds.computeIfAbsent(dimension, k -> nextShardId.getAndIncrement()), delta, shardIds,
+                nextShardId, fallbackCooldownSlots);
+    }
+
+    /**
+     * 收集双方掩码能触发的全部反应，按优先级排序
+     */
+    public List<CompiledReaction> collectReactions(long attackerMask, long targetMask) {
+        if (reactionsByPair.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        List<CompiledReaction> result = new ArrayList<>();
+        Set<CompiledReaction> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (long a = attackerMask; a != 0L; a &= a - 1) {
+            int ordinalA = Long.numberOfTrailingZeros(a);
+            for (long t = targetMask; t != 0L; t &= t - 1) {
+                List<CompiledReaction> reactions = reactionsByPair.get(pairKey(ordinalA, Long.numberOfTrailingZeros(t)));
+                if (reactions == null) {
+                    continue;
+                }
+                for (CompiledReaction reaction : reactions) {
+                    if (seen.add(reaction)) {
+                        result.add(reaction);
+                    }
+                }
+            }
+        }
+
+        result.sort(PRIORITY_ORDER);
+        return result;
+    }
+
+    public int getShardId() {
+        return shardId;
+    }
+
+    public int getShardCount() {
+        return shards.size();
+    }
+
+    public int getCooldownSlots() {
+        return cooldownSlots;
+    }
+
+    /**
+     * 回退路径中反应的冷却槽位，没有内置冷却时返回-1
+     */
+    public int getFallbackCooldownSlot(ReactionLoader.ElementReaction reaction) {
+        Integer slot = fallbackCooldownSlots.get(reaction.id);
+        return slot != null ? slot : -1;
+    }
+
+    public int getMaxReactionsPerHit() {
+        return maxReactionsPerHit;
+    }
+
+    public int size() {
+        return reactionCount;
+    }
+
+    public boolean isMaskable() {
+        return maskable;
+    }
+
+    public int getGeneration() {
+        return generation;
+    }
+
+    /**
+     * 指定代数下按该掩码对构建的求值计划在本代是否仍然有效
+     * 只认可由上一代增量构建而来、且掩码对不涉及任何变化元素对的情况
+     */
+    public boolean isPlanCurrent(int planGeneration, long attackerMask, long targetMask) {
+        if (planGeneration == generation) {
+            return true;
+        }
+        if (planGeneration != delta.previousGeneration) {
+            return false;
+        }
+        long[] changed = delta.changedPairs;
+        for (int i = 0; i < changed.length; i += 2) {
+            if (((attackerMask & changed[i]) != 0 && (targetMask & changed[i + 1]) != 0)
+                    || ((attackerMask & changed[i + 1]) != 0 && (targetMask & changed[i]) != 0)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 是否由指定代数的索引增量构建而来
+     */
+    public boolean isIncrementalFrom(int previousGeneration) {
+        return delta.previousGeneration == previousGeneration;
+    }
+
+    /**
+     * 增量构建中重新编译的冷却槽位，这些槽位上的冷却不再沿用
+     */
+    public BitSet getChangedCooldownSlots() {
+        return delta.changedCooldownSlots;
+    }
+
+    /**
+     * 变化涉及的元素对数（用于调试）
+     */
+    public int getChangedPairCount() {
+        return delta.changedPairs.length / 2;
+    }
+
+    public boolean isStale(IElementSystem elementSystem, int ruleGeneration) {
+        return generation != ruleGeneration || elementCount != elementSystem.getElementCount();
+    }
+
+    //相对上一代的变化，完整构建时上一代代数为MIN_VALUE，不与任何代数相等
+    private static final class Delta {
+        static final Delta FULL = new Delta(Integer.MIN_VALUE, new long[0], new BitSet());
+
+        final int previousGeneration;
+        //变化的元素对，按(元素A掩码, 元素B掩码)依次存放
+        final long[] changedPairs;
+        final BitSet changedCooldownSlots;
+
+        Delta(int previousGeneration, long[] changedPairs, BitSet changedCooldownSlots) {
+            this.previousGeneration = previousGeneration;
+            this.changedPairs = changedPairs;
+            this.changedCooldownSlots = changedCooldownSlots;
+        }
+    }
+
+    //无序元素对
+    private static int pairKey(int ordinalA, int ordinalB) {
+        return Math.min(ordinalA, ordinalB) * ElementMask.MAX_ELEMENTS + Math.max(ordinalA, ordinalB);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,218 @@
+package com.element_endow.core.compiled;
+
+import com.element_endow.api.IElementMountSystem;
+import com.element_endow.api.ReactionResult;
+import com.element_endow.core.effect.EffectSink;
+import com.element_endow.data.ReactionLoader;
+import net.minecraft.world.effect.MobEffect;
+import net.minecraft.world.effect.MobEffectInstance;
+import net.minecraft.world.entity.LivingEntity;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 一组确定性反应合并后的结果
+ * 乘数与效果在首次计算时折叠，命中时只需把结果叠加到ReactionResult上
+ */
+public final class ReactionOutcome {
+    public static final ReactionOutcome EMPTY = new ReactionOutcome();
+
+    public final double damageMultiplier;
+    public final double defenseMultiplier;
+    public final double extraDamage;
+    public final double damageReduction;
+    private final List<EffectTemplate> targetEffects;
+    private final List<EffectTemplate> selfEffects;
+    private final List<ReactionLoader.AttributeModifierData> targetAttributeModifiers;
+    private final List<ReactionLoader.AttributeModifierData> selfAttributeModifiers;
+    private final List<ReactionLoader.MountData> mountData;
+    private final List<IElementMountSystem.AdvancedMountData> advancedMountData;
+    private final List<ReactionLoader.AoeData> aoeData;
+    private final List<ReactionLoader.DotData> targetDots;
+    //合并后的元素消耗量
+    private final Map<String, Double> targetConsumption;
+    private final Map<String, Double> selfConsumption;
+
+    private ReactionOutcome() {
+        this(1.0, 1.0, 0.0, 0.0, Collections.emptyList(), Collections.emptyList(),
+                Collections.emptyList(), Collections.emptyList(), Collections.emptyList(), Collections.emptyList(),
+                Collections.emptyList(), Collections.emptyList(), Collections.emptyMap(), Collections.emptyMap());
+    }
+
+    private ReactionOutcome(double damageMultiplier, double defenseMultiplier,
+                            double extraDamage, double damageReduction,
+                            List<EffectTemplate> targetEffects, List<EffectTemplate> selfEffects,
+                            List<ReactionLoader.AttributeModifierData> targetAttributeModifiers,
+                            List<ReactionLoader.AttributeModifierData> selfAttributeModifiers,
+                            List<ReactionLoader.MountData> mountData,
+                            List<IElementMountSystem.AdvancedMountData> advancedMountData,
+                            List<ReactionLoader.AoeData> aoeData,
+                            List<ReactionLoader.DotData> targetDots,
+                            Map<String, Double> targetConsumption,
+                            Map<String, Double> selfConsumption) {
+        this.damageMultiplier = damageMultiplier;
+        this.defenseMultiplier = defenseMultiplier;
+        this.extraDamage = extraDamage;
+        this.damageReduction = damageReduction;
+        this.targetEffects = targetEffects;
+        this.selfEffects = selfEffects;
+        this.targetAttributeModifiers = targetAttributeModifiers;
+        this.selfAttributeModifiers = selfAttributeModifiers;
+        this.mountData = mountData;
+        this.advancedMountData = advancedMountData;
+        this.aoeData = aoeData;
+        this.targetDots = targetDots;
+        this.targetConsumption = targetConsumption;
+        this.selfConsumption = selfConsumption;
+    }
+
+    /**
+     * 折叠已选出的确定性反应
+     * @param attack true使用攻击条目，false使用防御条目
+     */
+    public static ReactionOutcome fold(List<CompiledReaction> reactions, boolean attack) {
+        if (reactions.isEmpty()) {
+            return EMPTY;
+        }
+
+        double damageMultiplier = 1.0;
+        double defenseMultiplier = 1.0;
+        double extraDamage = 0.0;
+        double damageReduction = 0.0;
+        List<EffectTemplate> targetEffects = new ArrayList<>();
+        List<EffectTemplate> selfEffects = new ArrayList<>();
+        List<ReactionLoader.AttributeModifierData> targetModifiers = new ArrayList<>();
+        List<ReactionLoader.AttributeModifierData> selfModifiers = new ArrayList<>();
+        List<ReactionLoader.MountData> mountData = new ArrayList<>();
+        List<IElementMountSystem.AdvancedMountData> advancedMountData = new ArrayList<>();
+        List<ReactionLoader.AoeData> aoeData = new ArrayList<>();
+        List<ReactionLoader.DotData> targetDots = new ArrayList<>();
+        Map<String, Double> targetConsumption = new HashMap<>();
+        Map<String, Double> selfConsumption = new HashMap<>();
+
+        for (CompiledReaction compiled : reactions) {
+            ReactionLoader.ElementReaction reaction = compiled.source;
+            ReactionLoader.ReactionEntry entry = attack ? reaction.attackEntry : reaction.defenseEntry;
+            if (entry != null) {
+                damageMultiplier *= entry.damageMultiplier;
+                defenseMultiplier *= entry.defenseMultiplier;
+                extraDamage += entry.extraDamage;
+                damageReduction += entry.damageReduction;
+                resolveEffects(entry.targetEffects, targetEffects);
+                resolveEffects(entry.selfEffects, selfEffects);
+                if (entry.targetAttributeModifiers != null) targetModifiers.addAll(entry.targetAttributeModifiers);
+                if (entry.selfAttributeModifiers != null) selfModifiers.addAll(entry.selfAttributeModifiers);
+                if (entry.targetDots != null) targetDots.addAll(entry.targetDots);
+            }
+
+            if (reaction.mountData != null) {
+                mountData.add(reaction.mountData);
+            }
+            if (reaction.advancedMountData != null) {
+                advancedMountData.add(reaction.advancedMountData);
+            }
+            //范围效果与元素消耗只随攻击反应计入，同一反应在防御求值中会再次匹配
+            if (attack) {
+                if (reaction.aoe != null) {
+                    aoeData.add(reaction.aoe);
+                }
+                ReactionResult.addConsumption(targetConsumption, reaction.consumes);
+                ReactionResult.addConsumption(selfConsumption, reaction.selfConsumes);
+            }
+        }
+
+        return new ReactionOutcome(damageMultiplier, defenseMultiplier, extraDamage, damageReduction,
+                List.copyOf(targetEffects), List.copyOf(selfEffects),
+                List.copyOf(targetModifiers), List.copyOf(selfModifiers),
+                List.copyOf(mountData), List.copyOf(advancedMountData), List.copyOf(aoeData),
+                List.copyOf(targetDots), Map.copyOf(targetConsumption), Map.copyOf(selfConsumption));
+    }
+
+    /**
+     * 将结果叠加到本次命中
+     * 效果实例与属性修饰符每次重新创建，保持与实时求值一致
+     */
+    public void applyTo(ReactionResult result, LivingEntity target, LivingEntity source) {
+        if (this == EMPTY) {
+            return;
+        }
+
+        result.damageMultiplier *= damageMultiplier;
+        result.defenseMultiplier *= defenseMultiplier;
+        result.extraDamage += extraDamage;
+        result.damageReduction += damageReduction;
+
+        if (target != null) {
+            for (EffectTemplate effect : targetEffects) {
+                EffectSink.queue(target, effect.create());
+            }
+            for (ReactionLoader.AttributeModifierData modifierData : targetAttributeModifiers) {
+                ReactionResult.AttributeModifierApplication app = modifierData.toAttributeModifierApplication();
+                if (app != null) {
+                    result.targetAttributeModifiers.add(app);
+                }
+            }
+            for (ReactionLoader.DotData dot : targetDots) {
+                result.targetDots.add(dot.toDotApplication());
+            }
+        }
+
+        if (source != null) {
+            for (EffectTemplate effect : selfEffects) {
+                EffectSink.queue(source, effect.create());
+            }
+            for (ReactionLoader.AttributeModifierData modifierData : selfAttributeModifiers) {
+                ReactionResult.AttributeModifierApplication app = modifierData.toAttributeModifierApplication();
+                if (app != null) {
+                    result.selfAttributeModifiers.add(app);
+                }
+            }
+        }
+
+        for (ReactionLoader.MountData data : mountData) {
+            result.mountApplications.add(new ReactionResult.MountApplication(
+                    data.elementId, data.amount, data.duration, data.probability));
+        }
+        result.advancedMountApplications.addAll(advancedMountData);
+        for (ReactionLoader.AoeData data : aoeData) {
+            result.aoeApplications.add(data.toAoeApplication());
+        }
+        ReactionResult.addConsumption(result.targetConsumption, targetConsumption);
+        ReactionResult.addConsumption(result.selfConsumption, selfConsumption);
+    }
+
+    private static void resolveEffects(List<ReactionLoader.ReactionEffect> effects, List<EffectTemplate> output) {
+        if (effects == null) {
+            return;
+        }
+        for (ReactionLoader.ReactionEffect effect : effects) {
+            MobEffect mobEffect = effect.getMobEffect();
+            if (mobEffect != null) {
+                output.add(new EffectTemplate(mobEffect, effect.duration, effect.amplifier, effect.showParticles));
+            }
+        }
+    }
+
+    //已解析的效果参数，MobEffectInstance会随时间变化，不能共享
+    private static final class EffectTemplate {
+        final MobEffect effect;
+        final int duration;
+        final int amplifier;
+        final boolean showParticles;
+
+        EffectTemplate(MobEffect effect, int duration, int amplifier, boolean showParticles) {
+            this.effect = effect;
+            this.duration = duration;
+            this.amplifier = amplifier;
+            this.showParticles = showParticles;
+        }
+
+        MobEffectInstance create() {
+            return new MobEffectInstance(effect, duration, amplifier, false, showParticles, true);
+        }
+    }
+}
\ No newline at end of file
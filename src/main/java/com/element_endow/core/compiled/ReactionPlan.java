@@ -0,0 +1,54 @@
+package com.element_endow.core.compiled;
+
+import java.util.*;
+
+/**
+ * 一对元素掩码的反应求值计划
+ * 候选反应已按优先级排序；全部为无冷却的确定性反应时，互斥组与上限在构建时就已应用并折叠成结果
+ */
+public final class ReactionPlan {
+    public static final ReactionPlan EMPTY = new ReactionPlan(Collections.emptyList(), ReactionOutcome.EMPTY);
+
+    public final List<CompiledReaction> reactions;
+    //全部为确定性反应时的合并结果，否则为null，需要逐个实时求值
+    public final ReactionOutcome outcome;
+
+    private ReactionPlan(List<CompiledReaction> reactions, ReactionOutcome outcome) {
+        this.reactions = reactions;
+        this.outcome = outcome;
+    }
+
+    public static ReactionPlan build(ReactionIndex index, long attackerMask, long targetMask, boolean attack) {
+        List<CompiledReaction> candidates = index.collectReactions(attackerMask, targetMask);
+        if (candidates.isEmpty()) {
+            return EMPTY;
+        }
+
+        //带冷却的反应是否触发取决于上次触发时间，同样需要实时求值
+        for (CompiledReaction reaction : candidates) {
+            if (!reaction.deterministic || reaction.hasCooldown()) {
+                return new ReactionPlan(List.copyOf(candidates), null);
+            }
+        }
+
+        //不依赖条件，提前选出会触发的反应
+        List<CompiledReaction> selected = new ArrayList<>();
+        Set<String> usedGroups = new HashSet<>();
+        int maxReactions = index.getMaxReactionsPerHit();
+        for (CompiledReaction reaction : candidates) {
+            if (reaction.exclusiveGroup != null && !usedGroups.add(reaction.exclusiveGroup)) {
+                continue;
+            }
+            selected.add(reaction);
+            if (maxReactions > 0 && selected.size() >= maxReactions) {
+                break;
+            }
+        }
+
+        return new ReactionPlan(List.copyOf(selected), ReactionOutcome.fold(selected, attack));
+    }
+
+    public boolean isDeterministic() {
+        return outcome != null;
+    }
+}
\ No newline at end of file
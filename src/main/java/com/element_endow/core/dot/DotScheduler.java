@@ -0,0 +1,186 @@
+package com.element_endow.core.dot;
+
+import com.element_endow.api.IElementSystem;
+import com.element_endow.api.ReactionResult;
+import net.minecraft.world.entity.LivingEntity;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.*;
+
+/**
+ * 元素持续伤害调度
+ * 伤害跳数存放在按tick分桶的环形数组中，同一目标的同一DoT合并为一个实例，
+ * 每tick只取出到期的桶，统一结算伤害
+ */
+public class DotScheduler {
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    //桶数，DoT间隔必须小于桶数
+    public static final int BUCKET_COUNT = 256;
+    public static final int MAX_INTERVAL = BUCKET_COUNT - 1;
+
+    private final IElementSystem elementSystem;
+    @SuppressWarnings("unchecked")
+    private final List<DotInstance>[] buckets = new List[BUCKET_COUNT];
+    //(目标, DoT ID) -> 实例，用于合并
+    private final Map<DotKey, DotInstance> active = new HashMap<>();
+    private final List<DotInstance> dueBuffer = new ArrayList<>();
+
+    private long currentTick = 0;
+    private long damageTicks = 0;
+    private long merges = 0;
+
+    private static final class DotKey {
+        final int entityId;
+        final String dotId;
+
+        DotKey(int entityId, String dotId) {
+            this.entityId = entityId;
+            this.dotId = dotId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof DotKey)) return false;
+            DotKey that = (DotKey) o;
+            return entityId == that.entityId && dotId.equals(that.dotId);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * entityId + dotId.hashCode();
+        }
+    }
+
+    private static final class DotInstance {
+        final DotKey key;
+        final LivingEntity target;
+        final int interval;
+        float damage;
+        long expireTick;
+
+        DotInstance(DotKey key, LivingEntity target, int interval, float damage, long expireTick) {
+            this.key = key;
+            this.target = target;
+            this.interval = interval;
+            this.damage = damage;
+            this.expireTick = expireTick;
+        }
+    }
+
+    public DotScheduler(IElementSystem elementSystem) {
+        this.elementSystem = elementSystem;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            buckets[i] = new ArrayList<>();
+        }
+    }
+
+    /**
+     * 对目标施加DoT，同一目标已有同ID的DoT时合并：取较高伤害与较晚的结束时间
+     * @param source 施加者，用于按其元素值计算伤害加成，可为null
+     */
+    public void apply(LivingEntity target, LivingEntity source, ReactionResult.DotApplication dot) {
+        if (target == null || target.level().isClientSide || !target.isAlive()) {
+            return;
+        }
+
+        float damage = (float) dot.damage;
+        if (source != null && dot.scalingElement != null && dot.scaling != 0) {
+            damage += (float) (dot.scaling * elementSystem.getElementValue(source, dot.scalingElement));
+        }
+        if (damage <= 0) {
+            return;
+        }
+
+        DotKey key = new DotKey(target.getId(), dot.id);
+        long expireTick = currentTick + dot.duration;
+
+        DotInstance existing = active.get(key);
+        if (existing != null) {
+            existing.damage = Math.max(existing.damage, damage);
+            existing.expireTick = Math.max(existing.expireTick, expireTick);
+            merges++;
+            return;
+        }
+
+        DotInstance instance = new DotInstance(key, target, dot.interval, damage, expireTick);
+        active.put(key, instance);
+        schedule(instance, currentTick + dot.interval);
+    }
+
+    /**
+     * 每个服务端tick调用一次，结算本tick到期的全部伤害
+     */
+    public void tick() {
+        currentTick++;
+        List<DotInstance> bucket = buckets[bucketIndex(currentTick)];
+        if (bucket.isEmpty()) {
+            return;
+        }
+
+        dueBuffer.addAll(bucket);
+        bucket.clear();
+
+        for (DotInstance instance : dueBuffer) {
+            LivingEntity target = instance.target;
+            if (!target.isAlive() || target.isRemoved()) {
+                active.remove(instance.key);
+                continue;
+            }
+
+            try {
+                //持续伤害不受受击无敌时间影响；魔法伤害没有来源实体，不会再次触发元素反应
+                target.invulnerableTime = 0;
+                target.hurt(target.damageSources().magic(), instance.damage);
+                damageTicks++;
+            } catch (Exception e) {
+                LOGGER.error("Error applying damage over time {} to {}", instance.key.dotId, target, e);
+            }
+
+            long nextTick = currentTick + instance.interval;
+            if (nextTick <= instance.expireTick && target.isAlive()) {
+                schedule(instance, nextTick);
+            } else {
+                active.remove(instance.key);
+            }
+        }
+
+        dueBuffer.clear();
+    }
+
+    public void clear() {
+        for (List<DotInstance> bucket : buckets) {
+            bucket.clear();
+        }
+        active.clear();
+    }
+
+    private void schedule(DotInstance instance, long tick) {
+        buckets[bucketIndex(tick)].add(instance);
+    }
+
+    private static int bucketIndex(long tick) {
+        return (int) (tick & (BUCKET_COUNT - 1));
+    }
+
+    /**
+     * 获取DoT统计信息（用于调试）
+     */
+    public DotStats getStats() {
+        return new DotStats(active.size(), damageTicks, merges);
+    }
+
+    public static class DotStats {
+        public final int activeDots;
+        public final long damageTicks;
+        public final long merges;
+
+        public DotStats(int activeDots, long damageTicks, long merges) {
+            this.activeDots = activeDots;
+            this.damageTicks = damageTicks;
+            this.merges = merges;
+        }
+    }
+}
\ No newline at end of file
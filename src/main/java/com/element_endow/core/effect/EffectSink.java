@@ -0,0 +1,120 @@
+package com.element_endow.core.effect;
+
+import com.element_endow.api.ElementSystemAPI;
+import com.element_endow.core.ElementSystemImpl;
+import net.minecraft.world.effect.MobEffect;
+import net.minecraft.world.effect.MobEffectInstance;
+import net.minecraft.world.entity.LivingEntity;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.*;
+
+/**
+ * 状态效果汇集器
+ * 反应与组合在求值过程中只登记效果，同一tick内同一实体的同种效果合并为一个，
+ * 取最长持续时间与最高等级，在tick结束时统一应用一次（仅在主线程访问）
+ */
+public class EffectSink {
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    //实体 -> (效果 -> 合并后的实例)
+    private final Map<LivingEntity, Map<MobEffect, MobEffectInstance>> pending = new IdentityHashMap<>();
+
+    private long offered = 0;
+    private long merged = 0;
+    private long applied = 0;
+
+    /**
+     * 登记效果，客户端直接应用
+     */
+    public void offer(LivingEntity entity, MobEffectInstance effect) {
+        if (entity == null || effect == null) {
+            return;
+        }
+        if (entity.level().isClientSide) {
+            entity.addEffect(effect);
+            return;
+        }
+
+        offered++;
+        Map<MobEffect, MobEffectInstance> effects = pending.computeIfAbsent(entity, k -> new HashMap<>());
+        MobEffectInstance existing = effects.get(effect.getEffect());
+        if (existing == null) {
+            effects.put(effect.getEffect(), effect);
+            return;
+        }
+
+        merged++;
+        effects.put(effect.getEffect(), new MobEffectInstance(
+                effect.getEffect(),
+                Math.max(existing.getDuration(), effect.getDuration()),
+                Math.max(existing.getAmplifier(), effect.getAmplifier()),
+                existing.isAmbient() && effect.isAmbient(),
+                existing.isVisible() || effect.isVisible(),
+                existing.showIcon() || effect.showIcon()
+        ));
+    }
+
+    /**
+     * 应用本tick登记的全部效果
+     */
+    public void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        for (Map.Entry<LivingEntity, Map<MobEffect, MobEffectInstance>> entry : pending.entrySet()) {
+            LivingEntity entity = entry.getKey();
+            if (!entity.isAlive() || entity.isRemoved()) {
+                continue;
+            }
+
+            for (MobEffectInstance effect : entry.getValue().values()) {
+                try {
+                    entity.addEffect(effect);
+                    applied++;
+                } catch (Exception e) {
+                    LOGGER.error("Failed to apply effect {} to {}", effect.getDescriptionId(), entity, e);
+                }
+            }
+        }
+        pending.clear();
+    }
+
+    public void clear() {
+        pending.clear();
+    }
+
+    /**
+     * 通过当前元素系统的汇集器登记效果，系统不可用时直接应用
+     */
+    public static void queue(LivingEntity entity, MobEffectInstance effect) {
+        if (ElementSystemAPI.getElementSystem() instanceof ElementSystemImpl elementSystem) {
+            elementSystem.getEffectSink().offer(entity, effect);
+        } else if (entity != null && effect != null) {
+            entity.addEffect(effect);
+        }
+    }
+
+    /**
+     * 获取汇集统计信息（用于调试）
+     */
+    public EffectStats getStats() {
+        return new EffectStats(pending.size(), offered, merged, applied);
+    }
+
+    public static class EffectStats {
+        public final int pendingEntities;
+        public final long offered;
+        public final long merged;
+        public final long applied;
+
+        public EffectStats(int pendingEntities, long offered, long merged, long applied) {
+            this.pendingEntities = pendingEntities;
+            this.offered = offered;
+            this.merged = merged;
+            this.applied = applied;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,136 @@
+package com.element_endow.core.scheduler;
+
+import net.minecraft.world.entity.LivingEntity;
+
+import java.lang.ref.WeakReference;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * 组合重检调度队列
+ * 组合重检先入队，再由服务端tick按实体数和时间预算分批消费，
+ * 避免区块加载或重载后大量实体在同一tick集中重检
+ * 队列只持有弱引用，离开世界的实体不会因排队而无法回收
+ */
+public class CombinationScheduler {
+    //最近多少tick内受击或攻击视为战斗中
+    private static final int COMBAT_WINDOW = 100;
+
+    private final Deque<WeakReference<LivingEntity>> urgentQueue = new ArrayDeque<>();
+    private final Deque<WeakReference<LivingEntity>> normalQueue = new ArrayDeque<>();
+    //实体未重写equals，弱引用集合按引用判等
+    private final Set<LivingEntity> queued = Collections.newSetFromMap(new WeakHashMap<>());
+
+    private int lastProcessed = 0;
+    private int peakBacklog = 0;
+    private long totalProcessed = 0;
+
+    /**
+     * 将实体加入重检队列，战斗中的实体优先处理
+     */
+    public void schedule(LivingEntity entity) {
+        schedule(entity, isInCombat(entity));
+    }
+
+    public void schedule(LivingEntity entity, boolean urgent) {
+        boolean added = queued.add(entity);
+        if (urgent) {
+            //已在普通队列中的实体也插入优先队列，消费时以queued集合去重
+            urgentQueue.addLast(new WeakReference<>(entity));
+        } else if (added) {
+            normalQueue.addLast(new WeakReference<>(entity));
+        }
+
+        if (queued.size() > peakBacklog) {
+            peakBacklog = queued.size();
+        }
+    }
+
+    /**
+     * 按预算消费队列
+     * @return 本tick处理的实体数
+     */
+    public int drain(int maxEntities, long maxNanos, Consumer<LivingEntity> evaluator) {
+        int processed = 0;
+        long deadline = System.nanoTime() + maxNanos;
+
+        while (processed < maxEntities && !queued.isEmpty()) {
+            WeakReference<LivingEntity> reference = urgentQueue.pollFirst();
+            if (reference == null) {
+                reference = normalQueue.pollFirst();
+                if (reference == null) {
+                    break;
+                }
+            }
+
+            //已被回收、已离开世界或已被优先队列处理过
+            LivingEntity entity = reference.get();
+            if (entity == null || !queued.remove(entity)) {
+                continue;
+            }
+
+            if (entity.isAlive() && !entity.isRemoved()) {
+                evaluator.accept(entity);
+                processed++;
+            }
+
+            if (System.nanoTime() >= deadline) {
+                break;
+            }
+        }
+
+        //队列清空时回收残留的重复引用
+        if (queued.isEmpty()) {
+            urgentQueue.clear();
+            normalQueue.clear();
+        }
+
+        lastProcessed = processed;
+        totalProcessed += processed;
+        return processed;
+    }
+
+    /**
+     * 实体离开世界时移除，队列中残留的弱引用在消费时跳过
+     */
+    public void remove(LivingEntity entity) {
+        queued.remove(entity);
+    }
+
+    public void clear() {
+        queued.clear();
+        urgentQueue.clear();
+        normalQueue.clear();
+    }
+
+    public int getBacklogSize() {
+        return queued.size();
+    }
+
+    public static boolean isInCombat(LivingEntity entity) {
+        int now = entity.tickCount;
+        return (entity.getLastHurtByMob() != null && now - entity.getLastHurtByMobTimestamp() < COMBAT_WINDOW)
+                || (entity.getLastHurtMob() != null && now - entity.getLastHurtMobTimestamp() < COMBAT_WINDOW);
+    }
+
+    /**
+     * 获取调度统计信息（用于调试）
+     */
+    public SchedulerStats getStats() {
+        return new SchedulerStats(queued.size(), peakBacklog, lastProcessed, totalProcessed);
+    }
+
+    public static class SchedulerStats {
+        public final int backlog;
+        public final int peakBacklog;
+        public final int lastProcessed;
+        public final long totalProcessed;
+
+        public SchedulerStats(int backlog, int peakBacklog, int lastProcessed, long totalProcessed) {
+            this.backlog = backlog;
+            this.peakBacklog = peakBacklog;
+            this.lastProcessed = lastProcessed;
+            this.totalProcessed = totalProcessed;
+        }
+    }
+}
\ No newline at end of file
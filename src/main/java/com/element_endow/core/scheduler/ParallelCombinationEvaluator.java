@@ -0,0 +1,136 @@
+package com.element_endow.core.scheduler;
+
+import com.element_endow.core.compiled.CombinationIndex;
+import com.element_endow.core.compiled.CompiledCombination;
+import com.element_endow.core.snapshot.EntitySnapshot;
+import com.element_endow.util.ConditionChecker;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.stream.Collectors;
+
+/**
+ * 并行组合匹配
+ * 主线程提交实体快照，在ForkJoin线程池中对编译索引并行求值，
+ * 计算完成后由主线程在之后的tick开始时取回并应用，主线程从不等待计算
+ */
+public class ParallelCombinationEvaluator {
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    private final int parallelism;
+    private ForkJoinPool pool;
+    private ForkJoinTask<List<EvaluationResult>> pending;
+    //提交批次时使用的索引，取回时据此判断结果是否仍然有效
+    private CombinationIndex pendingIndex;
+
+    public ParallelCombinationEvaluator(int parallelism) {
+        this.parallelism = parallelism > 0 ? parallelism : Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+    }
+
+    /**
+     * 是否有尚未取回的批次
+     */
+    public boolean isBusy() {
+        return pending != null;
+    }
+
+    public void submit(List<EntitySnapshot> snapshots, CombinationIndex index) {
+        if (pending != null) {
+            throw new IllegalStateException("Previous combination batch has not been collected");
+        }
+
+        List<EntitySnapshot> batch = List.copyOf(snapshots);
+        pendingIndex = index;
+        pending = getPool().submit(() -> batch.parallelStream()
+                .map(snapshot -> new EvaluationResult(snapshot,
+                        evaluate(snapshot, index.forDimension(snapshot.dimension))))
+                .collect(Collectors.toList()));
+    }
+
+    /**
+     * 取回已计算完成的批次，没有批次或尚未完成时返回null，不阻塞调用线程
+     */
+    public CompletedBatch collectIfDone() {
+        if (pending == null || !pending.isDone()) {
+            return null;
+        }
+
+        CombinationIndex index = pendingIndex;
+        try {
+            return new CompletedBatch(index, pending.join());
+        } catch (Exception e) {
+            LOGGER.error("Parallel combination evaluation failed", e);
+            return new CompletedBatch(index, Collections.emptyList());
+        } finally {
+            pending = null;
+            pendingIndex = null;
+        }
+    }
+
+    public void shutdown() {
+        if (pool != null) {
+            pool.shutdownNow();
+            pool = null;
+        }
+        pending = null;
+        pendingIndex = null;
+    }
+
+    /**
+     * 纯函数：仅读取快照与不可变索引
+     * @param index 快照所在维度的分片
+     */
+    public static Set<String> evaluate(EntitySnapshot snapshot, CombinationIndex index) {
+        Set<String> matched = new HashSet<>();
+        for (CompiledCombination combination : index.getCombinations()) {
+            if (!combination.matchesElements(snapshot.elementValues)) {
+                continue;
+            }
+            if (combination.hasConditions() && !ConditionChecker.checkConditions(combination.conditions, snapshot)) {
+                continue;
+            }
+            matched.add(combination.id);
+        }
+        return matched;
+    }
+
+    private ForkJoinPool getPool() {
+        if (pool == null) {
+            pool = new ForkJoinPool(parallelism, p -> {
+                ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+                thread.setName("ElementEndow-Combination-" + thread.getPoolIndex());
+                thread.setDaemon(true);
+                return thread;
+            }, (thread, e) -> LOGGER.error("Uncaught exception in {}", thread.getName(), e), false);
+            LOGGER.info("Started parallel combination evaluator with {} threads", parallelism);
+        }
+        return pool;
+    }
+
+    /**
+     * 已完成的批次及其求值时使用的索引
+     */
+    public static class CompletedBatch {
+        public final CombinationIndex index;
+        public final List<EvaluationResult> results;
+
+        public CompletedBatch(CombinationIndex index, List<EvaluationResult> results) {
+            this.index = index;
+            this.results = results;
+        }
+    }
+
+    public static class EvaluationResult {
+        public final EntitySnapshot snapshot;
+        public final Set<String> matchedCombinations;
+
+        public EvaluationResult(EntitySnapshot snapshot, Set<String> matchedCombinations) {
+            this.snapshot = snapshot;
+            this.matchedCombinations = matchedCombinations;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,84 @@
+package com.element_endow.core.snapshot;
+
+import com.element_endow.api.IElementSystem;
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.world.Difficulty;
+import net.minecraft.world.entity.LivingEntity;
+import net.minecraft.world.level.Level;
+
+/**
+ * 实体状态的不可变快照
+ * 在主线程采集，包含组合匹配与条件检查需要的全部输入，可在其他线程安全读取
+ */
+public final class EntitySnapshot {
+    //仅用于主线程回写结果，其他线程不得访问
+    public final LivingEntity entity;
+    public final int tickCount;
+    //按元素序号索引的元素值
+    public final double[] elementValues;
+    public final float health;
+    public final float maxHealth;
+    public final ResourceLocation biome;
+    public final ResourceLocation dimension;
+    public final boolean raining;
+    public final boolean thundering;
+    public final long dayTime;
+    public final Difficulty difficulty;
+
+    private EntitySnapshot(LivingEntity entity, int tickCount, double[] elementValues,
+                           float health, float maxHealth,
+                           ResourceLocation biome, ResourceLocation dimension,
+                           boolean raining, boolean thundering, long dayTime, Difficulty difficulty) {
+        this.entity = entity;
+        this.tickCount = tickCount;
+        this.elementValues = elementValues;
+        this.health = health;
+        this.maxHealth = maxHealth;
+        this.biome = biome;
+        this.dimension = dimension;
+        this.raining = raining;
+        this.thundering = thundering;
+        this.dayTime = dayTime;
+        this.difficulty = difficulty;
+    }
+
+    /**
+     * 采集实体快照（必须在主线程调用）
+     */
+    public static EntitySnapshot capture(LivingEntity entity, IElementSystem elementSystem) {
+        return capture(entity, elementSystem, elementSystem.getElementVector(entity));
+    }
+
+    /**
+     * 使用已读取的元素值采集快照（必须在主线程调用）
+     */
+    public static EntitySnapshot capture(LivingEntity entity, IElementSystem elementSystem, double[] elementValues) {
+        Level level = entity.level();
+        ResourceLocation biome = level.getBiome(entity.blockPosition())
+                .unwrapKey()
+                .map(ResourceKey::location)
+                .orElse(null);
+
+        return new EntitySnapshot(
+                entity,
+                entity.tickCount,
+                elementValues,
+                entity.getHealth(),
+                entity.getMaxHealth(),
+                biome,
+                level.dimension().location(),
+                level.isRaining(),
+                level.isThundering(),
+                level.getDayTime(),
+                level.getDifficulty()
+        );
+    }
+
+    /**
+     * 按序号读取元素值，越界视为0
+     */
+    public double getElementValue(int ordinal) {
+        return ordinal >= 0 && ordinal < elementValues.length ? elementValues[ordinal] : 0.0;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,117 @@
+package com.element_endow.core.snapshot;
+
+import com.element_endow.api.IElementSystem;
+import com.element_endow.core.compiled.CombinationIndex;
+import com.element_endow.core.compiled.CompiledCombination;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.Tag;
+import net.minecraft.world.entity.Entity;
+import net.minecraft.world.entity.LivingEntity;
+
+import java.util.*;
+
+/**
+ * 投射物发射时的元素快照
+ * 发射者的元素值与激活组合在发射时写入投射物的持久数据，命中时直接使用，不再读取发射者的当前状态
+ * 元素以[元素数, 组合槽位数, (序号, 值的浮点位)...]存为整数数组，激活组合以槽位位图存为长整数数组
+ */
+public final class ProjectileElementSnapshot {
+    private static final String ELEMENTS_TAG = "element_endow:elements";
+    private static final String COMBINATIONS_TAG = "element_endow:combinations";
+    private static final int HEADER_SIZE = 2;
+
+    //按元素序号索引的元素值
+    public final double[] elementValues;
+    public final Set<String> activeCombinations;
+
+    private ProjectileElementSnapshot(double[] elementValues, Set<String> activeCombinations) {
+        this.elementValues = elementValues;
+        this.activeCombinations = activeCombinations;
+    }
+
+    /**
+     * 是否已记录快照，区块重新加载的投射物不会重新采集
+     */
+    public static boolean isCaptured(Entity projectile) {
+        return projectile.getPersistentData().contains(ELEMENTS_TAG, Tag.TAG_INT_ARRAY);
+    }
+
+    /**
+     * 采集发射者的元素与激活组合并写入投射物（必须在主线程调用）
+     */
+    public static void capture(Entity projectile, LivingEntity owner, IElementSystem elementSystem,
+                               CombinationIndex index, Collection<String> activeCombinations) {
+        double[] values = elementSystem.getElementVector(owner);
+
+        int present = 0;
+        for (double value : values) {
+            if (value > 0) {
+                present++;
+            }
+        }
+
+        int[] elements = new int[HEADER_SIZE + present * 2];
+        elements[0] = values.length;
+        elements[1] = index.getSlotCount();
+        int cursor = HEADER_SIZE;
+        for (int ordinal = 0; ordinal < values.length; ordinal++) {
+            if (values[ordinal] > 0) {
+                elements[cursor++] = ordinal;
+                elements[cursor++] = Float.floatToRawIntBits((float) values[ordinal]);
+            }
+        }
+
+        long[] combinations = new long[(index.getSlotCount() + 63) >>> 6];
+        for (String combinationId : activeCombinations) {
+            CompiledCombination combination = index.get(combinationId);
+            if (combination != null) {
+                combinations[combination.slot >>> 6] |= 1L << (combination.slot & 63);
+            }
+        }
+
+        CompoundTag data = projectile.getPersistentData();
+        data.putIntArray(ELEMENTS_TAG, elements);
+        data.putLongArray(COMBINATIONS_TAG, combinations);
+    }
+
+    /**
+     * 读取投射物上的快照
+     * 没有快照，或元素注册数变化导致序号失效时返回null，由调用方回退到读取发射者；
+     * 组合重载导致槽位失效时只丢弃组合部分
+     */
+    public static ProjectileElementSnapshot read(Entity projectile, IElementSystem elementSystem, CombinationIndex index) {
+        CompoundTag data = projectile.getPersistentData();
+        if (!data.contains(ELEMENTS_TAG, Tag.TAG_INT_ARRAY)) {
+            return null;
+        }
+
+        int[] elements = data.getIntArray(ELEMENTS_TAG);
+        int elementCount = elementSystem.getElementCount();
+        if (elements.length < HEADER_SIZE || elements[0] != elementCount) {
+            return null;
+        }
+
+        double[] values = new double[elementCount];
+        for (int cursor = HEADER_SIZE; cursor + 1 < elements.length; cursor += 2) {
+            int ordinal = elements[cursor];
+            if (ordinal >= 0 && ordinal < elementCount) {
+                values[ordinal] = Float.intBitsToFloat(elements[cursor + 1]);
+            }
+        }
+
+        Set<String> combinations = new HashSet<>();
+        if (elements[1] == index.getSlotCount()) {
+            long[] words = data.getLongArray(COMBINATIONS_TAG);
+            for (int word = 0; word < words.length; word++) {
+                for (long bits = words[word]; bits != 0L; bits &= bits - 1) {
+                    CompiledCombination combination = index.getBySlot((word << 6) + Long.numberOfTrailingZeros(bits));
+                    if (combination != null) {
+                        combinations.add(combination.id);
+                    }
+                }
+            }
+        }
+
+        return new ProjectileElementSnapshot(values, combinations);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,230 @@
+package com.element_endow.core.spatial;
+
+import it.unimi.dsi.fastutil.ints.Int2LongOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import net.minecraft.core.SectionPos;
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.util.Mth;
+import net.minecraft.world.entity.Entity;
+import net.minecraft.world.entity.LivingEntity;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.phys.Vec3;
+
+import java.util.*;
+
+/**
+ * 持有元素的实体的空间哈希
+ * 每个维度按区块分段（16x16x16）分桶，桶内只保存实体ID与元素掩码，
+ * 范围查询先按掩码过滤，再解析实体计算距离
+ */
+public class ElementSpatialIndex {
+    private final Map<ResourceKey<Level>, LevelGrid> levels = new HashMap<>();
+
+    private static class Section {
+        final IntArrayList ids = new IntArrayList(4);
+        final LongArrayList masks = new LongArrayList(4);
+
+        void add(int id, long mask) {
+            ids.add(id);
+            masks.add(mask);
+        }
+
+        void setMask(int id, long mask) {
+            int index = ids.indexOf(id);
+            if (index >= 0) {
+                masks.set(index, mask);
+            }
+        }
+
+        void remove(int id) {
+            int index = ids.indexOf(id);
+            if (index < 0) {
+                return;
+            }
+            //与末尾交换后删除，避免移动数组
+            int last = ids.size() - 1;
+            ids.set(index, ids.getInt(last));
+            masks.set(index, masks.getLong(last));
+            ids.removeInt(last);
+            masks.removeLong(last);
+        }
+
+        boolean isEmpty() {
+            return ids.isEmpty();
+        }
+    }
+
+    private static class LevelGrid {
+        final Long2ObjectOpenHashMap<Section> sections = new Long2ObjectOpenHashMap<>();
+        //实体ID -> 所在分段
+        final Int2LongOpenHashMap entitySections = new Int2LongOpenHashMap();
+        //实体ID -> 元素掩码
+        final Int2LongOpenHashMap entityMasks = new Int2LongOpenHashMap();
+
+        void remove(int id) {
+            if (!entitySections.containsKey(id)) {
+                return;
+            }
+            long sectionKey = entitySections.remove(id);
+            entityMasks.remove(id);
+            Section section = sections.get(sectionKey);
+            if (section != null) {
+                section.remove(id);
+                if (section.isEmpty()) {
+                    sections.remove(sectionKey);
+                }
+            }
+        }
+    }
+
+    /**
+     * 更新实体的位置与元素掩码，掩码为0时移出索引
+     */
+    public void update(LivingEntity entity, long mask) {
+        LevelGrid grid = levels.computeIfAbsent(entity.level().dimension(), k -> new LevelGrid());
+        int id = entity.getId();
+
+        if (mask == 0L) {
+            grid.remove(id);
+            return;
+        }
+
+        long sectionKey = SectionPos.asLong(entity.blockPosition());
+        if (grid.entitySections.containsKey(id)) {
+            long previousKey = grid.entitySections.get(id);
+            if (previousKey == sectionKey) {
+                if (grid.entityMasks.get(id) != mask) {
+                    grid.entityMasks.put(id, mask);
+                    grid.sections.get(sectionKey).setMask(id, mask);
+                }
+                return;
+            }
+            grid.remove(id);
+        }
+
+        grid.sections.computeIfAbsent(sectionKey, k -> new Section()).add(id, mask);
+        grid.entitySections.put(id, sectionKey);
+        grid.entityMasks.put(id, mask);
+    }
+
+    /**
+     * 只更新已索引实体的位置，实体未跨分段时不做任何处理
+     */
+    public void move(LivingEntity entity) {
+        LevelGrid grid = levels.get(entity.level().dimension());
+        if (grid == null) {
+            return;
+        }
+
+        int id = entity.getId();
+        if (!grid.entitySections.containsKey(id)) {
+            return;
+        }
+
+        long sectionKey = SectionPos.asLong(entity.blockPosition());
+        if (grid.entitySections.get(id) != sectionKey) {
+            update(entity, grid.entityMasks.get(id));
+        }
+    }
+
+    public boolean isTracked(LivingEntity entity) {
+        LevelGrid grid = levels.get(entity.level().dimension());
+        return grid != null && grid.entitySections.containsKey(entity.getId());
+    }
+
+    public void remove(Entity entity) {
+        LevelGrid grid = levels.get(entity.level().dimension());
+        if (grid != null) {
+            grid.remove(entity.getId());
+        }
+    }
+
+    public void clearLevel(ResourceKey<Level> dimension) {
+        levels.remove(dimension);
+    }
+
+    public void clear() {
+        levels.clear();
+    }
+
+    /**
+     * 查询范围内持有元素的实体，按距离由近到远返回
+     * @param filterMask 实体掩码需与之有交集，0表示不过滤
+     * @param exclude 排除的实体（通常是攻击者与目标）
+     */
+    public List<LivingEntity> query(Level level, Vec3 center, double radius, long filterMask,
+                                    int maxTargets, Set<Entity> exclude) {
+        LevelGrid grid = levels.get(level.dimension());
+        if (grid == null || grid.sections.isEmpty() || maxTargets <= 0) {
+            return Collections.emptyList();
+        }
+
+        double radiusSqr = radius * radius;
+        int minX = SectionPos.blockToSectionCoord(Mth.floor(center.x - radius));
+        int minY = SectionPos.blockToSectionCoord(Mth.floor(center.y - radius));
+        int minZ = SectionPos.blockToSectionCoord(Mth.floor(center.z - radius));
+        int maxX = SectionPos.blockToSectionCoord(Mth.floor(center.x + radius));
+        int maxY = SectionPos.blockToSectionCoord(Mth.floor(center.y + radius));
+        int maxZ = SectionPos.blockToSectionCoord(Mth.floor(center.z + radius));
+
+        List<LivingEntity> result = new ArrayList<>();
+        for (int x = minX; x <= maxX; x++) {
+            for (int y = minY; y <= maxY; y++) {
+                for (int z = minZ; z <= maxZ; z++) {
+                    Section section = grid.sections.get(SectionPos.asLong(x, y, z));
+                    if (section == null) {
+                        continue;
+                    }
+
+                    for (int i = 0; i < section.ids.size(); i++) {
+                        //先按掩码过滤，再解析实体
+                        if (filterMask != 0L && (section.masks.getLong(i) & filterMask) == 0L) {
+                            continue;
+                        }
+
+                        Entity entity = level.getEntity(section.ids.getInt(i));
+                        if (!(entity instanceof LivingEntity living) || !living.isAlive() || exclude.contains(living)) {
+                            continue;
+                        }
+                        if (living.distanceToSqr(center) <= radiusSqr) {
+                            result.add(living);
+                        }
+                    }
+                }
+            }
+        }
+
+        result.sort(Comparator.comparingDouble(entity -> entity.distanceToSqr(center)));
+        if (result.size() > maxTargets) {
+            return new ArrayList<>(result.subList(0, maxTargets));
+        }
+        return result;
+    }
+
+    /**
+     * 获取索引统计信息（用于调试）
+     */
+    public SpatialStats getStats() {
+        int entities = 0;
+        int sections = 0;
+        for (LevelGrid grid : levels.values()) {
+            entities += grid.entitySections.size();
+            sections += grid.sections.size();
+        }
+        return new SpatialStats(levels.size(), sections, entities);
+    }
+
+    public static class SpatialStats {
+        public final int levels;
+        public final int sections;
+        public final int entities;
+
+        public SpatialStats(int levels, int sections, int entities) {
+            this.levels = levels;
+            this.sections = sections;
+            this.entities = entities;
+        }
+    }
+}
\ No newline at end of file
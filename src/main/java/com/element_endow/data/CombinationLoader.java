@@ -1,61 +1,263 @@
 package com.element_endow.data;
 
 import com.element_endow.api.IElementMountSystem;
+import com.element_endow.api.IElementSystem;
 import com.element_endow.api.ReactionResult;
+import com.element_endow.core.compiled.CompiledCombination;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.JsonElement;
-import net.minecraft.resources.ResourceLocation;
+import net.minecraft.world.effect.MobEffect;
 import net.minecraft.world.entity.ai.attributes.AttributeModifier;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.*;
 
 public class CombinationLoader {
     private static final Logger LOGGER = LogManager.getLogger();
     private static final Gson GSON = new GsonBuilder().create();
 
-    private final Map<String, ElementCombination> combinations = new HashMap<>();
+    private final RuleRegistry rules;
 
-    public void loadCombinations() {
-        combinations.clear();
+    public CombinationLoader(RuleRegistry rules) {
+        this.rules = rules;
     }
 
-    public void loadFromResources(Map<ResourceLocation, JsonElement> resources) {
-        combinations.clear();
+    /**
+     * 以新代数重新发布当前规则，使组合索引失效
+     */
+    public void loadCombinations() {
+        rules.republish();
+    }
 
-        int loadedCount = 0;
-        int errorCount = 0;
+    /**
+     * 解析并校验单个组合文件，同时预解析效果注册表引用（在准备阶段的工作线程调用）
+     */
+    public static ElementCombination parseCombination(JsonElement json) {
+        ElementCombination combination = GSON.fromJson(json, ElementCombination.class);
+        if (combination == null || !validateCombination(combination)) {
+            return null;
+        }
+        return resolveCombination(combination);
+    }
 
-        for (Map.Entry<ResourceLocation, JsonElement> entry : resources.entrySet()) {
-            ResourceLocation location = entry.getKey();
+    /**
+     * 从磁盘缓存还原已校验过的组合，效果按注册表数字ID取得；元素表未变化时同时还原编译结果
+     */
+    public static ElementCombination readCached(DataInput in, RuleCache cache) throws IOException {
+        ElementCombination combination = new ElementCombination();
+        combination.id = in.readUTF();
+        combination.requiredElements = RuleCodec.readStringSet(in);
+        combination.forbiddenElements = RuleCodec.readStringSet(in);
+        combination.minValues = RuleCodec.readDoubles(in);
+        combination.conditions = RuleCodec.readConditions(in);
+        combination.checkInterval = in.readInt();
+
+        int attributeCount = in.readInt();
+        combination.attributeEffects = new ArrayList<>(attributeCount);
+        for (int i = 0; i < attributeCount; i++) {
+            combination.attributeEffects.add(new AttributeEffect(RuleCodec.readString(in), in.readDouble(),
+                    RuleCodec.readString(in)));
+        }
+        int statusCount = in.readInt();
+        combination.statusEffects = new ArrayList<>(statusCount);
+        for (int i = 0; i < statusCount; i++) {
+            StatusEffect effect = new StatusEffect(RuleCodec.readString(in), in.readInt(), in.readInt(),
+                    in.readBoolean());
+            effect.mobEffect = RuleCodec.readEffect(in, cache, effect.effect);
+            combination.statusEffects.add(effect);
+        }
+        int mountCount = in.readInt();
+        combination.mountTable = new HashMap<>(mountCount * 2);
+        for (int i = 0; i < mountCount; i++) {
+            String elementId = in.readUTF();
+            combination.mountTable.put(elementId, new MountData(in.readInt(), in.readDouble()));
+        }
+        combination.attackTrigger = readTrigger(in, cache);
+        combination.defenseTrigger = readTrigger(in, cache);
 
-            if (!location.getNamespace().equals("element_endow")) {
-                continue;
+        if (in.readBoolean()) {
+            CompiledCombination compiled = CompiledCombination.read(in, combination, cache.getCompiledElementCount());
+            if (cache.getCompiledElementCount() >= 0) {
+                combination.compiled = compiled;
             }
+        }
+        return combination;
+    }
 
-            try {
-                ElementCombination combination = GSON.fromJson(entry.getValue(), ElementCombination.class);
+    /**
+     * 写入磁盘缓存，包括效果的注册表数字ID与当前元素表下的编译结果
+     */
+    public static void writeCached(DataOutput out, ElementCombination combination, IElementSystem elementSystem)
+            throws IOException {
+        out.writeUTF(combination.id);
+        RuleCodec.writeStrings(out, combination.requiredElements);
+        RuleCodec.writeStrings(out, combination.forbiddenElements);
+        RuleCodec.writeDoubles(out, combination.minValues);
+        RuleCodec.writeConditions(out, combination.conditions);
+        out.writeInt(combination.checkInterval);
+
+        out.writeInt(combination.attributeEffects.size());
+        for (AttributeEffect effect : combination.attributeEffects) {
+            RuleCodec.writeString(out, effect.attribute);
+            out.writeDouble(effect.value);
+            RuleCodec.writeString(out, effect.operation);
+        }
+        out.writeInt(combination.statusEffects.size());
+        for (StatusEffect effect : combination.statusEffects) {
+            RuleCodec.writeString(out, effect.effect);
+            out.writeInt(effect.duration);
+            out.writeInt(effect.amplifier);
+            out.writeBoolean(effect.showParticles);
+            RuleCodec.writeEffect(out, effect.getMobEffect());
+        }
+        out.writeInt(combination.mountTable.size());
+        for (Map.Entry<String, MountData> entry : combination.mountTable.entrySet()) {
+            out.writeUTF(entry.getKey());
+            out.writeInt(entry.getValue().duration);
+            out.writeDouble(entry.getValue().amount);
+        }
+        writeTrigger(out, combination.attackTrigger);
+        writeTrigger(out, combination.defenseTrigger);
 
-                if (validateCombination(combination)) {
-                    combinations.put(combination.id, combination);
-                    loadedCount++;
-                } else {
-                    errorCount++;
-                }
-            } catch (Exception e) {
-                LOGGER.error("Failed to load combination {}: {}", location, e.getMessage());
-                errorCount++;
+        //组合的编译结果总是存在，槽位在建立索引时重新分配
+        out.writeBoolean(true);
+        CompiledCombination.compile(-1, combination, elementSystem).write(out);
+    }
+
+    private static TriggerEffect readTrigger(DataInput in, RuleCache cache) throws IOException {
+        TriggerEffect trigger = new TriggerEffect();
+        trigger.damageMultiplier = in.readDouble();
+        trigger.defenseMultiplier = in.readDouble();
+        trigger.extraDamage = in.readDouble();
+        trigger.damageReduction = in.readDouble();
+        trigger.probability = in.readDouble();
+        trigger.targetEffects = readEffects(in, cache);
+        trigger.selfEffects = readEffects(in, cache);
+        trigger.targetAttributeModifiers = readModifiers(in);
+        trigger.selfAttributeModifiers = readModifiers(in);
+
+        int mountCount = in.readInt();
+        trigger.mountApplications = new ArrayList<>(mountCount);
+        for (int i = 0; i < mountCount; i++) {
+            trigger.mountApplications.add(new MountApplication(RuleCodec.readString(in), in.readDouble(),
+                    in.readInt(), in.readDouble()));
+        }
+        int advancedCount = in.readInt();
+        trigger.advancedMountApplications = new ArrayList<>(advancedCount);
+        for (int i = 0; i < advancedCount; i++) {
+            trigger.advancedMountApplications.add(RuleCodec.readAdvancedMount(in));
+        }
+        trigger.targetDots = RuleCodec.readDots(in);
+        trigger.triggerConditions = RuleCodec.readConditions(in);
+        return trigger;
+    }
+
+    private static void writeTrigger(DataOutput out, TriggerEffect trigger) throws IOException {
+        out.writeDouble(trigger.damageMultiplier);
+        out.writeDouble(trigger.defenseMultiplier);
+        out.writeDouble(trigger.extraDamage);
+        out.writeDouble(trigger.damageReduction);
+        out.writeDouble(trigger.probability);
+        writeEffects(out, trigger.targetEffects);
+        writeEffects(out, trigger.selfEffects);
+        writeModifiers(out, trigger.targetAttributeModifiers);
+        writeModifiers(out, trigger.selfAttributeModifiers);
+
+        List<MountApplication> mounts = trigger.mountApplications != null ? trigger.mountApplications : List.of();
+        out.writeInt(mounts.size());
+        for (MountApplication mount : mounts) {
+            RuleCodec.writeString(out, mount.elementId);
+            out.writeDouble(mount.amount);
+            out.writeInt(mount.duration);
+            out.writeDouble(mount.probability);
+        }
+        List<IElementMountSystem.AdvancedMountData> advanced = trigger.advancedMountApplications != null
+                ? trigger.advancedMountApplications : List.of();
+        out.writeInt(advanced.size());
+        for (IElementMountSystem.AdvancedMountData mount : advanced) {
+            RuleCodec.writeAdvancedMount(out, mount);
+        }
+        RuleCodec.writeDots(out, trigger.targetDots);
+        RuleCodec.writeConditions(out, trigger.triggerConditions);
+    }
+
+    private static List<EffectData> readEffects(DataInput in, RuleCache cache) throws IOException {
+        int size = in.readInt();
+        List<EffectData> effects = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            EffectData effect = new EffectData(RuleCodec.readString(in), in.readInt(), in.readInt(), in.readBoolean());
+            effect.mobEffect = RuleCodec.readEffect(in, cache, effect.effect);
+            effects.add(effect);
+        }
+        return effects;
+    }
+
+    private static void writeEffects(DataOutput out, List<EffectData> effects) throws IOException {
+        out.writeInt(effects.size());
+        for (EffectData effect : effects) {
+            RuleCodec.writeString(out, effect.effect);
+            out.writeInt(effect.duration);
+            out.writeInt(effect.amplifier);
+            out.writeBoolean(effect.showParticles);
+            RuleCodec.writeEffect(out, effect.getMobEffect());
+        }
+    }
+
+    private static List<AttributeModifierData> readModifiers(DataInput in) throws IOException {
+        int size = in.readInt();
+        if (size < 0) {
+            return null;
+        }
+        List<AttributeModifierData> modifiers = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            modifiers.add(new AttributeModifierData(RuleCodec.readString(in), RuleCodec.readString(in),
+                    in.readDouble(), RuleCodec.readString(in), RuleCodec.readString(in), in.readBoolean(),
+                    in.readInt()));
+        }
+        return modifiers;
+    }
+
+    private static void writeModifiers(DataOutput out, List<AttributeModifierData> modifiers) throws IOException {
+        out.writeInt(modifiers != null ? modifiers.size() : -1);
+        if (modifiers != null) {
+            for (AttributeModifierData modifier : modifiers) {
+                RuleCodec.writeString(out, modifier.attribute);
+                RuleCodec.writeString(out, modifier.operation);
+                out.writeDouble(modifier.value);
+                RuleCodec.writeString(out, modifier.name);
+                RuleCodec.writeString(out, modifier.uuid);
+                out.writeBoolean(modifier.permanent);
+                out.writeInt(modifier.duration);
             }
         }
+    }
+
+    private static ElementCombination resolveCombination(ElementCombination combination) {
+        combination.statusEffects.forEach(StatusEffect::getMobEffect);
+        for (TriggerEffect trigger : List.of(combination.attackTrigger, combination.defenseTrigger)) {
+            trigger.targetEffects.forEach(EffectData::getMobEffect);
+            trigger.selfEffects.forEach(EffectData::getMobEffect);
+        }
+        return combination;
+    }
 
-        if (loadedCount > 0 || errorCount > 0) {
-            LOGGER.info("Loaded {} combinations ({} errors)", loadedCount, errorCount);
+    /**
+     * 汇总扫描结果，同ID的组合后加载的覆盖先加载的
+     */
+    public static Map<String, ElementCombination> collect(RuleFileScanner.ScanResult<ElementCombination> scan) {
+        Map<String, ElementCombination> loaded = new HashMap<>();
+        for (ElementCombination combination : scan.rules) {
+            loaded.put(combination.id, combination);
         }
+        return loaded;
     }
 
-    private boolean validateCombination(ElementCombination combination) {
+    private static boolean validateCombination(ElementCombination combination) {
         if (combination.id == null || combination.id.isEmpty()) {
             return false;
         }
@@ -68,12 +270,20 @@ public class CombinationLoader {
         if (combination.statusEffects == null) combination.statusEffects = new ArrayList<>();
         if (combination.mountTable == null) combination.mountTable = new HashMap<>();
         if (combination.conditions == null) combination.conditions = new HashMap<>();
+        if (combination.checkInterval < 0) combination.checkInterval = 0;
 
         //初始化触发效果
         if (combination.attackTrigger == null) combination.attackTrigger = new TriggerEffect();
         if (combination.defenseTrigger == null) combination.defenseTrigger = new TriggerEffect();
-
-        return true;
+        if (combination.attackTrigger.targetDots == null) combination.attackTrigger.targetDots = new ArrayList<>();
+        if (combination.defenseTrigger.targetDots == null) combination.defenseTrigger.targetDots = new ArrayList<>();
+        if (combination.attackTrigger.targetEffects == null) combination.attackTrigger.targetEffects = new ArrayList<>();
+        if (combination.attackTrigger.selfEffects == null) combination.attackTrigger.selfEffects = new ArrayList<>();
+        if (combination.defenseTrigger.targetEffects == null) combination.defenseTrigger.targetEffects = new ArrayList<>();
+        if (combination.defenseTrigger.selfEffects == null) combination.defenseTrigger.selfEffects = new ArrayList<>();
+
+        return ReactionLoader.validateDots(combination.id, combination.attackTrigger.targetDots)
+                && ReactionLoader.validateDots(combination.id, combination.defenseTrigger.targetDots);
     }
 
     //数据类定义
@@ -83,6 +293,8 @@ public class CombinationLoader {
         public Set<String> forbiddenElements = new HashSet<>();
         public Map<String, Double> minValues = new HashMap<>();
         public Map<String, Object> conditions = new HashMap<>();
+        //重检间隔（tick），0表示按条件推断的求值类别决定
+        public int checkInterval = 0;
 
         //常态效果，组合激活时持续生效
         public List<AttributeEffect> attributeEffects = new ArrayList<>();//属性效果
@@ -92,6 +304,7 @@ public class CombinationLoader {
         //触发效果，特定事件时触发
         public TriggerEffect attackTrigger = new TriggerEffect();
         public TriggerEffect defenseTrigger = new TriggerEffect();
+        public transient CompiledCombination compiled;//由磁盘缓存还原的编译结果
     }
 
     //属性效果
@@ -115,6 +328,7 @@ public class CombinationLoader {
         public int duration;      // 持续时间（tick）
         public int amplifier;     // 效果等级
         public boolean showParticles = true; // 是否显示粒子
+        private transient MobEffect mobEffect;//加载时预解析
 
         public StatusEffect() {}
 
@@ -124,6 +338,13 @@ public class CombinationLoader {
             this.amplifier = amplifier;
             this.showParticles = showParticles;
         }
+
+        public MobEffect getMobEffect() {
+            if (mobEffect == null) {
+                mobEffect = ReactionLoader.resolveEffect(effect);
+            }
+            return mobEffect;
+        }
     }
 
     public static class MountData {
@@ -152,6 +373,7 @@ public class CombinationLoader {
         public List<AttributeModifierData> selfAttributeModifiers = new ArrayList<>();
         public List<MountApplication> mountApplications = new ArrayList<>();
         public List<IElementMountSystem.AdvancedMountData> advancedMountApplications = new ArrayList<>();
+        public List<ReactionLoader.DotData> targetDots = new ArrayList<>();//施加到目标的持续伤害
 
         public Map<String, Object> triggerConditions = new HashMap<>();
     }
@@ -162,6 +384,7 @@ public class CombinationLoader {
         public int duration;
         public int amplifier;
         public boolean showParticles = true;
+        private transient MobEffect mobEffect;//加载时预解析
 
         public EffectData() {}
 
@@ -171,6 +394,13 @@ public class CombinationLoader {
             this.amplifier = amplifier;
             this.showParticles = showParticles;
         }
+
+        public MobEffect getMobEffect() {
+            if (mobEffect == null) {
+                mobEffect = ReactionLoader.resolveEffect(effect);
+            }
+            return mobEffect;
+        }
     }
 
     public static class MountApplication {
@@ -261,6 +491,6 @@ public class CombinationLoader {
     }
 
     public Map<String, ElementCombination> getCombinations() {
-        return new HashMap<>(combinations);
+        return new HashMap<>(rules.getRuleSet().combinations);
     }
 }
\ No newline at end of file
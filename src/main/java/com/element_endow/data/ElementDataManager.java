@@ -2,154 +2,284 @@ package com.element_endow.data;
 
 import com.element_endow.ElementEndow;
 import com.element_endow.api.ElementSystemAPI;
+import com.element_endow.core.ElementCombinationSystem;
+import com.element_endow.core.ElementReactionSystem;
+import com.element_endow.core.ElementSystemImpl;
+import com.element_endow.core.compiled.CombinationIndex;
+import com.element_endow.core.compiled.ReactionIndex;
 import com.element_endow.data.entity_bindings.EntityElementBindingLoader;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.JsonElement;
 import net.minecraft.resources.ResourceLocation;
 import net.minecraft.server.packs.resources.ResourceManager;
-import net.minecraft.server.packs.resources.SimpleJsonResourceReloadListener;
+import net.minecraft.server.packs.resources.SimplePreparableReloadListener;
 import net.minecraft.util.profiling.ProfilerFiller;
 import net.minecraftforge.event.AddReloadListenerEvent;
+import net.minecraftforge.event.TagsUpdatedEvent;
 import net.minecraftforge.eventbus.api.SubscribeEvent;
 import net.minecraftforge.fml.common.Mod;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-import java.util.Map;
+import java.util.*;
+import java.util.function.Function;
 
 @Mod.EventBusSubscriber(modid = ElementEndow.MODID, bus = Mod.EventBusSubscriber.Bus.FORGE)
 public class ElementDataManager {
     private static final Logger LOGGER = LogManager.getLogger();
     private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
 
-    private static final ReactionLoader reactionLoader = new ReactionLoader();
-    private static final CombinationLoader combinationLoader = new CombinationLoader();
-    private static final EntityElementBindingLoader entityBindingLoader = new EntityElementBindingLoader();
+    public static final String REACTIONS = "reactions";
+    public static final String COMBINATIONS = "combinations";
+    public static final String BINDINGS = "entity_bindings";
+    public static final List<String> RULE_DIRECTORIES = List.of(REACTIONS, COMBINATIONS, BINDINGS);
+
+    //唯一的规则注册表，由元素系统注入各子系统
+    private static final RuleRegistry registry = new RuleRegistry();
 
     @SubscribeEvent
     public static void onAddReloadListeners(AddReloadListenerEvent event) {
-        event.addListener(new ReactionDataLoader());
-        event.addListener(new CombinationDataLoader());
-        event.addListener(new EntityBindingDataLoader());
+        event.addListener(new RuleDataLoader());
 
         LOGGER.info("Element system data loaders registration completed");
     }
 
-    private static class ReactionDataLoader extends SimpleJsonResourceReloadListener {
-        public ReactionDataLoader() {
-            super(GSON, "reactions");
-            LOGGER.info("Created reaction data loader, directory: reactions");
+    /**
+     * 规则数据加载器
+     * 准备阶段在后台线程按文件并行解析、校验并编译索引，构建完整的规则集；应用阶段只替换规则集引用
+     */
+    private static class RuleDataLoader extends SimplePreparableReloadListener<RuleSet> {
+        public RuleDataLoader() {
+            LOGGER.info("Created rule data loader, directories: {}", RULE_DIRECTORIES);
         }
 
         @Override
-        protected void apply(Map<ResourceLocation, JsonElement> resources,
-                             ResourceManager resourceManager, ProfilerFiller profiler) {
-            LOGGER.info("Starting reaction data loading");
-            LOGGER.info("Received resource count: {}", resources.size());
-
-            int elementEndowReactions = 0;
-            for (ResourceLocation location : resources.keySet()) {
-                if (location.getNamespace().equals(ElementEndow.MODID)) {
-                    LOGGER.info("Found element reaction resource: {}", location);
-                    elementEndowReactions++;
-                } else {
-                    LOGGER.debug("Skipping non-mod reaction resource: {}", location);
-                }
-            }
+        protected RuleSet prepare(ResourceManager resourceManager, ProfilerFiller profiler) {
+            LOGGER.info("Starting element rule data loading");
+            RuleSet current = registry.getRuleSet();
+            //首次加载时没有上一代可对比，改用磁盘缓存
+            RuleCache cache = isDiskCacheEnabled() && current.generation == 0 ? RuleCache.load(ElementSystemAPI.getElementSystem())
+                    : RuleCache.EMPTY;
 
-            LOGGER.info("Found {} element reaction resources", elementEndowReactions);
-            reactionLoader.loadFromResources(resources);
-            LOGGER.info("Reaction data loading completed");
+            //与当前规则集按文件内容哈希对比，未变化的文件沿用已解析的规则
+            RuleFileScanner.ScanResult<ReactionLoader.ElementReaction> reactionScan = RuleFileScanner.scan(
+                    resourceManager, REACTIONS, GSON, ReactionLoader::parseReaction, current.reactionFiles,
+                    cache.getSection(REACTIONS), cache.reader(ReactionLoader::readCached));
+            RuleFileScanner.ScanResult<CombinationLoader.ElementCombination> combinationScan = RuleFileScanner.scan(
+                    resourceManager, COMBINATIONS, GSON, CombinationLoader::parseCombination, current.combinationFiles,
+                    cache.getSection(COMBINATIONS), cache.reader(CombinationLoader::readCached));
+            RuleFileScanner.ScanResult<EntityElementBindingLoader.ResolvedBinding> bindingScan = RuleFileScanner.scan(
+                    resourceManager, BINDINGS, GSON, EntityElementBindingLoader::parseBinding, current.bindingFiles,
+                    cache.getSection(BINDINGS), cache.reader(EntityElementBindingLoader::readCached));
+
+            RuleSet rules = buildRuleSet(reactionScan, combinationScan, bindingScan, true);
+            logScan("element reactions", rules.reactions.size(), reactionScan);
+            logScan("combinations", rules.combinations.size(), combinationScan);
+            logScan("entity bindings", bindingScan.rules.size(), bindingScan);
+            return rules;
+        }
+
+        @Override
+        protected void apply(RuleSet prepared, ResourceManager resourceManager, ProfilerFiller profiler) {
+            registry.publish(prepared);
+            LOGGER.info("Element rule data loading completed, generation {}", prepared.generation);
         }
     }
 
-    private static class CombinationDataLoader extends SimpleJsonResourceReloadListener {
-        public CombinationDataLoader() {
-            super(GSON, "combinations");
-            LOGGER.info("Created combination data loader, directory: combinations");
+    /**
+     * 由三个目录的扫描结果构建新一代规则集，以当前索引为基础增量编译，并按需更新磁盘缓存
+     * @param writeCache 是否更新磁盘缓存；局部重载在服务端线程执行，不重写整个缓存，
+     *                   缓存按文件内容哈希索引，变化的文件在下次启动时重新解析
+     */
+    private static RuleSet buildRuleSet(RuleFileScanner.ScanResult<ReactionLoader.ElementReaction> reactionScan,
+                                        RuleFileScanner.ScanResult<CombinationLoader.ElementCombination> combinationScan,
+                                        RuleFileScanner.ScanResult<EntityElementBindingLoader.ResolvedBinding> bindingScan,
+                                        boolean writeCache) {
+        if (writeCache && isDiskCacheEnabled()) {
+            new RuleCache.Writer(ElementSystemAPI.getElementSystem())
+                    .add(REACTIONS, reactionScan.files, ReactionLoader::writeCached)
+                    .add(COMBINATIONS, combinationScan.files, CombinationLoader::writeCached)
+                    .add(BINDINGS, bindingScan.files, EntityElementBindingLoader::writeCached)
+                    .writeIfChanged();
         }
 
-        @Override
-        protected void apply(Map<ResourceLocation, JsonElement> resources,
-                             ResourceManager resourceManager, ProfilerFiller profiler) {
-            LOGGER.info("Starting combination data loading");
-            LOGGER.info("Received resource count: {}", resources.size());
-
-            try {
-                //直接获取组合系统并加载数据
-                var elementSystem = ElementSystemAPI.getElementSystem();
-                var combinationSystem = elementSystem.getCombinationSystem();
-
-                //组合系统接收到数据包数据
-                if (combinationSystem instanceof com.element_endow.core.ElementCombinationSystem) {
-                    ((com.element_endow.core.ElementCombinationSystem) combinationSystem).loadFromResources(resources);
-                    LOGGER.info("Successfully loaded combinations into combination system");
-                } else {
-                    //备用
-                    CombinationLoader combinationLoader = combinationSystem.getCombinationLoader();
-                    combinationLoader.loadFromResources(resources);
-                    LOGGER.info("Loaded combinations using backup method");
-                }
+        Map<String, ReactionLoader.ElementReaction> reactions = ReactionLoader.collect(reactionScan);
+        Map<String, CombinationLoader.ElementCombination> combinations = CombinationLoader.collect(combinationScan);
+        int generation = registry.reserveGeneration();
 
-                //记录加载的组合数
-                int loadedCount = combinationSystem.getCombinationLoader().getCombinations().size();
-                LOGGER.info("Total combinations now available: {}", loadedCount);
+        //以当前索引为基础增量编译，只重新编译变化的规则
+        ReactionIndex reactionIndex = null;
+        CombinationIndex combinationIndex = null;
+        try {
+            if (ElementSystemAPI.getReactionSystem() instanceof ElementReactionSystem reactionSystem) {
+                reactionIndex = reactionSystem.compileIndex(reactions.values(), generation,
+                        reactionSystem.getCurrentIndex());
+            }
+            if (ElementSystemAPI.getCombinationSystem() instanceof ElementCombinationSystem combinationSystem) {
+                combinationIndex = combinationSystem.compileIndex(combinations.values(), generation,
+                        combinationSystem.getCurrentIndex());
+            }
+        } catch (Exception e) {
+            LOGGER.error("Failed to compile rule indexes, they will be rebuilt on first use", e);
+        }
+
+        return new RuleSet(generation, reactions, combinations, EntityElementBindingLoader.collect(bindingScan),
+                EntityElementBindingLoader.collectTags(bindingScan), reactionIndex, combinationIndex,
+                reactionScan.files, combinationScan.files, bindingScan.files);
+    }
+
+    private static void logScan(String type, int loaded, RuleFileScanner.ScanResult<?> scan) {
+        LOGGER.info("Loaded {} {} ({} errors): {} files kept, {} restored from cache, {} changed, {} added, {} dropped",
+                loaded, type, scan.errorCount, scan.kept, scan.restored, scan.changed, scan.added, scan.dropped);
+    }
 
-            } catch (Exception e) {
-                LOGGER.error("Failed to load combinations into combination system", e);
+    private static boolean isDiskCacheEnabled() {
+        return !(ElementSystemAPI.getElementSystem() instanceof ElementSystemImpl elementSystem)
+                || elementSystem.getConfig().isRuleDiskCache();
+    }
+
+    /**
+     * 只重新读取一个目录并发布新一代规则，不触发其他数据包监听器（必须在主线程调用）
+     * @return 该目录的扫描结果，目录名无效时返回null
+     */
+    public static PartialReload reloadDirectory(ResourceManager resourceManager, String directory) {
+        return reloadPartial(resourceManager, directory, null);
+    }
 
-                //或直接使用CombinationLoader
-                try {
-                    CombinationLoader combinationLoader = new CombinationLoader();
-                    combinationLoader.loadFromResources(resources);
-                    LOGGER.info("Loaded combinations using direct method");
-                } catch (Exception ex) {
-                    LOGGER.error("Complete failure in loading combinations", ex);
+    /**
+     * 只重新读取一个规则文件并发布新一代规则（必须在主线程调用）
+     * @param ruleId 文件资源位置，或反应、组合的ID、绑定的实体类型或标签
+     * @return 扫描结果，找不到对应文件时返回null
+     */
+    public static PartialReload reloadRule(ResourceManager resourceManager, String ruleId) {
+        RuleSet current = registry.getRuleSet();
+
+        //先按文件资源位置查找，省略命名空间时默认为本模组
+        ResourceLocation fileId = ruleId.indexOf(':') >= 0
+                ? ResourceLocation.tryParse(ruleId) : ResourceLocation.tryBuild(ElementEndow.MODID, ruleId);
+        if (fileId != null && fileId.getNamespace().equals(ElementEndow.MODID)) {
+            for (String directory : RULE_DIRECTORIES) {
+                if (getFiles(current, directory).containsKey(fileId)
+                        || RuleFileScanner.hasFile(resourceManager, directory, fileId)) {
+                    return reloadPartial(resourceManager, directory, fileId);
                 }
             }
+        }
+
+        //再按规则自身的ID查找已加载的文件
+        for (RuleFileScanner.RuleFile<ReactionLoader.ElementReaction> file : current.reactionFiles.values()) {
+            if (file.rule != null && ruleId.equals(file.rule.id)) {
+                return reloadPartial(resourceManager, REACTIONS, file.id);
+            }
+        }
+        for (RuleFileScanner.RuleFile<CombinationLoader.ElementCombination> file : current.combinationFiles.values()) {
+            if (file.rule != null && ruleId.equals(file.rule.id)) {
+                return reloadPartial(resourceManager, COMBINATIONS, file.id);
+            }
+        }
+        for (RuleFileScanner.RuleFile<EntityElementBindingLoader.ResolvedBinding> file : current.bindingFiles.values()) {
+            if (file.rule != null && file.rule.binding.getTargets().contains(ruleId)) {
+                return reloadPartial(resourceManager, BINDINGS, file.id);
+            }
+        }
+        return null;
+    }
 
-            LOGGER.info("Combination data loading completed");
+    /**
+     * 已加载的规则ID与文件资源位置，用于命令补全
+     */
+    public static List<String> getKnownRuleIds() {
+        RuleSet current = registry.getRuleSet();
+        Set<String> ids = new TreeSet<>();
+        ids.addAll(current.reactions.keySet());
+        ids.addAll(current.combinations.keySet());
+        for (String directory : RULE_DIRECTORIES) {
+            for (ResourceLocation fileId : getFiles(current, directory).keySet()) {
+                ids.add(fileId.toString());
+            }
         }
+        return new ArrayList<>(ids);
     }
 
-    private static class EntityBindingDataLoader extends SimpleJsonResourceReloadListener {
-        public EntityBindingDataLoader() {
-            super(GSON, "entity_bindings");
-            LOGGER.info("Created entity binding data loader, directory: entity_bindings");
+    private static PartialReload reloadPartial(ResourceManager resourceManager, String directory, ResourceLocation fileId) {
+        if (!RULE_DIRECTORIES.contains(directory)) {
+            return null;
         }
 
-        @Override
-        protected void apply(Map<ResourceLocation, JsonElement> resources,
-                             ResourceManager resourceManager, ProfilerFiller profiler) {
-            LOGGER.info("Starting entity binding data loading");
-            LOGGER.info("Received resource count: {}", resources.size());
-
-            int elementEndowBindings = 0;
-            for (ResourceLocation location : resources.keySet()) {
-                if (location.getNamespace().equals(ElementEndow.MODID)) {
-                    LOGGER.info("Found entity binding resource: {}", location);
-                    elementEndowBindings++;
-                } else {
-                    LOGGER.debug("Skipping non-mod entity binding resource: {}", location);
-                }
-            }
+        //未涉及的目录直接沿用当前文件表
+        RuleSet current = registry.getRuleSet();
+        RuleFileScanner.ScanResult<ReactionLoader.ElementReaction> reactionScan = directory.equals(REACTIONS)
+                ? rescan(resourceManager, REACTIONS, fileId, ReactionLoader::parseReaction, current.reactionFiles)
+                : RuleFileScanner.ScanResult.of(current.reactionFiles);
+        RuleFileScanner.ScanResult<CombinationLoader.ElementCombination> combinationScan = directory.equals(COMBINATIONS)
+                ? rescan(resourceManager, COMBINATIONS, fileId, CombinationLoader::parseCombination, current.combinationFiles)
+                : RuleFileScanner.ScanResult.of(current.combinationFiles);
+        RuleFileScanner.ScanResult<EntityElementBindingLoader.ResolvedBinding> bindingScan = directory.equals(BINDINGS)
+                ? rescan(resourceManager, BINDINGS, fileId, EntityElementBindingLoader::parseBinding, current.bindingFiles)
+                : RuleFileScanner.ScanResult.of(current.bindingFiles);
+
+        RuleSet rules = buildRuleSet(reactionScan, combinationScan, bindingScan, false);
+        registry.publish(rules);
+
+        RuleFileScanner.ScanResult<?> scan = switch (directory) {
+            case REACTIONS -> reactionScan;
+            case COMBINATIONS -> combinationScan;
+            default -> bindingScan;
+        };
+        LOGGER.info("Reloaded {} {}: {} changed, {} added, {} dropped, {} errors, generation {}",
+                directory, fileId != null ? fileId : "directory", scan.changed, scan.added, scan.dropped,
+                scan.errorCount, rules.generation);
+        return new PartialReload(directory, fileId, scan, rules.generation);
+    }
+
+    private static <R> RuleFileScanner.ScanResult<R> rescan(ResourceManager resourceManager, String directory,
+                                                            ResourceLocation fileId, Function<JsonElement, R> parser,
+                                                            Map<ResourceLocation, RuleFileScanner.RuleFile<R>> previous) {
+        return fileId == null
+                ? RuleFileScanner.scan(resourceManager, directory, GSON, parser, previous)
+                : RuleFileScanner.scanFile(resourceManager, directory, fileId, GSON, parser, previous);
+    }
+
+    private static Map<ResourceLocation, ? extends RuleFileScanner.RuleFile<?>> getFiles(RuleSet rules, String directory) {
+        return switch (directory) {
+            case REACTIONS -> rules.reactionFiles;
+            case COMBINATIONS -> rules.combinationFiles;
+            default -> rules.bindingFiles;
+        };
+    }
 
-            LOGGER.info("Found {} entity binding resources", elementEndowBindings);
-            entityBindingLoader.loadFromResources(resources);
-            LOGGER.info("Entity binding data loading completed");
+    /**
+     * 局部重载结果
+     */
+    public static class PartialReload {
+        public final String directory;
+        //重载的单个文件，重载整个目录时为null
+        public final ResourceLocation fileId;
+        public final RuleFileScanner.ScanResult<?> scan;
+        public final int generation;
+
+        public PartialReload(String directory, ResourceLocation fileId, RuleFileScanner.ScanResult<?> scan, int generation) {
+            this.directory = directory;
+            this.fileId = fileId;
+            this.scan = scan;
+            this.generation = generation;
         }
     }
 
-    public static ReactionLoader getReactionLoader() {
-        return reactionLoader;
+    /**
+     * 实体类型标签重新绑定后，标签绑定需要重新展开
+     */
+    @SubscribeEvent
+    public static void onTagsUpdated(TagsUpdatedEvent event) {
+        registry.getBindingLoader().onTagsUpdated();
     }
 
-    public static CombinationLoader getCombinationLoader() {
-        return combinationLoader;
+    public static RuleRegistry getRuleRegistry() {
+        return registry;
     }
 
     public static EntityElementBindingLoader getEntityBindingLoader() {
-        return entityBindingLoader;
+        return registry.getBindingLoader();
     }
 }
\ No newline at end of file
@@ -1,7 +1,13 @@
 package com.element_endow.data;
 
 import com.element_endow.api.IElementMountSystem;
+import com.element_endow.api.IElementSystem;
 import com.element_endow.api.ReactionResult;
+import com.element_endow.core.cache.ReactionCooldownTracker;
+import com.element_endow.core.compiled.CompiledReaction;
+import com.element_endow.core.compiled.ReactionIndex;
+import com.element_endow.core.dot.DotScheduler;
+import com.element_endow.core.effect.EffectSink;
 import com.element_endow.util.ConditionChecker;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
@@ -15,52 +21,277 @@ import net.minecraft.core.registries.BuiltInRegistries;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.*;
 
 public class ReactionLoader {
     private static final Logger LOGGER = LogManager.getLogger();
     private static final Gson GSON = new GsonBuilder().create();
 
-    private final Map<String, ElementReaction> reactions = new HashMap<>();
+    //按优先级从高到低、同优先级按ID排序
+    public static final Comparator<ElementReaction> PRIORITY_ORDER =
+            Comparator.comparingInt((ElementReaction reaction) -> reaction.priority).reversed()
+                    .thenComparing(reaction -> reaction.id);
 
+    private final RuleRegistry rules;
+
+    public ReactionLoader(RuleRegistry rules) {
+        this.rules = rules;
+    }
+
+    /**
+     * 以新代数重新发布当前规则，使编译索引和结果缓存失效
+     */
     public void loadReactions() {
-        reactions.clear();
-        LOGGER.info("Loaded {} element reactions", reactions.size());
+        rules.republish();
+        LOGGER.info("Loaded {} element reactions", getReactionCount());
     }
 
-    public void loadFromResources(Map<ResourceLocation, JsonElement> resources) {
-        reactions.clear();
+    /**
+     * 解析并校验单个反应文件，同时预解析效果注册表引用（在准备阶段的工作线程调用）
+     */
+    public static ElementReaction parseReaction(JsonElement json) {
+        ElementReaction reaction = GSON.fromJson(json, ElementReaction.class);
+        if (reaction == null || !validateReaction(reaction)) {
+            return null;
+        }
+        return resolveReaction(reaction);
+    }
 
-        int loadedCount = 0;
-        int errorCount = 0;
+    /**
+     * 从磁盘缓存还原已校验过的反应，效果按注册表数字ID取得；元素表未变化时同时还原编译结果
+     */
+    public static ElementReaction readCached(DataInput in, RuleCache cache) throws IOException {
+        ElementReaction reaction = new ElementReaction();
+        reaction.id = in.readUTF();
+        reaction.elementA = in.readUTF();
+        reaction.elementB = in.readUTF();
+        reaction.priority = in.readInt();
+        reaction.exclusiveGroup = RuleCodec.readString(in);
+        reaction.internalCooldown = in.readInt();
+        if (in.readBoolean()) {
+            AoeData aoe = new AoeData();
+            aoe.radius = in.readDouble();
+            aoe.maxTargets = in.readInt();
+            aoe.elementFilter = RuleCodec.readStringList(in);
+            aoe.effects = readEffects(in, cache);
+            aoe.mountData = readMount(in);
+            reaction.aoe = aoe;
+        }
+        if (in.readBoolean()) {
+            ReactionConditions conditions = new ReactionConditions();
+            conditions.attackerConditions = RuleCodec.readConditions(in);
+            conditions.targetConditions = RuleCodec.readConditions(in);
+            conditions.worldConditions = RuleCodec.readConditions(in);
+            reaction.conditions = conditions;
+        }
+        reaction.attackEntry = readEntry(in, cache);
+        reaction.defenseEntry = readEntry(in, cache);
+        reaction.mountData = readMount(in);
+        reaction.advancedMountData = RuleCodec.readAdvancedMount(in);
+        reaction.consumes = RuleCodec.readDoubles(in);
+        reaction.selfConsumes = RuleCodec.readDoubles(in);
+
+        if (in.readBoolean()) {
+            CompiledReaction compiled = CompiledReaction.read(in, reaction, cache.getCompiledElementCount());
+            if (cache.getCompiledElementCount() >= 0) {
+                reaction.compiled = compiled;
+            }
+        }
+        return reaction;
+    }
 
-        for (Map.Entry<ResourceLocation, JsonElement> entry : resources.entrySet()) {
-            ResourceLocation location = entry.getKey();
+    /**
+     * 写入磁盘缓存，包括效果的注册表数字ID与当前元素表下的编译结果
+     */
+    public static void writeCached(DataOutput out, ElementReaction reaction, IElementSystem elementSystem)
+            throws IOException {
+        out.writeUTF(reaction.id);
+        out.writeUTF(reaction.elementA);
+        out.writeUTF(reaction.elementB);
+        out.writeInt(reaction.priority);
+        RuleCodec.writeString(out, reaction.exclusiveGroup);
+        out.writeInt(reaction.internalCooldown);
+        out.writeBoolean(reaction.aoe != null);
+        if (reaction.aoe != null) {
+            out.writeDouble(reaction.aoe.radius);
+            out.writeInt(reaction.aoe.maxTargets);
+            RuleCodec.writeStrings(out, reaction.aoe.elementFilter);
+            writeEffects(out, reaction.aoe.effects);
+            writeMount(out, reaction.aoe.mountData);
+        }
+        out.writeBoolean(reaction.conditions != null);
+        if (reaction.conditions != null) {
+            RuleCodec.writeConditions(out, reaction.conditions.attackerConditions);
+            RuleCodec.writeConditions(out, reaction.conditions.targetConditions);
+            RuleCodec.writeConditions(out, reaction.conditions.worldConditions);
+        }
+        writeEntry(out, reaction.attackEntry);
+        writeEntry(out, reaction.defenseEntry);
+        writeMount(out, reaction.mountData);
+        RuleCodec.writeAdvancedMount(out, reaction.advancedMountData);
+        RuleCodec.writeDoubles(out, reaction.consumes);
+        RuleCodec.writeDoubles(out, reaction.selfConsumes);
+
+        //元素未注册时没有编译结果，还原后按普通规则编译
+        CompiledReaction compiled = CompiledReaction.compile(reaction, elementSystem, -1);
+        out.writeBoolean(compiled != null);
+        if (compiled != null) {
+            compiled.write(out);
+        }
+    }
 
-            if (!location.getNamespace().equals("element_endow")) {
-                continue;
+    private static ReactionEntry readEntry(DataInput in, RuleCache cache) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        ReactionEntry entry = new ReactionEntry();
+        entry.damageMultiplier = in.readDouble();
+        entry.defenseMultiplier = in.readDouble();
+        entry.extraDamage = in.readDouble();
+        entry.damageReduction = in.readDouble();
+        entry.targetEffects = readEffects(in, cache);
+        entry.selfEffects = readEffects(in, cache);
+        entry.targetAttributeModifiers = readModifiers(in);
+        entry.selfAttributeModifiers = readModifiers(in);
+        entry.targetDots = RuleCodec.readDots(in);
+        return entry;
+    }
+
+    private static void writeEntry(DataOutput out, ReactionEntry entry) throws IOException {
+        out.writeBoolean(entry != null);
+        if (entry == null) {
+            return;
+        }
+        out.writeDouble(entry.damageMultiplier);
+        out.writeDouble(entry.defenseMultiplier);
+        out.writeDouble(entry.extraDamage);
+        out.writeDouble(entry.damageReduction);
+        writeEffects(out, entry.targetEffects);
+        writeEffects(out, entry.selfEffects);
+        writeModifiers(out, entry.targetAttributeModifiers);
+        writeModifiers(out, entry.selfAttributeModifiers);
+        RuleCodec.writeDots(out, entry.targetDots);
+    }
+
+    private static List<ReactionEffect> readEffects(DataInput in, RuleCache cache) throws IOException {
+        int size = in.readInt();
+        if (size < 0) {
+            return null;
+        }
+        List<ReactionEffect> effects = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            ReactionEffect effect = new ReactionEffect();
+            effect.effect = RuleCodec.readString(in);
+            effect.duration = in.readInt();
+            effect.amplifier = in.readInt();
+            effect.showParticles = in.readBoolean();
+            effect.mobEffect = RuleCodec.readEffect(in, cache, effect.effect);
+            effects.add(effect);
+        }
+        return effects;
+    }
+
+    private static void writeEffects(DataOutput out, List<ReactionEffect> effects) throws IOException {
+        out.writeInt(effects != null ? effects.size() : -1);
+        if (effects != null) {
+            for (ReactionEffect effect : effects) {
+                RuleCodec.writeString(out, effect.effect);
+                out.writeInt(effect.duration);
+                out.writeInt(effect.amplifier);
+                out.writeBoolean(effect.showParticles);
+                RuleCodec.writeEffect(out, effect.getMobEffect());
             }
+        }
+    }
 
-            try {
-                ElementReaction reaction = GSON.fromJson(entry.getValue(), ElementReaction.class);
+    private static List<AttributeModifierData> readModifiers(DataInput in) throws IOException {
+        int size = in.readInt();
+        if (size < 0) {
+            return null;
+        }
+        List<AttributeModifierData> modifiers = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            AttributeModifierData modifier = new AttributeModifierData();
+            modifier.attribute = RuleCodec.readString(in);
+            modifier.operation = RuleCodec.readString(in);
+            modifier.value = in.readDouble();
+            modifier.name = RuleCodec.readString(in);
+            modifier.uuid = RuleCodec.readString(in);
+            modifier.permanent = in.readBoolean();
+            modifier.duration = in.readInt();
+            modifiers.add(modifier);
+        }
+        return modifiers;
+    }
 
-                if (validateReaction(reaction)) {
-                    reactions.put(reaction.id, reaction);
-                    loadedCount++;
-                    LOGGER.debug("Loaded reaction: {}", reaction.id);
-                } else {
-                    errorCount++;
-                }
-            } catch (Exception e) {
-                LOGGER.error("Failed to load reaction {}: {}", location, e.getMessage());
-                errorCount++;
+    private static void writeModifiers(DataOutput out, List<AttributeModifierData> modifiers) throws IOException {
+        out.writeInt(modifiers != null ? modifiers.size() : -1);
+        if (modifiers != null) {
+            for (AttributeModifierData modifier : modifiers) {
+                RuleCodec.writeString(out, modifier.attribute);
+                RuleCodec.writeString(out, modifier.operation);
+                out.writeDouble(modifier.value);
+                RuleCodec.writeString(out, modifier.name);
+                RuleCodec.writeString(out, modifier.uuid);
+                out.writeBoolean(modifier.permanent);
+                out.writeInt(modifier.duration);
             }
         }
+    }
+
+    private static MountData readMount(DataInput in) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        MountData mount = new MountData();
+        mount.elementId = RuleCodec.readString(in);
+        mount.amount = in.readDouble();
+        mount.duration = in.readInt();
+        mount.probability = in.readDouble();
+        return mount;
+    }
 
-        LOGGER.info("Loaded {} element reactions ({} errors)", loadedCount, errorCount);
+    private static void writeMount(DataOutput out, MountData mount) throws IOException {
+        out.writeBoolean(mount != null);
+        if (mount != null) {
+            RuleCodec.writeString(out, mount.elementId);
+            out.writeDouble(mount.amount);
+            out.writeInt(mount.duration);
+            out.writeDouble(mount.probability);
+        }
+    }
+
+    private static ElementReaction resolveReaction(ElementReaction reaction) {
+        resolveEffects(reaction.attackEntry);
+        resolveEffects(reaction.defenseEntry);
+        if (reaction.aoe != null && reaction.aoe.effects != null) {
+            reaction.aoe.effects.forEach(ReactionEffect::getMobEffect);
+        }
+        return reaction;
     }
 
-    private boolean validateReaction(ElementReaction reaction) {
+    private static void resolveEffects(ReactionEntry entry) {
+        if (entry != null) {
+            entry.targetEffects.forEach(ReactionEffect::getMobEffect);
+            entry.selfEffects.forEach(ReactionEffect::getMobEffect);
+        }
+    }
+
+    /**
+     * 汇总扫描结果，同ID的反应后加载的覆盖先加载的
+     */
+    public static Map<String, ElementReaction> collect(RuleFileScanner.ScanResult<ElementReaction> scan) {
+        Map<String, ElementReaction> loaded = new HashMap<>();
+        for (ElementReaction reaction : scan.rules) {
+            loaded.put(reaction.id, reaction);
+        }
+        return loaded;
+    }
+
+    private static boolean validateReaction(ElementReaction reaction) {
         if (reaction.id == null || reaction.id.isEmpty()) {
             LOGGER.error("Reaction missing ID");
             return false;
@@ -76,6 +307,29 @@ public class ReactionLoader {
             return false;
         }
 
+        if (reaction.internalCooldown < 0) {
+            reaction.internalCooldown = 0;
+        }
+
+        if (reaction.attackEntry != null && !validateDots(reaction.id, reaction.attackEntry.targetDots)) {
+            return false;
+        }
+        if (reaction.defenseEntry != null && !validateDots(reaction.id, reaction.defenseEntry.targetDots)) {
+            return false;
+        }
+
+        if (reaction.aoe != null) {
+            reaction.aoe.radius = Math.max(0.5, Math.min(reaction.aoe.radius, AoeData.MAX_RADIUS));
+            reaction.aoe.maxTargets = Math.max(1, Math.min(reaction.aoe.maxTargets, AoeData.MAX_TARGETS));
+        }
+
+        if (reaction.exclusiveGroup != null && reaction.exclusiveGroup.trim().isEmpty()) {
+            reaction.exclusiveGroup = null;
+        }
+
+        reaction.consumes = validateConsumption(reaction.id, reaction.consumes);
+        reaction.selfConsumes = validateConsumption(reaction.id, reaction.selfConsumes);
+
         // 初始化空列表避免NPE
         if (reaction.attackEntry != null) {
             if (reaction.attackEntry.targetEffects == null) reaction.attackEntry.targetEffects = new ArrayList<>();
@@ -94,45 +348,124 @@ public class ReactionLoader {
         return true;
     }
 
-    public void processAttackReactions(Collection<String> attackerElements, Collection<String> targetElements,
-                                       ReactionResult result, LivingEntity attacker, LivingEntity target) {
-        int triggeredReactions = 0;
-
-        for (ElementReaction reaction : reactions.values()) {
-            boolean hasElementA = attackerElements.contains(reaction.elementA) && targetElements.contains(reaction.elementB);
-            boolean hasElementB = attackerElements.contains(reaction.elementB) && targetElements.contains(reaction.elementA);
+    /**
+     * 校验持续伤害条目，间隔限制在调度器支持的范围内
+     */
+    public static boolean validateDots(String ownerId, List<DotData> dots) {
+        if (dots == null) {
+            return true;
+        }
 
-            if ((hasElementA || hasElementB) && checkReactionConditions(reaction, attacker, target)) {
-                applyAttackReaction(reaction, result, attacker, target);
-                triggeredReactions++;
+        for (DotData dot : dots) {
+            if (dot.id == null || dot.id.isEmpty()) {
+                LOGGER.error("Damage over time entry in {} missing id", ownerId);
+                return false;
             }
+            dot.interval = Math.max(1, Math.min(dot.interval, DotScheduler.MAX_INTERVAL));
+            dot.duration = Math.max(dot.interval, dot.duration);
         }
+        return true;
+    }
 
-        if (triggeredReactions > 0) {
-            LOGGER.debug("Triggered {} attack reactions", triggeredReactions);
+    /**
+     * 去掉非正数的消耗量，没有有效条目时返回null
+     */
+    private static Map<String, Double> validateConsumption(String reactionId, Map<String, Double> consumption) {
+        if (consumption == null || consumption.isEmpty()) {
+            return null;
+        }
+
+        Map<String, Double> valid = new HashMap<>();
+        for (Map.Entry<String, Double> entry : consumption.entrySet()) {
+            if (entry.getValue() == null || entry.getValue() <= 0) {
+                LOGGER.warn("Ignoring non-positive consumption of {} in reaction {}", entry.getKey(), reactionId);
+                continue;
+            }
+            valid.put(entry.getKey(), entry.getValue());
         }
+        return valid.isEmpty() ? null : valid;
     }
 
+    /**
+     * 按优先级处理攻击反应，元素数超过掩码容量时使用
+     * 冷却中的反应在条件检查之前跳过，冷却槽位由回退索引分配
+     */
+    public void processAttackReactions(Collection<String> attackerElements, Collection<String> targetElements,
+                                       ReactionResult result, LivingEntity attacker, LivingEntity target,
+                                       ReactionIndex index, ReactionCooldownTracker cooldownTracker) {
+        processReactions(attackerElements, targetElements, result, attacker, target, true, index, cooldownTracker);
+    }
+
+    /**
+     * 按优先级处理防御反应，元素数超过掩码容量时使用
+     */
     public void processDefenseReactions(Collection<String> attackerElements, Collection<String> defenderElements,
-                                        ReactionResult result, LivingEntity attacker, LivingEntity defender) {
+                                        ReactionResult result, LivingEntity attacker, LivingEntity defender,
+                                        ReactionIndex index, ReactionCooldownTracker cooldownTracker) {
+        processReactions(attackerElements, defenderElements, result, attacker, defender, false, index, cooldownTracker);
+    }
+
+    private void processReactions(Collection<String> attackerElements, Collection<String> targetElements,
+                                  ReactionResult result, LivingEntity attacker, LivingEntity target, boolean attack,
+                                  ReactionIndex index, ReactionCooldownTracker cooldownTracker) {
+        int maxReactions = index.getMaxReactionsPerHit();
+        int currentTick = (int) attacker.level().getGameTime();
         int triggeredReactions = 0;
+        Set<String> usedGroups = new HashSet<>();
 
-        for (ElementReaction reaction : reactions.values()) {
-            boolean hasElementA = attackerElements.contains(reaction.elementA) && defenderElements.contains(reaction.elementB);
-            boolean hasElementB = attackerElements.contains(reaction.elementB) && defenderElements.contains(reaction.elementA);
+        for (ElementReaction reaction : rules.getRuleSet().orderedReactions) {
+            if (reaction.exclusiveGroup != null && usedGroups.contains(reaction.exclusiveGroup)) {
+                continue;
+            }
 
-            if ((hasElementA || hasElementB) && checkReactionConditions(reaction, attacker, defender)) {
-                applyDefenseReaction(reaction, result, attacker, defender);
-                triggeredReactions++;
+            boolean hasElementA = attackerElements.contains(reaction.elementA) && targetElements.contains(reaction.elementB);
+            boolean hasElementB = attackerElements.contains(reaction.elementB) && targetElements.contains(reaction.elementA);
+            if (!hasElementA && !hasElementB) {
+                continue;
+            }
+
+            int cooldownSlot = reaction.internalCooldown > 0 ? index.getFallbackCooldownSlot(reaction) : -1;
+            if (cooldownSlot >= 0 && cooldownTracker.isOnCooldown(attacker.getId(), target.getId(),
+                    cooldownSlot, attack, currentTick)) {
+                continue;
+            }
+
+            if (!checkReactionConditions(reaction, attacker, target)) {
+                continue;
+            }
+
+            if (attack) {
+                applyAttackReaction(reaction, result, attacker, target);
+            } else {
+                applyDefenseReaction(reaction, result, attacker, target);
+            }
+            triggeredReactions++;
+
+            if (cooldownSlot >= 0) {
+                cooldownTracker.startCooldown(attacker.getId(), target.getId(),
+                        cooldownSlot, attack, currentTick, reaction.internalCooldown);
+            }
+            if (reaction.exclusiveGroup != null) {
+                usedGroups.add(reaction.exclusiveGroup);
+            }
+            if (maxReactions > 0 && triggeredReactions >= maxReactions) {
+                break;
             }
         }
 
         if (triggeredReactions > 0) {
-            LOGGER.debug("Triggered {} defense reactions", triggeredReactions);
+            LOGGER.debug("Triggered {} {} reactions", triggeredReactions, attack ? "attack" : "defense");
         }
     }
 
-    private boolean checkReactionConditions(ElementReaction reaction, LivingEntity entity1, LivingEntity entity2) {
+    public boolean checkReactionConditions(ElementReaction reaction, LivingEntity entity1, LivingEntity entity2) {
+        return checkAttackerSideConditions(reaction, entity1) && checkTargetConditions(reaction, entity2);
+    }
+
+    /**
+     * 只检查攻击方与世界条件，批量处理时每个反应只需求值一次
+     */
+    public boolean checkAttackerSideConditions(ElementReaction reaction, LivingEntity entity1) {
         if (reaction.conditions == null) {
             return true;
         }
@@ -143,12 +476,6 @@ public class ReactionLoader {
             }
         }
 
-        if (reaction.conditions.targetConditions != null) {
-            if (!ConditionChecker.checkConditions(reaction.conditions.targetConditions, entity2, entity2.level())) {
-                return false;
-            }
-        }
-
         if (reaction.conditions.worldConditions != null) {
             if (!ConditionChecker.checkConditions(reaction.conditions.worldConditions, entity1, entity1.level())) {
                 return false;
@@ -158,7 +485,17 @@ public class ReactionLoader {
         return true;
     }
 
-    private void applyAttackReaction(ElementReaction reaction, ReactionResult result, LivingEntity attacker, LivingEntity target) {
+    /**
+     * 只检查目标条件
+     */
+    public boolean checkTargetConditions(ElementReaction reaction, LivingEntity entity2) {
+        if (reaction.conditions == null || reaction.conditions.targetConditions == null) {
+            return true;
+        }
+        return ConditionChecker.checkConditions(reaction.conditions.targetConditions, entity2, entity2.level());
+    }
+
+    public void applyAttackReaction(ElementReaction reaction, ReactionResult result, LivingEntity attacker, LivingEntity target) {
         if (reaction.attackEntry != null) {
             applyReactionEntry(reaction.attackEntry, result, target, attacker);
             applyAttributeModifiers(reaction.attackEntry, result, target, attacker);
@@ -176,9 +513,16 @@ public class ReactionLoader {
         if (reaction.advancedMountData != null) {
             result.advancedMountApplications.add(reaction.advancedMountData);
         }
+
+        if (reaction.aoe != null) {
+            result.aoeApplications.add(reaction.aoe.toAoeApplication());
+        }
+
+        ReactionResult.addConsumption(result.targetConsumption, reaction.consumes);
+        ReactionResult.addConsumption(result.selfConsumption, reaction.selfConsumes);
     }
 
-    private void applyDefenseReaction(ElementReaction reaction, ReactionResult result, LivingEntity attacker, LivingEntity defender) {
+    public void applyDefenseReaction(ElementReaction reaction, ReactionResult result, LivingEntity attacker, LivingEntity defender) {
         if (reaction.defenseEntry != null) {
             applyReactionEntry(reaction.defenseEntry, result, defender, attacker);
             applyAttributeModifiers(reaction.defenseEntry, result, defender, attacker);
@@ -196,6 +540,7 @@ public class ReactionLoader {
         if (reaction.advancedMountData != null) {
             result.advancedMountApplications.add(reaction.advancedMountData);
         }
+        //元素消耗只随攻击反应计入，同一反应在防御求值中会再次匹配
     }
 
     private void applyAttributeModifiers(ReactionEntry entry, ReactionResult result, LivingEntity target, LivingEntity source) {
@@ -224,11 +569,17 @@ public class ReactionLoader {
         result.extraDamage += entry.extraDamage;
         result.damageReduction += entry.damageReduction;
 
+        if (entry.targetDots != null && target != null) {
+            for (DotData dot : entry.targetDots) {
+                result.targetDots.add(dot.toDotApplication());
+            }
+        }
+
         if (entry.targetEffects != null && target != null) {
             for (ReactionEffect effect : entry.targetEffects) {
                 MobEffectInstance effectInstance = createEffectInstance(effect);
                 if (effectInstance != null) {
-                    target.addEffect(effectInstance);
+                    EffectSink.queue(target, effectInstance);
                 }
             }
         }
@@ -237,7 +588,7 @@ public class ReactionLoader {
             for (ReactionEffect effect : entry.selfEffects) {
                 MobEffectInstance effectInstance = createEffectInstance(effect);
                 if (effectInstance != null) {
-                    source.addEffect(effectInstance);
+                    EffectSink.queue(source, effectInstance);
                 }
             }
         }
@@ -245,8 +596,7 @@ public class ReactionLoader {
 
     private MobEffectInstance createEffectInstance(ReactionEffect effect) {
         try {
-            ResourceLocation effectId = new ResourceLocation(effect.effect);
-            MobEffect mobEffect = BuiltInRegistries.MOB_EFFECT.get(effectId);
+            MobEffect mobEffect = effect.getMobEffect();
 
             if (mobEffect == null) {
                 return null;
@@ -267,17 +617,31 @@ public class ReactionLoader {
         }
     }
 
+    /**
+     * 按ID查找状态效果，ID无效或不存在时返回null
+     */
+    public static MobEffect resolveEffect(String effectId) {
+        ResourceLocation id = effectId != null ? ResourceLocation.tryParse(effectId) : null;
+        return id != null ? BuiltInRegistries.MOB_EFFECT.get(id) : null;
+    }
+
     // 数据类定义
     public static class ElementReaction {
         public String id;
         public String elementA;
         public String elementB;
-        public int priority;
+        public int priority;//优先级，数值高的先求值
+        public String exclusiveGroup;//互斥组，同组内只触发第一个满足条件的反应
+        public int internalCooldown = 0;//内置冷却（tick），同一攻击者对同一目标在冷却内不再触发该反应
+        public AoeData aoe;//攻击反应触发时扩散到目标周围实体的效果
         public ReactionConditions conditions;
         public ReactionEntry attackEntry;
         public ReactionEntry defenseEntry;
         public MountData mountData;
         public IElementMountSystem.AdvancedMountData advancedMountData;
+        public Map<String, Double> consumes;//触发时从受击方消耗的元素量
+        public Map<String, Double> selfConsumes;//触发时从攻击者消耗的元素量
+        public transient CompiledReaction compiled;//由磁盘缓存还原的编译结果
     }
 
     public static class ReactionConditions {
@@ -295,6 +659,23 @@ public class ReactionLoader {
         public List<ReactionEffect> selfEffects;
         public List<AttributeModifierData> targetAttributeModifiers;
         public List<AttributeModifierData> selfAttributeModifiers;
+        public List<DotData> targetDots;//施加到目标的持续伤害
+    }
+
+    public static class DotData {
+        public String id;//同ID的DoT在同一目标上合并
+        public double damage = 1.0;//每跳基础伤害
+        public int interval = 20;//跳伤间隔（tick）
+        public int duration = 100;//持续时间（tick）
+        public String scalingElement;//伤害加成参考的施加者元素
+        public double scaling = 0.0;//每点元素值增加的每跳伤害
+
+        /**
+         * 转换为 DotApplication 类型
+         */
+        public ReactionResult.DotApplication toDotApplication() {
+            return new ReactionResult.DotApplication(id, damage, interval, duration, scalingElement, scaling);
+        }
     }
 
     public static class ReactionEffect {
@@ -302,6 +683,14 @@ public class ReactionLoader {
         public int duration;
         public int amplifier;
         public boolean showParticles = true;
+        private transient MobEffect mobEffect;//加载时预解析
+
+        public MobEffect getMobEffect() {
+            if (mobEffect == null) {
+                mobEffect = resolveEffect(effect);
+            }
+            return mobEffect;
+        }
     }
 
     public static class MountData {
@@ -311,6 +700,41 @@ public class ReactionLoader {
         public double probability;
     }
 
+    public static class AoeData {
+        public static final double MAX_RADIUS = 32.0;
+        public static final int MAX_TARGETS = 64;
+
+        public double radius = 4.0;
+        public int maxTargets = 8;
+        public List<String> elementFilter;//范围内实体需持有其中任一元素，为空时不过滤
+        public List<ReactionEffect> effects;//施加到范围内实体的效果
+        public MountData mountData;//挂载到范围内实体的元素
+
+        /**
+         * 转换为 AoeApplication 类型
+         */
+        public ReactionResult.AoeApplication toAoeApplication() {
+            List<MobEffectInstance> effectInstances = new ArrayList<>();
+            if (effects != null) {
+                for (ReactionEffect effect : effects) {
+                    MobEffect mobEffect = effect.getMobEffect();
+                    if (mobEffect != null) {
+                        effectInstances.add(new MobEffectInstance(mobEffect, effect.duration, effect.amplifier,
+                                false, effect.showParticles, true));
+                    }
+                }
+            }
+
+            ReactionResult.MountApplication mount = mountData != null
+                    ? new ReactionResult.MountApplication(mountData.elementId, mountData.amount,
+                    mountData.duration, mountData.probability)
+                    : null;
+
+            return new ReactionResult.AoeApplication(radius, maxTargets,
+                    elementFilter != null ? elementFilter : Collections.emptyList(), effectInstances, mount);
+        }
+    }
+
     public static class AttributeModifierData {
         public String attribute;
         public String operation;
@@ -372,10 +796,14 @@ public class ReactionLoader {
     }
 
     public Map<String, ElementReaction> getReactions() {
-        return new HashMap<>(reactions);
+        return new HashMap<>(rules.getRuleSet().reactions);
+    }
+
+    public int getGeneration() {
+        return rules.getRuleSet().generation;
     }
 
     public int getReactionCount() {
-        return reactions.size();
+        return rules.getRuleSet().reactions.size();
     }
 }
\ No newline at end of file
@@ -0,0 +1,314 @@
+package com.element_endow.data;
+
+import com.element_endow.ElementEndow;
+import com.element_endow.api.IElementSystem;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import net.minecraft.core.registries.BuiltInRegistries;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.world.effect.MobEffect;
+import net.minecraft.world.entity.EntityType;
+import net.minecraftforge.fml.ModList;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * 规则磁盘缓存
+ * 保存上次启动校验通过的规则及其编译结果，按文件内容哈希索引；启动时内容未变化的文件直接从二进制还原，
+ * 不经过JSON解析与校验，元素序号、编译后的条件与注册表数字ID原样读回
+ * 文件头记录格式版本、模组版本、全部规则文件的合并哈希，以及写入时的元素表与注册表指纹：
+ * 格式或模组版本不一致时整体作废，回退到完整解析；元素表变化时不使用缓存的编译结果，
+ * 注册表变化时按名称重新解析注册表引用
+ */
+public final class RuleCache {
+    private static final Logger LOGGER = LogManager.getLogger();
+    private static final Path CACHE_FILE = Paths.get("config", "element_endow_rules.cache");
+    private static final int MAGIC = 0x45455243;
+    private static final int FORMAT_VERSION = 3;
+
+    public static final RuleCache EMPTY = new RuleCache(0L, false, 0, false, Collections.emptyMap());
+
+    //最近一次读取或写入的合并哈希，相同时不重复写入
+    private static volatile long persistedHash;
+
+    public final long combinedHash;
+    //注册表数字ID与写入时一致，可直接按ID取得注册表对象
+    private final boolean registryCurrent;
+    //写入时已注册的元素数，元素表一致时缓存的编译结果可直接使用
+    private final int elementCount;
+    private final boolean elementsCurrent;
+    private final Map<String, Map<ResourceLocation, Entry>> sections;
+
+    private RuleCache(long combinedHash, boolean registryCurrent, int elementCount, boolean elementsCurrent,
+                      Map<String, Map<ResourceLocation, Entry>> sections) {
+        this.combinedHash = combinedHash;
+        this.registryCurrent = registryCurrent;
+        this.elementCount = elementCount;
+        this.elementsCurrent = elementsCurrent;
+        this.sections = sections;
+    }
+
+    /**
+     * 读取缓存文件，不存在、损坏或版本不一致时返回EMPTY
+     */
+    public static RuleCache load(IElementSystem elementSystem) {
+        if (!Files.isRegularFile(CACHE_FILE)) {
+            return EMPTY;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(CACHE_FILE)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                LOGGER.info("Rule cache format changed, falling back to full parse");
+                return EMPTY;
+            }
+            String modVersion = in.readUTF();
+            if (!modVersion.equals(getModVersion())) {
+                LOGGER.info("Rule cache was written by mod version {}, falling back to full parse", modVersion);
+                return EMPTY;
+            }
+
+            long combinedHash = in.readLong();
+            boolean registryCurrent = in.readLong() == registryFingerprint();
+            int elementCount = in.readInt();
+            long storedElements = in.readLong();
+            boolean elementsCurrent = elementCount == elementSystem.getElementCount()
+                    && storedElements == elementFingerprint(elementSystem, elementCount);
+            if (!registryCurrent) {
+                LOGGER.info("Registry ids changed since the rule cache was written, resolving references by name");
+            }
+            if (!elementsCurrent) {
+                LOGGER.info("Registered elements changed since the rule cache was written, recompiling rules");
+            }
+
+            Map<String, Map<ResourceLocation, Entry>> sections = new HashMap<>();
+            int sectionCount = in.readInt();
+            for (int i = 0; i < sectionCount; i++) {
+                String directory = in.readUTF();
+                int entryCount = in.readInt();
+                Map<ResourceLocation, Entry> entries = new HashMap<>(entryCount * 2);
+                for (int j = 0; j < entryCount; j++) {
+                    ResourceLocation id = new ResourceLocation(in.readUTF());
+                    long hash = in.readLong();
+                    byte[] payload = new byte[in.readInt()];
+                    in.readFully(payload);
+                    entries.put(id, new Entry(hash, payload));
+                }
+                sections.put(directory, entries);
+            }
+
+            persistedHash = combinedHash;
+            return new RuleCache(combinedHash, registryCurrent, elementCount, elementsCurrent, sections);
+        } catch (Exception e) {
+            LOGGER.warn("Failed to read rule cache, falling back to full parse: {}", e.getMessage());
+            return EMPTY;
+        }
+    }
+
+    /**
+     * 获取目录下的缓存条目
+     */
+    public Map<ResourceLocation, Entry> getSection(String directory) {
+        return sections.getOrDefault(directory, Collections.emptyMap());
+    }
+
+    /**
+     * 包装条目读取函数，供扫描器在文件未变化时还原规则
+     */
+    public <R> Function<Entry, R> reader(EntryReader<R> reader) {
+        return entry -> {
+            try {
+                return reader.read(new DataInputStream(new ByteArrayInputStream(entry.payload)), this);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+    }
+
+    public boolean isRegistryCurrent() {
+        return registryCurrent;
+    }
+
+    /**
+     * 缓存的编译结果是否可用，可用时返回写入时的元素数，否则返回-1
+     */
+    public int getCompiledElementCount() {
+        return elementsCurrent ? elementCount : -1;
+    }
+
+    private static String getModVersion() {
+        return ModList.get().getModContainerById(ElementEndow.MODID)
+                .map(container -> container.getModInfo().getVersion().toString())
+                .orElse("unknown");
+    }
+
+    /**
+     * 状态效果与实体类型注册表的指纹，数字ID随模组列表变化
+     */
+    private static long registryFingerprint() {
+        Hasher hasher = Hashing.murmur3_128().newHasher();
+        for (MobEffect effect : BuiltInRegistries.MOB_EFFECT) {
+            hasher.putInt(BuiltInRegistries.MOB_EFFECT.getId(effect));
+            hasher.putString(String.valueOf(BuiltInRegistries.MOB_EFFECT.getKey(effect)), StandardCharsets.UTF_8);
+        }
+        for (EntityType<?> entityType : BuiltInRegistries.ENTITY_TYPE) {
+            hasher.putInt(BuiltInRegistries.ENTITY_TYPE.getId(entityType));
+            hasher.putString(String.valueOf(BuiltInRegistries.ENTITY_TYPE.getKey(entityType)), StandardCharsets.UTF_8);
+        }
+        return hasher.hash().asLong();
+    }
+
+    /**
+     * 前elementCount个元素按序号排列的指纹
+     */
+    private static long elementFingerprint(IElementSystem elementSystem, int elementCount) {
+        Hasher hasher = Hashing.murmur3_128().newHasher();
+        for (int ordinal = 0; ordinal < elementCount; ordinal++) {
+            hasher.putString(String.valueOf(elementSystem.getElementByOrdinal(ordinal)), StandardCharsets.UTF_8);
+        }
+        return hasher.hash().asLong();
+    }
+
+    /**
+     * 单个缓存条目，保存规则字段与编译结果的二进制数据
+     */
+    public static final class Entry {
+        public final long hash;
+        private final byte[] payload;
+
+        Entry(long hash, byte[] payload) {
+            this.hash = hash;
+            this.payload = payload;
+        }
+    }
+
+    /**
+     * 从条目数据还原规则
+     */
+    @FunctionalInterface
+    public interface EntryReader<R> {
+        R read(DataInput in, RuleCache cache) throws IOException;
+    }
+
+    /**
+     * 写入规则及其编译结果
+     */
+    @FunctionalInterface
+    public interface EntryWriter<R> {
+        void write(DataOutput out, R rule, IElementSystem elementSystem) throws IOException;
+    }
+
+    /**
+     * 缓存写入器，按目录收集扫描结果后整体写入
+     */
+    public static final class Writer {
+        private final IElementSystem elementSystem;
+        private final int elementCount;
+        private final long elementFingerprint;
+        private final long registryFingerprint;
+        private final Map<String, Map<ResourceLocation, RuleFileScanner.RuleFile<?>>> files = new TreeMap<>();
+        private final Map<String, EntryWriter<Object>> writers = new HashMap<>();
+
+        public Writer(IElementSystem elementSystem) {
+            this.elementSystem = elementSystem;
+            this.elementCount = elementSystem.getElementCount();
+            this.elementFingerprint = elementFingerprint(elementSystem, elementCount);
+            this.registryFingerprint = registryFingerprint();
+        }
+
+        /**
+         * 添加一个目录的文件表
+         * @param writer 写入规则及其编译结果，与还原时的读取函数对应
+         */
+        @SuppressWarnings("unchecked")
+        public <R> Writer add(String directory, Map<ResourceLocation, RuleFileScanner.RuleFile<R>> table,
+                              EntryWriter<R> writer) {
+            files.put(directory, new TreeMap<>(table));
+            writers.put(directory, (EntryWriter<Object>) writer);
+            return this;
+        }
+
+        /**
+         * 全部文件ID与内容哈希的合并哈希，元素表或注册表变化时同样变化
+         */
+        public long combinedHash() {
+            Hasher hasher = Hashing.murmur3_128().newHasher();
+            hasher.putString(getModVersion(), StandardCharsets.UTF_8);
+            hasher.putLong(registryFingerprint);
+            hasher.putInt(elementCount);
+            hasher.putLong(elementFingerprint);
+            for (Map.Entry<String, Map<ResourceLocation, RuleFileScanner.RuleFile<?>>> section : files.entrySet()) {
+                hasher.putString(section.getKey(), StandardCharsets.UTF_8);
+                for (RuleFileScanner.RuleFile<?> file : section.getValue().values()) {
+                    hasher.putString(file.id.toString(), StandardCharsets.UTF_8);
+                    hasher.putLong(file.hash);
+                }
+            }
+            return hasher.hash().asLong();
+        }
+
+        /**
+         * 合并哈希与已持久化的不同时写入缓存，先写临时文件再替换
+         */
+        public void writeIfChanged() {
+            long combinedHash = combinedHash();
+            if (combinedHash == persistedHash && Files.isRegularFile(CACHE_FILE)) {
+                return;
+            }
+
+            Path temp = CACHE_FILE.resolveSibling(CACHE_FILE.getFileName() + ".tmp");
+            try {
+                Files.createDirectories(CACHE_FILE.getParent());
+                try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                    out.writeInt(MAGIC);
+                    out.writeInt(FORMAT_VERSION);
+                    out.writeUTF(getModVersion());
+                    out.writeLong(combinedHash);
+                    out.writeLong(registryFingerprint);
+                    out.writeInt(elementCount);
+                    out.writeLong(elementFingerprint);
+                    out.writeInt(files.size());
+                    ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+                    for (Map.Entry<String, Map<ResourceLocation, RuleFileScanner.RuleFile<?>>> section : files.entrySet()) {
+                        EntryWriter<Object> writer = writers.get(section.getKey());
+                        //只缓存校验通过的规则，无效文件下次启动重新解析并输出错误
+                        List<RuleFileScanner.RuleFile<?>> valid = new ArrayList<>();
+                        for (RuleFileScanner.RuleFile<?> file : section.getValue().values()) {
+                            if (file.rule != null) {
+                                valid.add(file);
+                            }
+                        }
+
+                        out.writeUTF(section.getKey());
+                        out.writeInt(valid.size());
+                        for (RuleFileScanner.RuleFile<?> file : valid) {
+                            buffer.reset();
+                            writer.write(new DataOutputStream(buffer), file.rule, elementSystem);
+                            out.writeUTF(file.id.toString());
+                            out.writeLong(file.hash);
+                            out.writeInt(buffer.size());
+                            buffer.writeTo(out);
+                        }
+                    }
+                }
+                Files.move(temp, CACHE_FILE, StandardCopyOption.REPLACE_EXISTING);
+                persistedHash = combinedHash;
+                LOGGER.debug("Wrote rule cache to {}", CACHE_FILE);
+            } catch (Exception e) {
+                LOGGER.warn("Failed to write rule cache: {}", e.getMessage());
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,298 @@
+package com.element_endow.data;
+
+import com.element_endow.api.IElementMountSystem;
+import net.minecraft.core.registries.BuiltInRegistries;
+import net.minecraft.world.effect.MobEffect;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * 规则缓存的二进制读写工具
+ * 可为null的字段先写存在标记，集合写长度（null为-1），条件值按类型标记写入，读取时不经过JSON
+ */
+public final class RuleCodec {
+    private static final byte NULL = 0;
+    private static final byte BOOLEAN = 1;
+    private static final byte NUMBER = 2;
+    private static final byte STRING = 3;
+    private static final byte LIST = 4;
+    private static final byte MAP = 5;
+
+    private RuleCodec() {
+    }
+
+    public static void writeString(DataOutput out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    public static String readString(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    public static void writeStrings(DataOutput out, Collection<String> values) throws IOException {
+        out.writeInt(values != null ? values.size() : -1);
+        if (values != null) {
+            for (String value : values) {
+                writeString(out, value);
+            }
+        }
+    }
+
+    public static List<String> readStringList(DataInput in) throws IOException {
+        int size = in.readInt();
+        if (size < 0) {
+            return null;
+        }
+        List<String> values = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            values.add(readString(in));
+        }
+        return values;
+    }
+
+    public static Set<String> readStringSet(DataInput in) throws IOException {
+        List<String> values = readStringList(in);
+        return values != null ? new HashSet<>(values) : null;
+    }
+
+    /**
+     * 写入元素值表，值可以为null
+     */
+    public static void writeDoubles(DataOutput out, Map<String, Double> values) throws IOException {
+        out.writeInt(values != null ? values.size() : -1);
+        if (values != null) {
+            for (Map.Entry<String, Double> entry : values.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeBoolean(entry.getValue() != null);
+                if (entry.getValue() != null) {
+                    out.writeDouble(entry.getValue());
+                }
+            }
+        }
+    }
+
+    public static Map<String, Double> readDoubles(DataInput in) throws IOException {
+        int size = in.readInt();
+        if (size < 0) {
+            return null;
+        }
+        Map<String, Double> values = new HashMap<>(size * 2);
+        for (int i = 0; i < size; i++) {
+            String key = in.readUTF();
+            values.put(key, in.readBoolean() ? in.readDouble() : null);
+        }
+        return values;
+    }
+
+    public static void writeInts(DataOutput out, int[] values) throws IOException {
+        out.writeInt(values.length);
+        for (int value : values) {
+            out.writeInt(value);
+        }
+    }
+
+    public static int[] readInts(DataInput in) throws IOException {
+        int[] values = new int[in.readInt()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = in.readInt();
+        }
+        return values;
+    }
+
+    public static void writeDoubleArray(DataOutput out, double[] values) throws IOException {
+        out.writeInt(values.length);
+        for (double value : values) {
+            out.writeDouble(value);
+        }
+    }
+
+    public static double[] readDoubleArray(DataInput in) throws IOException {
+        double[] values = new double[in.readInt()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = in.readDouble();
+        }
+        return values;
+    }
+
+    /**
+     * 写入条件表，条件值为Gson解析出的布尔、数值、字符串、列表或嵌套表
+     */
+    public static void writeConditions(DataOutput out, Map<String, Object> conditions) throws IOException {
+        writeValue(out, conditions);
+    }
+
+    @SuppressWarnings("unchecked")
+    public static Map<String, Object> readConditions(DataInput in) throws IOException {
+        return (Map<String, Object>) readValue(in);
+    }
+
+    private static void writeValue(DataOutput out, Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(NULL);
+        } else if (value instanceof Boolean bool) {
+            out.writeByte(BOOLEAN);
+            out.writeBoolean(bool);
+        } else if (value instanceof Number number) {
+            //Gson把数值统一解析为Double，还原后类型一致
+            out.writeByte(NUMBER);
+            out.writeDouble(number.doubleValue());
+        } else if (value instanceof List<?> list) {
+            out.writeByte(LIST);
+            out.writeInt(list.size());
+            for (Object element : list) {
+                writeValue(out, element);
+            }
+        } else if (value instanceof Map<?, ?> map) {
+            out.writeByte(MAP);
+            out.writeInt(map.size());
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                out.writeUTF(String.valueOf(entry.getKey()));
+                writeValue(out, entry.getValue());
+            }
+        } else {
+            out.writeByte(STRING);
+            out.writeUTF(value.toString());
+        }
+    }
+
+    private static Object readValue(DataInput in) throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+            case NULL:
+                return null;
+            case BOOLEAN:
+                return in.readBoolean();
+            case NUMBER:
+                return in.readDouble();
+            case STRING:
+                return in.readUTF();
+            case LIST: {
+                int size = in.readInt();
+                List<Object> list = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    list.add(readValue(in));
+                }
+                return list;
+            }
+            case MAP: {
+                int size = in.readInt();
+                Map<String, Object> map = new LinkedHashMap<>(size * 2);
+                for (int i = 0; i < size; i++) {
+                    String key = in.readUTF();
+                    map.put(key, readValue(in));
+                }
+                return map;
+            }
+            default:
+                throw new IOException("Unknown condition value type " + type);
+        }
+    }
+
+    /**
+     * 写入已解析状态效果的注册表数字ID，未解析时为-1
+     */
+    public static void writeEffect(DataOutput out, MobEffect effect) throws IOException {
+        out.writeInt(effect != null ? BuiltInRegistries.MOB_EFFECT.getId(effect) : -1);
+    }
+
+    /**
+     * 读取状态效果，注册表与写入时一致时直接按数字ID取得，否则按效果ID重新解析
+     */
+    public static MobEffect readEffect(DataInput in, RuleCache cache, String effectId) throws IOException {
+        int rawId = in.readInt();
+        if (cache.isRegistryCurrent()) {
+            return rawId >= 0 ? BuiltInRegistries.MOB_EFFECT.byId(rawId) : null;
+        }
+        return ReactionLoader.resolveEffect(effectId);
+    }
+
+    public static void writeDots(DataOutput out, List<ReactionLoader.DotData> dots) throws IOException {
+        out.writeInt(dots != null ? dots.size() : -1);
+        if (dots != null) {
+            for (ReactionLoader.DotData dot : dots) {
+                writeString(out, dot.id);
+                out.writeDouble(dot.damage);
+                out.writeInt(dot.interval);
+                out.writeInt(dot.duration);
+                writeString(out, dot.scalingElement);
+                out.writeDouble(dot.scaling);
+            }
+        }
+    }
+
+    public static List<ReactionLoader.DotData> readDots(DataInput in) throws IOException {
+        int size = in.readInt();
+        if (size < 0) {
+            return null;
+        }
+        List<ReactionLoader.DotData> dots = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            ReactionLoader.DotData dot = new ReactionLoader.DotData();
+            dot.id = readString(in);
+            dot.damage = in.readDouble();
+            dot.interval = in.readInt();
+            dot.duration = in.readInt();
+            dot.scalingElement = readString(in);
+            dot.scaling = in.readDouble();
+            dots.add(dot);
+        }
+        return dots;
+    }
+
+    public static void writeAdvancedMount(DataOutput out, IElementMountSystem.AdvancedMountData mount) throws IOException {
+        out.writeBoolean(mount != null);
+        if (mount == null) {
+            return;
+        }
+        writeString(out, mount.elementId);
+        out.writeDouble(mount.baseAmount);
+        out.writeInt(mount.baseDuration);
+        out.writeDouble(mount.probability);
+        writeString(out, mount.stackBehavior);
+        out.writeInt(mount.maxStacks);
+        out.writeBoolean(mount.scaling != null);
+        if (mount.scaling != null) {
+            writeString(out, mount.scaling.type);
+            out.writeDouble(mount.scaling.factor);
+            writeString(out, mount.scaling.basedOn);
+        }
+        out.writeBoolean(mount.decay != null);
+        if (mount.decay != null) {
+            writeString(out, mount.decay.type);
+            out.writeDouble(mount.decay.rate);
+            out.writeInt(mount.decay.decayStart);
+        }
+    }
+
+    public static IElementMountSystem.AdvancedMountData readAdvancedMount(DataInput in) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        IElementMountSystem.AdvancedMountData mount = new IElementMountSystem.AdvancedMountData();
+        mount.elementId = readString(in);
+        mount.baseAmount = in.readDouble();
+        mount.baseDuration = in.readInt();
+        mount.probability = in.readDouble();
+        mount.stackBehavior = readString(in);
+        mount.maxStacks = in.readInt();
+        if (in.readBoolean()) {
+            mount.scaling = new IElementMountSystem.ScalingData();
+            mount.scaling.type = readString(in);
+            mount.scaling.factor = in.readDouble();
+            mount.scaling.basedOn = readString(in);
+        }
+        if (in.readBoolean()) {
+            mount.decay = new IElementMountSystem.DecayData();
+            mount.decay.type = readString(in);
+            mount.decay.rate = in.readDouble();
+            mount.decay.decayStart = in.readInt();
+        }
+        return mount;
+    }
+}
\ No newline at end of file
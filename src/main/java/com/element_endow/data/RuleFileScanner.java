@@ -0,0 +1,262 @@
+package com.element_endow.data;
+
+import com.element_endow.ElementEndow;
+import com.google.common.hash.Hashing;
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import net.minecraft.resources.FileToIdConverter;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.server.packs.resources.Resource;
+import net.minecraft.server.packs.resources.ResourceManager;
+import net.minecraft.util.GsonHelper;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * 规则文件扫描器
+ * 在重载的准备阶段读取数据包目录下的JSON文件，按文件并行完成反序列化与校验
+ * 每个文件记录内容哈希，与上一代相同的文件直接沿用上一代解析出的规则对象，
+ * 首次加载时与磁盘缓存相同的文件由缓存的二进制数据还原，跳过解析与校验
+ */
+public final class RuleFileScanner {
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    private RuleFileScanner() {
+    }
+
+    /**
+     * 扫描目录并逐文件解析，解析器返回null或抛出异常视为无效文件
+     * 结果按资源位置排序，与并行度无关
+     * @param previous 上一代的文件表，首次加载时为空表
+     */
+    public static <R> ScanResult<R> scan(ResourceManager resourceManager, String directory, Gson gson,
+                                         Function<JsonElement, R> parser, Map<ResourceLocation, RuleFile<R>> previous) {
+        return scan(resourceManager, directory, gson, parser, previous, Collections.emptyMap(), null);
+    }
+
+    /**
+     * 扫描目录，上一代没有对应文件时尝试从磁盘缓存还原
+     * @param cached 磁盘缓存中该目录的条目
+     * @param restorer 从缓存条目还原规则对象，不重复解析与校验
+     */
+    public static <R> ScanResult<R> scan(ResourceManager resourceManager, String directory, Gson gson,
+                                         Function<JsonElement, R> parser, Map<ResourceLocation, RuleFile<R>> previous,
+                                         Map<ResourceLocation, RuleCache.Entry> cached,
+                                         Function<RuleCache.Entry, R> restorer) {
+        FileToIdConverter converter = FileToIdConverter.json(directory);
+        List<Map.Entry<ResourceLocation, Resource>> files = new ArrayList<>();
+        for (Map.Entry<ResourceLocation, Resource> entry : converter.listMatchingResources(resourceManager).entrySet()) {
+            if (entry.getKey().getNamespace().equals(ElementEndow.MODID)) {
+                files.add(entry);
+            }
+        }
+        files.sort(Map.Entry.comparingByKey());
+
+        //无法读取的文件对应null
+        List<RuleFile<R>> parsed = files.parallelStream()
+                .map(entry -> readFile(converter.fileToId(entry.getKey()), entry.getValue(), gson, parser,
+                        previous, cached, restorer))
+                .toList();
+
+        Map<ResourceLocation, RuleFile<R>> fileTable = new HashMap<>();
+        List<R> rules = new ArrayList<>(parsed.size());
+        int errorCount = 0;
+        int kept = 0;
+        int changed = 0;
+        int added = 0;
+        int restored = 0;
+        for (RuleFile<R> file : parsed) {
+            if (file == null) {
+                errorCount++;
+                continue;
+            }
+            fileTable.put(file.id, file);
+            if (file.rule != null) {
+                rules.add(file.rule);
+            } else {
+                errorCount++;
+            }
+
+            RuleFile<R> old = previous.get(file.id);
+            if (old == null && file.restored) {
+                restored++;
+            } else if (old == null) {
+                added++;
+            } else if (old.hash == file.hash) {
+                kept++;
+            } else {
+                changed++;
+            }
+        }
+
+        int dropped = 0;
+        for (ResourceLocation id : previous.keySet()) {
+            if (!fileTable.containsKey(id)) {
+                dropped++;
+            }
+        }
+
+        return new ScanResult<>(Collections.unmodifiableList(rules), Collections.unmodifiableMap(fileTable),
+                files.size(), errorCount, kept, changed, added, dropped, restored);
+    }
+
+    /**
+     * 只重新读取目录下的单个文件，其余文件沿用上一代的文件表
+     * 文件已不存在时从文件表中移除
+     */
+    public static <R> ScanResult<R> scanFile(ResourceManager resourceManager, String directory, ResourceLocation id,
+                                             Gson gson, Function<JsonElement, R> parser,
+                                             Map<ResourceLocation, RuleFile<R>> previous) {
+        Map<ResourceLocation, RuleFile<R>> fileTable = new HashMap<>(previous);
+        RuleFile<R> old = previous.get(id);
+        Optional<Resource> resource = resourceManager.getResource(FileToIdConverter.json(directory).idToFile(id));
+
+        RuleFile<R> file = null;
+        if (resource.isPresent()) {
+            file = readFile(id, resource.get(), gson, parser, previous, Collections.emptyMap(), null);
+        }
+        if (file != null) {
+            fileTable.put(id, file);
+        } else {
+            fileTable.remove(id);
+        }
+
+        boolean invalid = resource.isPresent() && (file == null || file.rule == null);
+        int kept = old != null && file != null && old.hash == file.hash ? 1 : 0;
+        int changed = old != null && file != null && old.hash != file.hash ? 1 : 0;
+        int added = old == null && file != null ? 1 : 0;
+        int dropped = old != null && resource.isEmpty() ? 1 : 0;
+        return new ScanResult<>(collectRules(fileTable), Collections.unmodifiableMap(fileTable),
+                resource.isPresent() ? 1 : 0, invalid ? 1 : 0, kept, changed, added, dropped, 0);
+    }
+
+    /**
+     * 是否存在指定的规则文件
+     */
+    public static boolean hasFile(ResourceManager resourceManager, String directory, ResourceLocation id) {
+        return resourceManager.getResource(FileToIdConverter.json(directory).idToFile(id)).isPresent();
+    }
+
+    //文件表中有效的规则，按资源位置排序
+    private static <R> List<R> collectRules(Map<ResourceLocation, RuleFile<R>> fileTable) {
+        List<RuleFile<R>> files = new ArrayList<>(fileTable.values());
+        files.sort(Comparator.comparing(file -> file.id));
+        List<R> rules = new ArrayList<>(files.size());
+        for (RuleFile<R> file : files) {
+            if (file.rule != null) {
+                rules.add(file.rule);
+            }
+        }
+        return Collections.unmodifiableList(rules);
+    }
+
+    private static <R> RuleFile<R> readFile(ResourceLocation id, Resource resource, Gson gson,
+                                            Function<JsonElement, R> parser, Map<ResourceLocation, RuleFile<R>> previous,
+                                            Map<ResourceLocation, RuleCache.Entry> cached,
+                                            Function<RuleCache.Entry, R> restorer) {
+        byte[] content;
+        try (InputStream stream = resource.open()) {
+            content = stream.readAllBytes();
+        } catch (Exception e) {
+            LOGGER.error("Failed to read rule {}: {}", id, e.getMessage());
+            return null;
+        }
+
+        long hash = Hashing.murmur3_128().hashBytes(content).asLong();
+        RuleFile<R> old = previous.get(id);
+        //内容未变化且上一代解析成功，沿用已校验的规则对象
+        if (old != null && old.hash == hash && old.rule != null) {
+            return old;
+        }
+
+        RuleCache.Entry entry = cached.get(id);
+        if (entry != null && entry.hash == hash && restorer != null) {
+            try {
+                R rule = restorer.apply(entry);
+                if (rule != null) {
+                    return new RuleFile<>(id, hash, rule, true);
+                }
+            } catch (Exception e) {
+                //缓存条目无法还原时按普通文件解析
+                LOGGER.debug("Failed to restore cached rule {}: {}", id, e.getMessage());
+            }
+        }
+
+        R rule = null;
+        try {
+            JsonElement json = GsonHelper.fromJson(gson,
+                    new StringReader(new String(content, StandardCharsets.UTF_8)), JsonElement.class);
+            rule = parser.apply(json);
+            if (rule == null) {
+                LOGGER.warn("Invalid rule data: {}", id);
+            }
+        } catch (Exception e) {
+            LOGGER.error("Failed to load rule {}: {}", id, e.getMessage());
+        }
+        return new RuleFile<>(id, hash, rule, false);
+    }
+
+    /**
+     * 单个规则文件，无效文件的规则为null
+     */
+    public static final class RuleFile<R> {
+        public final ResourceLocation id;
+        public final long hash;
+        public final R rule;
+        //是否由磁盘缓存还原
+        public final boolean restored;
+
+        public RuleFile(ResourceLocation id, long hash, R rule, boolean restored) {
+            this.id = id;
+            this.hash = hash;
+            this.rule = rule;
+            this.restored = restored;
+        }
+    }
+
+    public static class ScanResult<R> {
+        public final List<R> rules;
+        public final Map<ResourceLocation, RuleFile<R>> files;
+        public final int fileCount;
+        public final int errorCount;
+        //与上一代对比：内容相同、内容变化、新增与删除的文件数
+        public final int kept;
+        public final int changed;
+        public final int added;
+        public final int dropped;
+        //首次加载时由磁盘缓存还原的文件数
+        public final int restored;
+
+        public ScanResult(List<R> rules, Map<ResourceLocation, RuleFile<R>> files, int fileCount, int errorCount,
+                          int kept, int changed, int added, int dropped, int restored) {
+            this.rules = rules;
+            this.files = files;
+            this.fileCount = fileCount;
+            this.errorCount = errorCount;
+            this.kept = kept;
+            this.changed = changed;
+            this.added = added;
+            this.dropped = dropped;
+            this.restored = restored;
+        }
+
+        /**
+         * 由已有文件表构建的扫描结果，用于只重载其他目录的情况
+         */
+        public static <R> ScanResult<R> of(Map<ResourceLocation, RuleFile<R>> files) {
+            int errorCount = 0;
+            for (RuleFile<R> file : files.values()) {
+                if (file.rule == null) {
+                    errorCount++;
+                }
+            }
+            return new ScanResult<>(collectRules(files), files, files.size(), errorCount, files.size(), 0, 0, 0, 0);
+        }
+    }
+}
\ No newline at end of file
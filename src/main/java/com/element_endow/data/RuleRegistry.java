@@ -0,0 +1,67 @@
+package com.element_endow.data;
+
+import com.element_endow.data.entity_bindings.EntityElementBindingLoader;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 规则注册表
+ * 反应、组合与生物绑定的唯一来源，持有当前规则集与各加载器；
+ * 每次重载只构建一个规则集并整体发布，各系统通过构造函数注入同一实例
+ */
+public final class RuleRegistry {
+    private final ReactionLoader reactionLoader;
+    private final CombinationLoader combinationLoader;
+    private final EntityElementBindingLoader bindingLoader;
+
+    //当前生效的规则集，整体替换
+    private volatile RuleSet ruleSet = RuleSet.EMPTY;
+    //已分配的最大代数，准备阶段预先分配
+    private final AtomicInteger nextGeneration = new AtomicInteger();
+
+    public RuleRegistry() {
+        this.reactionLoader = new ReactionLoader(this);
+        this.combinationLoader = new CombinationLoader(this);
+        this.bindingLoader = new EntityElementBindingLoader(this);
+    }
+
+    /**
+     * 获取当前生效的规则集，同一次调用内读取的规则总是属于同一代
+     */
+    public RuleSet getRuleSet() {
+        return ruleSet;
+    }
+
+    /**
+     * 为即将发布的规则集预留代数（可在工作线程调用）
+     */
+    public int reserveGeneration() {
+        return nextGeneration.incrementAndGet();
+    }
+
+    /**
+     * 发布重载构建的规则集（必须在主线程调用）
+     */
+    public void publish(RuleSet rules) {
+        ruleSet = rules;
+    }
+
+    /**
+     * 以新代数重新发布当前规则，编译索引与缓存随之失效
+     */
+    public void republish() {
+        ruleSet = ruleSet.withGeneration(reserveGeneration());
+    }
+
+    public ReactionLoader getReactionLoader() {
+        return reactionLoader;
+    }
+
+    public CombinationLoader getCombinationLoader() {
+        return combinationLoader;
+    }
+
+    public EntityElementBindingLoader getBindingLoader() {
+        return bindingLoader;
+    }
+}
\ No newline at end of file
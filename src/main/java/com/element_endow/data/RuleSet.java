@@ -0,0 +1,70 @@
+package com.element_endow.data;
+
+import com.element_endow.core.compiled.CombinationIndex;
+import com.element_endow.core.compiled.ReactionIndex;
+import com.element_endow.data.entity_bindings.EntityElementBindingLoader;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.world.entity.EntityType;
+
+import java.util.*;
+
+/**
+ * 不可变的规则集快照
+ * 反应、组合、生物绑定与编译索引在重载准备阶段整体构建，通过单一引用原子替换，
+ * 读取方总是看到同一代的完整规则；缓存按代数区分，旧代的条目在下次访问时淘汰
+ */
+public final class RuleSet {
+    public static final RuleSet EMPTY = new RuleSet(0, Collections.emptyMap(), Collections.emptyMap(),
+            Collections.emptyMap(), Collections.emptyList(), null, null,
+            Collections.emptyMap(), Collections.emptyMap(), Collections.emptyMap());
+
+    public final int generation;
+    public final Map<String, ReactionLoader.ElementReaction> reactions;
+    //按优先级排序的反应
+    public final List<ReactionLoader.ElementReaction> orderedReactions;
+    public final Map<String, CombinationLoader.ElementCombination> combinations;
+    //直接指定实体类型的绑定
+    public final Map<EntityType<?>, EntityElementBindingLoader.EntityElementBinding> bindings;
+    //按实体类型标签指定的绑定，标签绑定后由绑定表展开
+    public final List<EntityElementBindingLoader.TagBinding> tagBindings;
+    //准备阶段编译的索引，为null或元素注册数已变化时由各系统按需重建
+    public final ReactionIndex reactionIndex;
+    public final CombinationIndex combinationIndex;
+    //各目录的文件表，下一次重载按内容哈希与之对比
+    public final Map<ResourceLocation, RuleFileScanner.RuleFile<ReactionLoader.ElementReaction>> reactionFiles;
+    public final Map<ResourceLocation, RuleFileScanner.RuleFile<CombinationLoader.ElementCombination>> combinationFiles;
+    public final Map<ResourceLocation, RuleFileScanner.RuleFile<EntityElementBindingLoader.ResolvedBinding>> bindingFiles;
+
+    public RuleSet(int generation,
+                   Map<String, ReactionLoader.ElementReaction> reactions,
+                   Map<String, CombinationLoader.ElementCombination> combinations,
+                   Map<EntityType<?>, EntityElementBindingLoader.EntityElementBinding> bindings,
+                   List<EntityElementBindingLoader.TagBinding> tagBindings,
+                   ReactionIndex reactionIndex, CombinationIndex combinationIndex,
+                   Map<ResourceLocation, RuleFileScanner.RuleFile<ReactionLoader.ElementReaction>> reactionFiles,
+                   Map<ResourceLocation, RuleFileScanner.RuleFile<CombinationLoader.ElementCombination>> combinationFiles,
+                   Map<ResourceLocation, RuleFileScanner.RuleFile<EntityElementBindingLoader.ResolvedBinding>> bindingFiles) {
+        this.generation = generation;
+        this.reactions = Collections.unmodifiableMap(reactions);
+        this.combinations = Collections.unmodifiableMap(combinations);
+        this.bindings = Collections.unmodifiableMap(bindings);
+        this.tagBindings = Collections.unmodifiableList(tagBindings);
+        this.reactionIndex = reactionIndex;
+        this.combinationIndex = combinationIndex;
+        this.reactionFiles = reactionFiles;
+        this.combinationFiles = combinationFiles;
+        this.bindingFiles = bindingFiles;
+
+        List<ReactionLoader.ElementReaction> ordered = new ArrayList<>(reactions.values());
+        ordered.sort(ReactionLoader.PRIORITY_ORDER);
+        this.orderedReactions = Collections.unmodifiableList(ordered);
+    }
+
+    /**
+     * 以新代数重新发布相同的规则，索引在下次访问时重建
+     */
+    public RuleSet withGeneration(int generation) {
+        return new RuleSet(generation, reactions, combinations, bindings, tagBindings, null, null,
+                reactionFiles, combinationFiles, bindingFiles);
+    }
+}
\ No newline at end of file
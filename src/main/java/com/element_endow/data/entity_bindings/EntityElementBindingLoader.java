@@ -1,18 +1,34 @@
 package com.element_endow.data.entity_bindings;
 
+import com.element_endow.api.ElementSystemAPI;
+import com.element_endow.api.IElementSystem;
+import com.element_endow.core.compiled.EntityBindingTable;
+import com.element_endow.data.RuleCache;
+import com.element_endow.data.RuleCodec;
+import com.element_endow.data.RuleFileScanner;
+import com.element_endow.data.RuleRegistry;
+import com.element_endow.data.RuleSet;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.JsonElement;
+import net.minecraft.core.registries.Registries;
 import net.minecraft.resources.ResourceLocation;
+import net.minecraft.tags.TagKey;
 import net.minecraft.world.entity.EntityType;
 import net.minecraft.core.registries.BuiltInRegistries;
 import net.minecraftforge.registries.ForgeRegistries;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * 生物元素绑定加载器
@@ -22,58 +38,168 @@ public class EntityElementBindingLoader {
     private static final Logger LOGGER = LogManager.getLogger();
     private static final Gson GSON = new GsonBuilder().create();
 
-    private final Map<EntityType<?>, EntityElementBinding> entityBindings = new HashMap<>();
     private final Map<EntityType<?>, EntityElementBinding> runtimeBindings = new ConcurrentHashMap<>();
     private final Map<String, EntityElementBinding> pendingRuntimeBindings = new ConcurrentHashMap<>();
+    private final RuleRegistry rules;
+    //运行时绑定每次变化递增，绑定表据此判断是否需要重建
+    private final AtomicInteger runtimeVersion = new AtomicInteger();
+    //实体类型标签每次重新绑定递增，标签绑定据此重新展开
+    private final AtomicInteger tagVersion = new AtomicInteger();
+    private volatile EntityBindingTable bindingTable = EntityBindingTable.EMPTY;
+
+    public EntityElementBindingLoader(RuleRegistry rules) {
+        this.rules = rules;
+    }
 
+    /**
+     * 以新代数重新发布当前规则
+     */
     public void loadBindings() {
-        entityBindings.clear();
+        rules.republish();
+    }
+
+    /**
+     * 解析并校验单个绑定文件，同时解析实体类型；标签在标签绑定后才能展开，此处只记录标签键
+     * （在准备阶段的工作线程调用）
+     */
+    public static ResolvedBinding parseBinding(JsonElement json) {
+        EntityElementBinding binding = GSON.fromJson(json, EntityElementBinding.class);
+        if (binding == null || !validateBinding(binding)) {
+            return null;
+        }
+        return resolveBinding(binding);
+    }
+
+    /**
+     * 从磁盘缓存还原已校验过的绑定，实体类型按注册表数字ID取得；元素表未变化时同时还原编译结果
+     */
+    public static ResolvedBinding readCached(DataInput in, RuleCache cache) throws IOException {
+        EntityElementBinding binding = new EntityElementBinding();
+        binding.entityType = RuleCodec.readString(in);
+        binding.entityTypes = RuleCodec.readStringList(in);
+        binding.elements = RuleCodec.readDoubles(in);
+        binding.persistent = in.readBoolean();
+        binding.priority = in.readInt();
+        binding.conditions = RuleCodec.readConditions(in);
+
+        int typeCount = in.readInt();
+        List<EntityType<?>> entityTypes = new ArrayList<>(typeCount);
+        for (int i = 0; i < typeCount; i++) {
+            int rawId = in.readInt();
+            String key = in.readUTF();
+            EntityType<?> entityType = cache.isRegistryCurrent()
+                    ? BuiltInRegistries.ENTITY_TYPE.byId(rawId)
+                    : ForgeRegistries.ENTITY_TYPES.getValue(ResourceLocation.tryParse(key));
+            if (entityType == null) {
+                LOGGER.warn("Unknown entity type: {}", key);
+                continue;
+            }
+            entityTypes.add(entityType);
+        }
+        int tagCount = in.readInt();
+        List<TagKey<EntityType<?>>> tags = new ArrayList<>(tagCount);
+        for (int i = 0; i < tagCount; i++) {
+            tags.add(TagKey.create(Registries.ENTITY_TYPE, new ResourceLocation(in.readUTF())));
+        }
+
+        EntityBindingTable.CompiledBinding compiled = EntityBindingTable.CompiledBinding.read(in, binding,
+                cache.getCompiledElementCount());
+        if (cache.getCompiledElementCount() >= 0) {
+            binding.compiled = compiled;
+        }
+
+        if (entityTypes.isEmpty() && tags.isEmpty()) {
+            return null;
+        }
+        return new ResolvedBinding(entityTypes, tags, binding);
     }
 
-    public void loadFromResources(Map<ResourceLocation, JsonElement> resources) {
-        entityBindings.clear();
+    /**
+     * 写入磁盘缓存，包括实体类型的注册表数字ID与当前元素表下的编译结果
+     */
+    public static void writeCached(DataOutput out, ResolvedBinding resolved, IElementSystem elementSystem)
+            throws IOException {
+        EntityElementBinding binding = resolved.binding;
+        RuleCodec.writeString(out, binding.entityType);
+        RuleCodec.writeStrings(out, binding.entityTypes);
+        RuleCodec.writeDoubles(out, binding.elements);
+        out.writeBoolean(binding.persistent);
+        out.writeInt(binding.priority);
+        RuleCodec.writeConditions(out, binding.conditions);
+
+        out.writeInt(resolved.entityTypes.size());
+        for (EntityType<?> entityType : resolved.entityTypes) {
+            //按ID还原时使用键，注册表未变化时直接使用数字ID
+            out.writeInt(BuiltInRegistries.ENTITY_TYPE.getId(entityType));
+            out.writeUTF(BuiltInRegistries.ENTITY_TYPE.getKey(entityType).toString());
+        }
+        out.writeInt(resolved.tags.size());
+        for (TagKey<EntityType<?>> tag : resolved.tags) {
+            out.writeUTF(tag.location().toString());
+        }
 
-        int loadedCount = 0;
-        int errorCount = 0;
+        EntityBindingTable.CompiledBinding.compile(binding, elementSystem).write(out);
+    }
 
-        for (Map.Entry<ResourceLocation, JsonElement> entry : resources.entrySet()) {
-            ResourceLocation location = entry.getKey();
+    private static ResolvedBinding resolveBinding(EntityElementBinding binding) {
+        List<EntityType<?>> entityTypes = new ArrayList<>();
+        List<TagKey<EntityType<?>>> tags = new ArrayList<>();
+        for (String target : binding.getTargets()) {
+            boolean isTag = target.startsWith("#");
+            ResourceLocation id = ResourceLocation.tryParse(isTag ? target.substring(1) : target);
+            if (id == null) {
+                LOGGER.warn("Invalid entity type format: {}", target);
+                continue;
+            }
 
-            if (!location.getNamespace().equals("element_endow")) {
+            if (isTag) {
+                tags.add(TagKey.create(Registries.ENTITY_TYPE, id));
                 continue;
             }
 
-            try {
-                EntityElementBinding binding = GSON.fromJson(entry.getValue(), EntityElementBinding.class);
-
-                if (validateBinding(binding)) {
-                    ResourceLocation entityTypeId = ResourceLocation.tryParse(binding.entityType);
-                    if (entityTypeId != null) {
-                        EntityType<?> entityType = ForgeRegistries.ENTITY_TYPES.getValue(entityTypeId);
-                        if (entityType != null) {
-                            entityBindings.put(entityType, binding);
-                            loadedCount++;
-                        } else {
-                            LOGGER.warn("Unknown entity type: {}", binding.entityType);
-                            errorCount++;
-                        }
-                    } else {
-                        LOGGER.warn("Invalid entity type format: {}", binding.entityType);
-                        errorCount++;
-                    }
-                } else {
-                    LOGGER.warn("Invalid entity binding data: {}", location);
-                    errorCount++;
-                }
-            } catch (Exception e) {
-                LOGGER.error("Failed to load entity binding {}: {}", location, e.getMessage());
-                errorCount++;
+            EntityType<?> entityType = ForgeRegistries.ENTITY_TYPES.getValue(id);
+            if (entityType == null) {
+                LOGGER.warn("Unknown entity type: {}", target);
+                continue;
+            }
+            entityTypes.add(entityType);
+        }
+
+        if (entityTypes.isEmpty() && tags.isEmpty()) {
+            return null;
+        }
+        return new ResolvedBinding(entityTypes, tags, binding);
+    }
+
+    /**
+     * 汇总扫描结果中直接指定实体类型的绑定，同一实体类型取优先级高的绑定，优先级相同时后加载的覆盖先加载的
+     */
+    public static Map<EntityType<?>, EntityElementBinding> collect(RuleFileScanner.ScanResult<ResolvedBinding> scan) {
+        Map<EntityType<?>, EntityElementBinding> loaded = new HashMap<>();
+        for (ResolvedBinding resolved : scan.rules) {
+            for (EntityType<?> entityType : resolved.entityTypes) {
+                loaded.merge(entityType, resolved.binding,
+                        (earlier, later) -> later.priority >= earlier.priority ? later : earlier);
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * 汇总扫描结果中的标签绑定，按加载顺序排列
+     */
+    public static List<TagBinding> collectTags(RuleFileScanner.ScanResult<ResolvedBinding> scan) {
+        List<TagBinding> loaded = new ArrayList<>();
+        for (ResolvedBinding resolved : scan.rules) {
+            for (TagKey<EntityType<?>> tag : resolved.tags) {
+                loaded.add(new TagBinding(tag, resolved.binding));
             }
         }
+        return loaded;
     }
 
-    private boolean validateBinding(EntityElementBinding binding) {
-        if (binding.entityType == null || binding.entityType.isEmpty()) {
+    private static boolean validateBinding(EntityElementBinding binding) {
+        if (binding.getTargets().isEmpty()) {
             LOGGER.error("Entity binding missing entity type");
             return false;
         }
@@ -106,6 +232,7 @@ public class EntityElementBindingLoader {
         }
 
         runtimeBindings.put(entityType, binding);
+        runtimeVersion.incrementAndGet();
     }
 
     /**
@@ -155,48 +282,70 @@ public class EntityElementBindingLoader {
         }
 
         pendingRuntimeBindings.clear();
+        if (resolved > 0) {
+            runtimeVersion.incrementAndGet();
+        }
     }
 
     /**
      * 移除实体类型的运行时绑定
      */
     public boolean removeRuntimeBinding(EntityType<?> entityType) {
-        return runtimeBindings.remove(entityType) != null;
+        if (runtimeBindings.remove(entityType) == null) {
+            return false;
+        }
+        runtimeVersion.incrementAndGet();
+        return true;
     }
 
     public Map<EntityType<?>, EntityElementBinding> getEntityBindings() {
-        return new HashMap<>(entityBindings);
+        return new HashMap<>(rules.getRuleSet().bindings);
     }
 
     /**
-     * 获取实体类型的绑定（合并数据包绑定和运行时绑定）
+     * 获取按优先级合并后的绑定表，规则重载、运行时绑定变化或标签重新绑定后首次访问时重建
      */
-    public EntityElementBinding getBindingForEntity(EntityType<?> entityType) {
-        //优先返回运行时绑定
-        EntityElementBinding runtimeBinding = runtimeBindings.get(entityType);
-        if (runtimeBinding != null) {
-            return runtimeBinding;
+    public EntityBindingTable getBindingTable() {
+        EntityBindingTable table = bindingTable;
+        IElementSystem elementSystem = ElementSystemAPI.getElementSystem();
+        RuleSet ruleSet = rules.getRuleSet();
+        int version = runtimeVersion.get();
+        int tags = tagVersion.get();
+        if (table.isStale(elementSystem, ruleSet.generation, version, tags)) {
+            table = EntityBindingTable.build(ruleSet.bindings, ruleSet.tagBindings, runtimeBindings, elementSystem,
+                    ruleSet.generation, version, tags);
+            bindingTable = table;
         }
+        return table;
+    }
+
+    /**
+     * 实体类型标签重新绑定后调用，标签绑定在下次访问绑定表时重新展开
+     */
+    public void onTagsUpdated() {
+        tagVersion.incrementAndGet();
+    }
 
-        //返回数据包绑定
-        return entityBindings.get(entityType);
+    /**
+     * 获取实体类型的绑定（按优先级合并数据包绑定和运行时绑定）
+     */
+    public EntityElementBinding getBindingForEntity(EntityType<?> entityType) {
+        EntityBindingTable.CompiledBinding binding = getBindingTable().get(entityType);
+        return binding != null ? binding.source : null;
     }
 
     /**
      * 检查实体类型是否有任何绑定
      */
     public boolean hasBindingForEntity(EntityType<?> entityType) {
-        return runtimeBindings.containsKey(entityType) || entityBindings.containsKey(entityType);
+        return getBindingTable().get(entityType) != null;
     }
 
     /**
-     * 获取所有绑定（包括运行时和数据包）
+     * 获取所有绑定（包括运行时、数据包与展开后的标签绑定，同一实体类型取优先级高的）
      */
     public Map<EntityType<?>, EntityElementBinding> getAllBindings() {
-        Map<EntityType<?>, EntityElementBinding> allBindings = new HashMap<>();
-        allBindings.putAll(entityBindings); // 数据包绑定
-        allBindings.putAll(runtimeBindings); // 运行时绑定（覆盖数据包绑定）
-        return allBindings;
+        return getBindingTable().toMap();
     }
 
     /**
@@ -205,6 +354,7 @@ public class EntityElementBindingLoader {
     public void clearRuntimeBindings() {
         runtimeBindings.clear();
         pendingRuntimeBindings.clear();
+        runtimeVersion.incrementAndGet();
     }
 
     /**
@@ -214,7 +364,7 @@ public class EntityElementBindingLoader {
         return new RuntimeBindingStats(
                 runtimeBindings.size(),
                 pendingRuntimeBindings.size(),
-                entityBindings.size()
+                rules.getRuleSet().bindings.size()
         );
     }
 
@@ -230,12 +380,39 @@ public class EntityElementBindingLoader {
         }
     }
 
+    //已解析实体类型的绑定，标签在绑定表构建时展开
+    public static class ResolvedBinding {
+        public final List<EntityType<?>> entityTypes;
+        public final List<TagKey<EntityType<?>>> tags;
+        public final EntityElementBinding binding;
+
+        public ResolvedBinding(List<EntityType<?>> entityTypes, List<TagKey<EntityType<?>>> tags,
+                               EntityElementBinding binding) {
+            this.entityTypes = entityTypes;
+            this.tags = tags;
+            this.binding = binding;
+        }
+    }
+
+    //通过实体类型标签指定的绑定
+    public static class TagBinding {
+        public final TagKey<EntityType<?>> tag;
+        public final EntityElementBinding binding;
+
+        public TagBinding(TagKey<EntityType<?>> tag, EntityElementBinding binding) {
+            this.tag = tag;
+            this.binding = binding;
+        }
+    }
+
     public static class EntityElementBinding {
-        public String entityType;
+        public String entityType;//实体类型ID，或以#开头的实体类型标签
+        public List<String> entityTypes;//多个实体类型或标签，与entityType合并
         public Map<String, Double> elements = new HashMap<>();
         public boolean persistent = true;//是否持久化
         public int priority = 0;//优先级，数值高覆盖数值低的
         public Map<String, Object> conditions;//应用条件，null表示无条件
+        public transient EntityBindingTable.CompiledBinding compiled;//由磁盘缓存还原的编译结果
 
         public EntityElementBinding() {}
 
@@ -244,6 +421,24 @@ public class EntityElementBindingLoader {
             this.elements = elements;
         }
 
+        /**
+         * 绑定的全部目标，包括entityType与entityTypes
+         */
+        public List<String> getTargets() {
+            List<String> targets = new ArrayList<>();
+            if (entityType != null && !entityType.isEmpty()) {
+                targets.add(entityType);
+            }
+            if (entityTypes != null) {
+                for (String target : entityTypes) {
+                    if (target != null && !target.isEmpty()) {
+                        targets.add(target);
+                    }
+                }
+            }
+            return targets;
+        }
+
         /**
          * 检查是否有条件
          */
@@ -3,25 +3,41 @@ package com.element_endow.event;
 import com.element_endow.api.ElementSystemAPI;
 import com.element_endow.api.IElementCombinationSystem;
 import com.element_endow.api.ReactionResult;
+import com.element_endow.core.ElementCombinationSystem;
+import com.element_endow.core.ElementReactionSystem;
+import com.element_endow.core.ElementSystemImpl;
+import com.element_endow.core.dot.DotScheduler;
+import com.element_endow.core.effect.EffectSink;
+import com.element_endow.core.snapshot.ProjectileElementSnapshot;
 import com.element_endow.data.CombinationLoader;
+import net.minecraft.world.entity.Entity;
 import net.minecraft.world.entity.LivingEntity;
 import net.minecraft.world.effect.MobEffect;
 import net.minecraft.world.effect.MobEffectInstance;
-import net.minecraft.core.registries.BuiltInRegistries;
-import net.minecraft.resources.ResourceLocation;
 import net.minecraftforge.event.entity.living.LivingHurtEvent;
+import net.minecraftforge.event.server.ServerStoppedEvent;
 import net.minecraftforge.eventbus.api.SubscribeEvent;
 import net.minecraftforge.fml.common.Mod;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.Random;
+import java.util.Set;
 
 @Mod.EventBusSubscriber(modid = "element_endow", bus = Mod.EventBusSubscriber.Bus.FORGE)
 public class ElementAttackEventHandler {
     private static final Logger LOGGER = LogManager.getLogger();
     private static final Random RANDOM = new Random();
 
+    @SubscribeEvent
+    public static void onServerStopped(ServerStoppedEvent event) {
+        if (ElementSystemAPI.getReactionSystem() instanceof ElementReactionSystem reactionSystem) {
+            reactionSystem.clearCooldowns();
+        }
+    }
+
     @SubscribeEvent
     public static void onLivingHurt(LivingHurtEvent event) {
         if (!(event.getSource().getEntity() instanceof LivingEntity)) {
@@ -35,38 +51,68 @@ public class ElementAttackEventHandler {
         LivingEntity target = (LivingEntity) event.getEntity();
 
         try {
+            //新生成实体的绑定在首次交互时应用
+            EntitySpawnHandler.ensureBindingsApplied(attacker);
+            EntitySpawnHandler.ensureBindingsApplied(target);
+
             var elementSystem = ElementSystemAPI.getElementSystem();
             var reactionSystem = elementSystem.getReactionSystem();
             var combinationSystem = elementSystem.getCombinationSystem();
             var mountSystem = elementSystem.getMountSystem();
 
+            //投射物命中时使用发射时的元素快照，不读取发射者的当前状态
+            ProjectileElementSnapshot snapshot = readProjectileSnapshot(event.getSource().getDirectEntity(), attacker);
+
             //处理元素反应和组合触发
-            ReactionResult attackResult = reactionSystem.processAttackReaction(attacker, target, event.getAmount());
-            ReactionResult defenseResult = reactionSystem.processDefenseReaction(attacker, target, event.getAmount());
-            var combinationAttackResult = processCombinationAttackTriggers(attacker, target);
+            ReactionResult attackResult;
+            ReactionResult defenseResult;
+            if (snapshot != null && reactionSystem instanceof ElementReactionSystem snapshotReactions) {
+                attackResult = snapshotReactions.processAttackReaction(attacker, snapshot.elementValues, target, event.getAmount());
+                defenseResult = snapshotReactions.processDefenseReaction(attacker, snapshot.elementValues, target, event.getAmount());
+            } else {
+                attackResult = reactionSystem.processAttackReaction(attacker, target, event.getAmount());
+                defenseResult = reactionSystem.processDefenseReaction(attacker, target, event.getAmount());
+            }
+            var combinationAttackResult = processCombinationAttackTriggers(attacker, target,
+                    snapshot != null ? snapshot.activeCombinations : combinationSystem.getActiveCombinations(attacker));
             var combinationDefenseResult = processCombinationDefenseTriggers(attacker, target);
             //合并所有结果
             ReactionResult combinedResult = combineResults(attackResult, defenseResult,
                     combinationAttackResult, combinationDefenseResult);
 
             applyReactionResult(event, combinedResult, attacker, target);
-            applyMountEffects(attacker, target, combinedResult, mountSystem);
-            processCombinationEffects(attacker, target, combinationAttackResult);
+            applyConsumption(attacker, target, combinedResult);
+            Set<String> mountedElements = applyMountEffects(attacker, target, combinedResult, mountSystem);
+            applyDotEffects(attacker, target, combinedResult.targetDots);
+            applyCascade(event, attacker, target, mountedElements);
+            applyDotEffects(target, attacker, combinationDefenseResult.targetDots);
 
         } catch (Exception e) {
             LOGGER.error("Error processing element reactions and combinations", e);
         }
     }
 
+    /**
+     * 读取投射物的元素快照，直接攻击或没有快照时返回null
+     */
+    private static ProjectileElementSnapshot readProjectileSnapshot(Entity directEntity, LivingEntity attacker) {
+        if (directEntity == null || directEntity == attacker
+                || !(ElementSystemAPI.getElementSystem() instanceof ElementSystemImpl elementSystem)
+                || !(elementSystem.getCombinationSystem() instanceof ElementCombinationSystem combinationSystem)) {
+            return null;
+        }
+        return ProjectileElementSnapshot.read(directEntity, elementSystem, combinationSystem.getCombinationIndex());
+    }
+
     /**
      * 处理组合攻击触发效果
      */
-    private static IElementCombinationSystem.CombinationTriggerResult processCombinationAttackTriggers(LivingEntity attacker, LivingEntity target) {
+    private static IElementCombinationSystem.CombinationTriggerResult processCombinationAttackTriggers(LivingEntity attacker, LivingEntity target,
+                                                                                                       Collection<String> activeCombinations) {
         IElementCombinationSystem.CombinationTriggerResult result = new IElementCombinationSystem.CombinationTriggerResult();
 
         try {
             var combinationSystem = ElementSystemAPI.getElementSystem().getCombinationSystem();
-            var activeCombinations = combinationSystem.getActiveCombinations(attacker);
             var combinationLoader = combinationSystem.getCombinationLoader();
 
             for (String combinationId : activeCombinations) {
@@ -139,6 +185,12 @@ public class ElementAttackEventHandler {
                 if (trigger.advancedMountApplications != null) {
                     result.advancedMountApplications.addAll(trigger.advancedMountApplications);
                 }
+
+                if (trigger.targetDots != null) {
+                    for (var dot : trigger.targetDots) {
+                        result.targetDots.add(dot.toDotApplication());
+                    }
+                }
             }
 
         } catch (Exception e) {
@@ -212,6 +264,13 @@ public class ElementAttackEventHandler {
                         }
                     }
                 }
+
+                //防御触发的DoT施加给攻击者
+                if (trigger.targetDots != null) {
+                    for (var dot : trigger.targetDots) {
+                        result.targetDots.add(dot.toDotApplication());
+                    }
+                }
             }
 
         } catch (Exception e) {
@@ -226,8 +285,7 @@ public class ElementAttackEventHandler {
      */
     private static MobEffectInstance createEffectInstance(CombinationLoader.EffectData effectData) {
         try {
-            ResourceLocation effectId = new ResourceLocation(effectData.effect);
-            MobEffect mobEffect = BuiltInRegistries.MOB_EFFECT.get(effectId);
+            MobEffect mobEffect = effectData.getMobEffect();
 
             if (mobEffect == null) {
                 LOGGER.warn("Effect not found: {}", effectData.effect);
@@ -251,8 +309,9 @@ public class ElementAttackEventHandler {
 
     /**
      * 合并结果
+     * 攻击与防御求值匹配同一组反应，反应挂载与元素消耗只取攻击求值的结果，每次命中只应用一次
      */
-    private static ReactionResult combineResults(ReactionResult attackResult, ReactionResult defenseResult,
+    static ReactionResult combineResults(ReactionResult attackResult, ReactionResult defenseResult,
                                                  IElementCombinationSystem.CombinationTriggerResult combinationAttack,
                                                  IElementCombinationSystem.CombinationTriggerResult combinationDefense) {
         ReactionResult combined = new ReactionResult();
@@ -291,6 +350,15 @@ public class ElementAttackEventHandler {
         combined.mountApplications.addAll(combinationDefense.mountApplications);
         combined.advancedMountApplications.addAll(combinationAttack.advancedMountApplications);
         combined.advancedMountApplications.addAll(combinationDefense.advancedMountApplications);
+        combined.targetDots.addAll(attackResult.targetDots);
+        combined.targetDots.addAll(defenseResult.targetDots);
+        combined.targetDots.addAll(combinationAttack.targetDots);
+
+        //反应挂载与元素消耗
+        combined.mountApplications.addAll(attackResult.mountApplications);
+        combined.advancedMountApplications.addAll(attackResult.advancedMountApplications);
+        ReactionResult.addConsumption(combined.targetConsumption, attackResult.targetConsumption);
+        ReactionResult.addConsumption(combined.selfConsumption, attackResult.selfConsumption);
 
         return combined;
     }
@@ -310,16 +378,16 @@ public class ElementAttackEventHandler {
         //应用目标效果
         for (var effect : result.targetEffects) {
             if (effect != null) {
-                target.addEffect(effect);
-                LOGGER.debug("Applied target effect: {} to {}", effect.getEffect().getDisplayName().getString(), target);
+                EffectSink.queue(target, effect);
+                LOGGER.debug("Queued target effect: {} to {}", effect.getEffect().getDisplayName().getString(), target);
             }
         }
 
         //应用自身效果
         for (var effect : result.selfEffects) {
             if (effect != null) {
-                attacker.addEffect(effect);
-                LOGGER.debug("Applied self effect: {} to {}", effect.getEffect().getDisplayName().getString(), attacker);
+                EffectSink.queue(attacker, effect);
+                LOGGER.debug("Queued self effect: {} to {}", effect.getEffect().getDisplayName().getString(), attacker);
             }
         }
 
@@ -327,26 +395,15 @@ public class ElementAttackEventHandler {
     }
 
     /**
-     * 单独处理组合效果
+     * 批量扣除本次命中消耗的元素
      */
-    private static void processCombinationEffects(LivingEntity attacker, LivingEntity target,
-                                                  IElementCombinationSystem.CombinationTriggerResult combinationResult) {
-        //确保组合的目标效果被应用
-        for (var effect : combinationResult.targetEffects) {
-            if (effect != null && target != null) {
-                target.addEffect(effect);
-                LOGGER.info("Applied combination target effect: {} to {}",
-                        effect.getEffect().getDisplayName().getString(), target);
-            }
+    private static void applyConsumption(LivingEntity attacker, LivingEntity target, ReactionResult result) {
+        var elementSystem = ElementSystemAPI.getElementSystem();
+        if (!result.targetConsumption.isEmpty()) {
+            elementSystem.consumeElements(target, result.targetConsumption);
         }
-
-        //确保组合的自身效果被应用
-        for (var effect : combinationResult.selfEffects) {
-            if (effect != null && attacker != null) {
-                attacker.addEffect(effect);
-                LOGGER.info("Applied combination self effect: {} to {}",
-                        effect.getEffect().getDisplayName().getString(), attacker);
-            }
+        if (!result.selfConsumption.isEmpty()) {
+            elementSystem.consumeElements(attacker, result.selfConsumption);
         }
     }
 
@@ -388,24 +445,64 @@ public class ElementAttackEventHandler {
     }
 
     /**
-     * 应用挂载效果
+     * 将持续伤害交给DoT调度器
+     * @param source 施加者，伤害按其元素值加成
+     */
+    private static void applyDotEffects(LivingEntity source, LivingEntity victim,
+                                        java.util.List<ReactionResult.DotApplication> dots) {
+        if (dots.isEmpty() || !(ElementSystemAPI.getElementSystem() instanceof ElementSystemImpl elementSystem)) {
+            return;
+        }
+
+        DotScheduler dotScheduler = elementSystem.getDotScheduler();
+        for (ReactionResult.DotApplication dot : dots) {
+            dotScheduler.apply(victim, source, dot);
+        }
+    }
+
+    /**
+     * 应用挂载效果，返回实际挂载的元素，供连锁反应使用
      */
-    private static void applyMountEffects(LivingEntity attacker, LivingEntity target, ReactionResult result,
-                                          com.element_endow.api.IElementMountSystem mountSystem) {
+    private static Set<String> applyMountEffects(LivingEntity attacker, LivingEntity target, ReactionResult result,
+                                                 com.element_endow.api.IElementMountSystem mountSystem) {
+        Set<String> mountedElements = new HashSet<>();
         for (ReactionResult.MountApplication mount : result.mountApplications) {
-            if (target.level().random.nextDouble() < mount.probability) {
-                mountSystem.applyMount(target,
-                        mount.elementId,
-                        mount.amount,
-                        mount.duration,
-                        mount.probability, "refresh");
+            //概率在这里判定一次，挂载系统不再重复掷骰
+            if (target.level().random.nextDouble() < mount.probability
+                    && mountSystem.tryApplyMount(target,
+                    mount.elementId,
+                    mount.amount,
+                    mount.duration,
+                    1.0, "refresh")) {
+                mountedElements.add(mount.elementId);
                 LOGGER.debug("Applied mount effect: {} to {}", mount.elementId, target);
             }
         }
 
         for (com.element_endow.api.IElementMountSystem.AdvancedMountData advancedMount : result.advancedMountApplications) {
-            mountSystem.applyAdvancedMount(target, advancedMount);
-            LOGGER.debug("Applied advanced mount effect: {} to {}", advancedMount.elementId, target);
+            if (mountSystem.tryApplyAdvancedMount(target, advancedMount)) {
+                mountedElements.add(advancedMount.elementId);
+                LOGGER.debug("Applied advanced mount effect: {} to {}", advancedMount.elementId, target);
+            }
+        }
+        return mountedElements;
+    }
+
+    /**
+     * 新挂载的元素与目标已有元素的连锁反应，结果叠加到本次伤害
+     */
+    private static void applyCascade(LivingHurtEvent event, LivingEntity attacker, LivingEntity target,
+                                     Set<String> mountedElements) {
+        if (mountedElements.isEmpty()
+                || !(ElementSystemAPI.getElementSystem().getReactionSystem() instanceof ElementReactionSystem reactionSystem)) {
+            return;
+        }
+
+        ReactionResult cascadeResult = reactionSystem.processCascade(attacker, target, mountedElements);
+        if (cascadeResult != null) {
+            applyReactionResult(event, cascadeResult, attacker, target);
+            applyConsumption(attacker, target, cascadeResult);
+            applyDotEffects(attacker, target, cascadeResult.targetDots);
         }
     }
 }
\ No newline at end of file
@@ -1,8 +1,12 @@
 package com.element_endow.event;
 
 import com.element_endow.api.ElementSystemAPI;
+import com.element_endow.core.ElementCombinationSystem;
 import net.minecraft.world.entity.LivingEntity;
+import net.minecraftforge.event.TickEvent;
+import net.minecraftforge.event.entity.EntityLeaveLevelEvent;
 import net.minecraftforge.event.entity.living.LivingEvent;
+import net.minecraftforge.event.server.ServerStoppedEvent;
 import net.minecraftforge.eventbus.api.SubscribeEvent;
 import net.minecraftforge.fml.common.Mod;
 import org.apache.logging.log4j.LogManager;
@@ -16,23 +20,20 @@ public class ElementCombinationHandler {
     public static void onLivingUpdate(LivingEvent.LivingTickEvent event) {
         LivingEntity entity = event.getEntity();
 
-        //检查组合的频率，每40tick检查一次（2秒）
-        if (entity.tickCount % 40 == 0) {
-            try {
-                var combinationSystem = ElementSystemAPI.getElementSystem().getCombinationSystem();
-                combinationSystem.checkAndApplyCombinations(entity);
-            } catch (Exception e) {
-                LOGGER.error("Error checking entity combinations", e);
-            }
-        }
-
-        //检查条件绑定的频率，每100tick检查一次（5秒）
-        if (entity.tickCount % 100 == 0) {
-            try {
-                EntitySpawnHandler.checkConditionalBindings();
-            } catch (Exception e) {
-                LOGGER.error("Error checking conditional bindings", e);
+        //检查组合的频率，由已加载组合的轮询间隔决定（默认40tick）
+        //服务端只入队，由服务端tick按预算统一处理
+        try {
+            var combinationSystem = ElementSystemAPI.getElementSystem().getCombinationSystem();
+            if (entity.tickCount % combinationSystem.getPollInterval() == 0) {
+                if (entity.level().isClientSide) {
+                    combinationSystem.checkAndApplyCombinations(entity);
+                } else {
+                    EntitySpawnHandler.ensureBindingsApplied(entity);
+                    combinationSystem.scheduleCombinationCheck(entity);
+                }
             }
+        } catch (Exception e) {
+            LOGGER.error("Error checking entity combinations", e);
         }
 
         try {
@@ -42,4 +43,39 @@ public class ElementCombinationHandler {
             LOGGER.error("Error updating mount system", e);
         }
     }
+
+    @SubscribeEvent
+    public static void onServerTick(TickEvent.ServerTickEvent event) {
+        try {
+            var combinationSystem = ElementSystemAPI.getElementSystem().getCombinationSystem();
+            if (event.phase == TickEvent.Phase.START) {
+                combinationSystem.applyCompletedChecks();
+            } else {
+                combinationSystem.processScheduledChecks();
+            }
+        } catch (Exception e) {
+            LOGGER.error("Error processing scheduled combination checks", e);
+        }
+    }
+
+    /**
+     * 实体离开世界（卸载、切换维度或死亡）时移除排队的重检与组合缓存
+     */
+    @SubscribeEvent
+    public static void onEntityLeaveLevel(EntityLeaveLevelEvent event) {
+        if (event.getLevel().isClientSide() || !(event.getEntity() instanceof LivingEntity entity)) {
+            return;
+        }
+        if (ElementSystemAPI.getElementSystem().getCombinationSystem() instanceof ElementCombinationSystem combinationSystem) {
+            combinationSystem.onEntityRemoved(entity);
+        }
+    }
+
+    @SubscribeEvent
+    public static void onServerStopped(ServerStoppedEvent event) {
+        //集成服务端会在同一进程内重启，线程池不能跨越服务端生命周期
+        if (ElementSystemAPI.getElementSystem().getCombinationSystem() instanceof ElementCombinationSystem combinationSystem) {
+            combinationSystem.shutdownParallelEvaluator();
+        }
+    }
 }
\ No newline at end of file
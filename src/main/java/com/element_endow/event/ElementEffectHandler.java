@@ -0,0 +1,40 @@
+package com.element_endow.event;
+
+import com.element_endow.api.ElementSystemAPI;
+import com.element_endow.core.ElementSystemImpl;
+import net.minecraftforge.event.TickEvent;
+import net.minecraftforge.event.server.ServerStoppedEvent;
+import net.minecraftforge.eventbus.api.SubscribeEvent;
+import net.minecraftforge.fml.common.Mod;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * 在tick结束时统一应用本tick登记的状态效果（仅服务端）
+ */
+@Mod.EventBusSubscriber(modid = "element_endow", bus = Mod.EventBusSubscriber.Bus.FORGE)
+public class ElementEffectHandler {
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    @SubscribeEvent
+    public static void onServerTick(TickEvent.ServerTickEvent event) {
+        if (event.phase != TickEvent.Phase.END) {
+            return;
+        }
+
+        try {
+            if (ElementSystemAPI.getElementSystem() instanceof ElementSystemImpl elementSystem) {
+                elementSystem.getEffectSink().flush();
+            }
+        } catch (Exception e) {
+            LOGGER.error("Error flushing queued effects", e);
+        }
+    }
+
+    @SubscribeEvent
+    public static void onServerStopped(ServerStoppedEvent event) {
+        if (ElementSystemAPI.getElementSystem() instanceof ElementSystemImpl elementSystem) {
+            elementSystem.getEffectSink().clear();
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,81 @@
+package com.element_endow.event;
+
+import com.element_endow.api.ElementSystemAPI;
+import com.element_endow.core.ElementSystemImpl;
+import com.element_endow.core.compiled.ElementMask;
+import com.element_endow.core.spatial.ElementSpatialIndex;
+import net.minecraft.world.entity.LivingEntity;
+import net.minecraft.world.level.Level;
+import net.minecraftforge.event.entity.EntityLeaveLevelEvent;
+import net.minecraftforge.event.entity.living.LivingEvent;
+import net.minecraftforge.event.level.LevelEvent;
+import net.minecraftforge.eventbus.api.SubscribeEvent;
+import net.minecraftforge.fml.common.Mod;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * 维护持有元素的实体的空间索引（仅服务端）
+ */
+@Mod.EventBusSubscriber(modid = "element_endow", bus = Mod.EventBusSubscriber.Bus.FORGE)
+public class ElementSpatialHandler {
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    //元素掩码刷新间隔（tick），按实体ID错开
+    private static final int MASK_REFRESH_INTERVAL = 20;
+
+    @SubscribeEvent
+    public static void onLivingUpdate(LivingEvent.LivingTickEvent event) {
+        LivingEntity entity = event.getEntity();
+        if (entity.level().isClientSide) {
+            return;
+        }
+
+        try {
+            ElementSpatialIndex spatialIndex = getSpatialIndex();
+            if (spatialIndex == null) {
+                return;
+            }
+
+            //每tick只检查是否跨分段，元素掩码定期刷新
+            if ((entity.tickCount + entity.getId()) % MASK_REFRESH_INTERVAL == 0) {
+                var elementSystem = ElementSystemAPI.getElementSystem();
+                spatialIndex.update(entity, ElementMask.of(elementSystem.getElementVector(entity)));
+            } else {
+                spatialIndex.move(entity);
+            }
+        } catch (Exception e) {
+            LOGGER.error("Error updating element spatial index", e);
+        }
+    }
+
+    @SubscribeEvent
+    public static void onEntityLeaveLevel(EntityLeaveLevelEvent event) {
+        if (event.getLevel().isClientSide || !(event.getEntity() instanceof LivingEntity)) {
+            return;
+        }
+
+        ElementSpatialIndex spatialIndex = getSpatialIndex();
+        if (spatialIndex != null) {
+            spatialIndex.remove(event.getEntity());
+        }
+    }
+
+    @SubscribeEvent
+    public static void onLevelUnload(LevelEvent.Unload event) {
+        if (event.getLevel().isClientSide() || !(event.getLevel() instanceof Level level)) {
+            return;
+        }
+
+        ElementSpatialIndex spatialIndex = getSpatialIndex();
+        if (spatialIndex != null) {
+            spatialIndex.clearLevel(level.dimension());
+        }
+    }
+
+    private static ElementSpatialIndex getSpatialIndex() {
+        return ElementSystemAPI.getElementSystem() instanceof ElementSystemImpl impl
+                ? impl.getSpatialIndex()
+                : null;
+    }
+}
\ No newline at end of file
@@ -1,29 +1,43 @@
 package com.element_endow.event;
 
 import com.element_endow.api.ElementSystemAPI;
+import com.element_endow.core.ElementSystemImpl;
+import com.element_endow.core.compiled.EntityBindingTable;
 import com.element_endow.data.ElementDataManager;
 import com.element_endow.data.entity_bindings.EntityElementBindingLoader;
 import com.element_endow.util.ConditionChecker;
 import net.minecraft.world.entity.Entity;
 import net.minecraft.world.entity.LivingEntity;
+import net.minecraft.world.level.Level;
+import net.minecraftforge.event.TickEvent;
 import net.minecraftforge.event.entity.EntityJoinLevelEvent;
+import net.minecraftforge.event.entity.EntityLeaveLevelEvent;
+import net.minecraftforge.event.server.ServerStoppedEvent;
 import net.minecraftforge.eventbus.api.SubscribeEvent;
 import net.minecraftforge.fml.common.Mod;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-import java.util.Map;
-import java.util.WeakHashMap;
+import java.lang.ref.WeakReference;
+import java.util.*;
 
 /**
  * 处理生物生成时的元素绑定
+ * 加入世界时只登记，绑定在实体首次受击、攻击或组合检查时应用，其余由服务端tick按预算分批应用
  */
 @Mod.EventBusSubscriber(modid = "element_endow", bus = Mod.EventBusSubscriber.Bus.FORGE)
 public class EntitySpawnHandler {
     private static final Logger LOGGER = LogManager.getLogger();
 
-    //记录已经处理过的实体UUID及其绑定条件
-    private static final Map<LivingEntity, EntityElementBindingLoader.EntityElementBinding> conditionalBindings = new WeakHashMap<>();
+    //条件绑定的重检间隔（tick）
+    private static final int CONDITION_CHECK_INTERVAL = 100;
+
+    //按世界与绑定分组的条件绑定实体
+    private static final Map<Level, Map<EntityElementBindingLoader.EntityElementBinding, ConditionalGroup>> conditionalBindings = new WeakHashMap<>();
+    //已登记、尚未应用绑定的实体，队列保持加入顺序，集合用于判断是否仍待处理
+    //队列只持有弱引用，不阻止已卸载的实体被回收
+    private static final ArrayDeque<WeakReference<LivingEntity>> pendingQueue = new ArrayDeque<>();
+    private static final Set<LivingEntity> pendingEntities = Collections.newSetFromMap(new WeakHashMap<>());
 
     @SubscribeEvent
     public static void onEntityJoinLevel(EntityJoinLevelEvent event) {
@@ -41,42 +55,168 @@ public class EntitySpawnHandler {
             return;
         }
 
-        applyEntityElementBindings(livingEntity);
+        try {
+            //没有绑定的实体类型不登记
+            if (ElementDataManager.getEntityBindingLoader().getBindingTable().get(livingEntity.getType()) == null) {
+                return;
+            }
+
+            if (getBindingBudget() <= 0) {
+                applyEntityElementBindings(livingEntity);
+            } else if (pendingEntities.add(livingEntity)) {
+                pendingQueue.add(new WeakReference<>(livingEntity));
+            }
+        } catch (Exception e) {
+            LOGGER.error("Failed to record element bindings for entity: {}", livingEntity, e);
+        }
     }
 
     /**
-     * 定期检查条件绑定（在ElementCombinationHandler中调用）
+     * 按预算应用待处理的绑定
      */
-    public static void checkConditionalBindings() {
-        if (conditionalBindings.isEmpty()) {
+    @SubscribeEvent
+    public static void onServerTick(TickEvent.ServerTickEvent event) {
+        if (event.phase != TickEvent.Phase.START || pendingQueue.isEmpty()) {
             return;
         }
 
-        //每5秒检查一次条件绑定
-        long currentTime = System.currentTimeMillis();
-        if (currentTime % 5000 > 100) {
+        int budget = Math.max(1, getBindingBudget());
+        int applied = 0;
+        while (applied < budget && !pendingQueue.isEmpty()) {
+            LivingEntity entity = pendingQueue.poll().get();
+            //已被回收、已在交互时应用，或已从世界移除；移除的实体没有写入标记，重新加载时会再次登记
+            if (entity == null || !pendingEntities.remove(entity) || entity.isRemoved()) {
+                continue;
+            }
+            applyEntityElementBindings(entity);
+            applied++;
+        }
+    }
+
+    /**
+     * 实体离开世界（卸载、切换维度或死亡）时不再等待应用绑定，也不再重检条件绑定
+     */
+    @SubscribeEvent
+    public static void onEntityLeaveLevel(EntityLeaveLevelEvent event) {
+        if (event.getLevel().isClientSide() || !(event.getEntity() instanceof LivingEntity entity)) {
             return;
         }
+        pendingEntities.remove(entity);
+        untrackConditionalBinding(entity);
+    }
 
-        conditionalBindings.entrySet().removeIf(entry -> {
-            LivingEntity entity = entry.getKey();
-            EntityElementBindingLoader.EntityElementBinding binding = entry.getValue();
+    @SubscribeEvent
+    public static void onServerStopped(ServerStoppedEvent event) {
+        pendingQueue.clear();
+        pendingEntities.clear();
+        conditionalBindings.clear();
+    }
 
-            if (entity == null || !entity.isAlive()) {
-                return true; //移除死亡或无效的实体
-            }
+    /**
+     * 实体发生与元素相关的交互前调用，绑定仍待处理时立即应用
+     */
+    public static void ensureBindingsApplied(LivingEntity entity) {
+        if (!pendingEntities.isEmpty() && !entity.level().isClientSide && pendingEntities.remove(entity)) {
+            applyEntityElementBindings(entity);
+        }
+    }
 
-            //检查条件是否仍然满足
-            if (binding.hasConditions()) {
-                boolean conditionsMet = ConditionChecker.checkConditions(binding.conditions, entity, entity.level());
-                if (!conditionsMet) {
+    /**
+     * 待处理的绑定数
+     */
+    public static int getPendingBindingCount() {
+        return pendingEntities.size();
+    }
+
+    private static int getBindingBudget() {
+        return ElementSystemAPI.getElementSystem() instanceof ElementSystemImpl elementSystem
+                ? elementSystem.getConfig().getBindingBudgetEntities()
+                : 0;
+    }
+
+    /**
+     * 每个世界按固定间隔统一重检一次条件绑定
+     */
+    @SubscribeEvent
+    public static void onLevelTick(TickEvent.LevelTickEvent event) {
+        if (event.phase != TickEvent.Phase.END || event.level.isClientSide
+                || event.level.getGameTime() % CONDITION_CHECK_INTERVAL != 0) {
+            return;
+        }
+
+        try {
+            checkConditionalBindings(event.level);
+        } catch (Exception e) {
+            LOGGER.error("Error checking conditional bindings", e);
+        }
+    }
+
+    /**
+     * 重检一个世界内的条件绑定
+     * 世界状态条件每组只求值一次，不满足时整组移除；其余条件逐个实体求值，移除统一在遍历后执行
+     */
+    public static void checkConditionalBindings(Level level) {
+        Map<EntityElementBindingLoader.EntityElementBinding, ConditionalGroup> groups = conditionalBindings.get(level);
+        if (groups == null || groups.isEmpty()) {
+            return;
+        }
+
+        List<LivingEntity> removedEntities = new ArrayList<>();
+        List<EntityElementBindingLoader.EntityElementBinding> removedBindings = new ArrayList<>();
+        Iterator<ConditionalGroup> iterator = groups.values().iterator();
+        while (iterator.hasNext()) {
+            ConditionalGroup group = iterator.next();
+            boolean worldConditionsMet = ConditionChecker.checkWorldConditions(group.worldConditions, level);
+
+            Iterator<LivingEntity> entities = group.entities.iterator();
+            while (entities.hasNext()) {
+                LivingEntity entity = entities.next();
+                if (!entity.isAlive()) {
+                    entities.remove();//移除死亡或无效的实体
+                } else if (!worldConditionsMet
+                        || !ConditionChecker.checkConditions(group.entityConditions, entity, level)) {
                     //条件不再满足，则移除元素绑定
-                    removeElementBinding(entity, binding);
-                    return true;
+                    entities.remove();
+                    removedEntities.add(entity);
+                    removedBindings.add(group.binding);
                 }
             }
-            return false;
-        });
+
+            if (group.entities.isEmpty()) {
+                iterator.remove();
+            }
+        }
+
+        for (int i = 0; i < removedEntities.size(); i++) {
+            removeElementBinding(removedEntities.get(i), removedBindings.get(i));
+        }
+    }
+
+    /**
+     * 条件绑定总数
+     */
+    public static int getConditionalBindingCount() {
+        int count = 0;
+        for (Map<EntityElementBindingLoader.EntityElementBinding, ConditionalGroup> groups : conditionalBindings.values()) {
+            for (ConditionalGroup group : groups.values()) {
+                count += group.entities.size();
+            }
+        }
+        return count;
+    }
+
+    //记录条件绑定，用于后续检查
+    private static void trackConditionalBinding(LivingEntity entity, EntityElementBindingLoader.EntityElementBinding binding) {
+        conditionalBindings.computeIfAbsent(entity.level(), level -> new IdentityHashMap<>())
+                .computeIfAbsent(binding, ConditionalGroup::new)
+                .entities.add(entity);
+    }
+
+    private static void untrackConditionalBinding(LivingEntity entity) {
+        Map<EntityElementBindingLoader.EntityElementBinding, ConditionalGroup> groups = conditionalBindings.get(entity.level());
+        if (groups != null) {
+            groups.values().removeIf(group -> group.entities.remove(entity) && group.entities.isEmpty());
+        }
     }
 
     private static boolean isNaturalSpawn(LivingEntity entity) {
@@ -91,42 +231,27 @@ public class EntitySpawnHandler {
             var elementSystem = ElementSystemAPI.getElementSystem();
             var bindingLoader = ElementDataManager.getEntityBindingLoader();
 
-            EntityElementBindingLoader.EntityElementBinding binding = bindingLoader.getBindingForEntity(entity.getType());
-
-            if (binding != null) {
-                boolean shouldApply = true;
+            //按实体类型数字ID直接读取合并后的绑定
+            EntityBindingTable.CompiledBinding binding = bindingLoader.getBindingTable().get(entity.getType());
+            if (binding == null) {
+                return;
+            }
 
-                //检查条件
-                if (binding.hasConditions()) {
-                    shouldApply = ConditionChecker.checkConditions(binding.conditions, entity, entity.level());
-                    if (shouldApply) {
-                        //记录条件绑定，用于后续检查
-                        conditionalBindings.put(entity, binding);
-                    } else {
-                        return;
-                    }
+            //检查条件
+            if (binding.hasConditions()) {
+                if (!ConditionChecker.checkConditions(binding.source.conditions, entity, entity.level())) {
+                    return;
                 }
+                trackConditionalBinding(entity, binding.source);
+            }
 
-                if (shouldApply) {
-                  //用绑定已注册的元素
-                    int appliedCount = 0;
-                    for (Map.Entry<String, Double> elementEntry : binding.elements.entrySet()) {
-                        String elementId = elementEntry.getKey();
-                        double value = elementEntry.getValue();
-                        //格式检查
-                        if (elementSystem.isElementRegistered(elementId)) {
-                            elementSystem.setElementValue(entity, elementId, value);
-                            appliedCount++;
-                        } else {
-                            LOGGER.warn("Element {} is not registered, skipping for entity {}", elementId, entity.getName().getString());
-                        }
-                    }
-
-                    //标记为已处理
-                    entity.getPersistentData().putLong("ElementEndowLastApplied", System.currentTimeMillis());
-                }
+            //未注册的元素已在编译绑定表时剔除
+            for (int i = 0; i < binding.ordinals.length; i++) {
+                elementSystem.setElementValue(entity, elementSystem.getElementByOrdinal(binding.ordinals[i]), binding.values[i]);
             }
 
+            //标记为已处理
+            entity.getPersistentData().putLong("ElementEndowLastApplied", System.currentTimeMillis());
         } catch (Exception e) {
             LOGGER.error("Failed to apply element bindings for entity: {}", entity, e);
         }
@@ -154,6 +279,7 @@ public class EntitySpawnHandler {
      * 手动为实体应用元素绑定
      */
     public static void applyBindingsManually(LivingEntity entity) {
+        pendingEntities.remove(entity);
         applyEntityElementBindings(entity);
     }
 
@@ -161,7 +287,24 @@ public class EntitySpawnHandler {
      * 清除实体的处理记录（用于重新应用绑定）
      */
     public static void clearProcessedRecord(LivingEntity entity) {
-        conditionalBindings.remove(entity);
+        untrackConditionalBinding(entity);
+        pendingEntities.remove(entity);
         entity.getPersistentData().remove("ElementEndowLastApplied");
     }
+
+    /**
+     * 共享同一绑定的实体，条件在创建分组时按世界状态与实体状态拆分
+     */
+    private static class ConditionalGroup {
+        final EntityElementBindingLoader.EntityElementBinding binding;
+        final Map<String, Object> worldConditions;
+        final Map<String, Object> entityConditions;
+        final Set<LivingEntity> entities = Collections.newSetFromMap(new WeakHashMap<>());
+
+        ConditionalGroup(EntityElementBindingLoader.EntityElementBinding binding) {
+            this.binding = binding;
+            this.worldConditions = ConditionChecker.partitionConditions(binding.conditions, true);
+            this.entityConditions = ConditionChecker.partitionConditions(binding.conditions, false);
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,46 @@
+package com.element_endow.event;
+
+import com.element_endow.api.ElementSystemAPI;
+import com.element_endow.core.ElementCombinationSystem;
+import com.element_endow.core.ElementSystemImpl;
+import com.element_endow.core.snapshot.ProjectileElementSnapshot;
+import net.minecraft.world.entity.LivingEntity;
+import net.minecraft.world.entity.projectile.Projectile;
+import net.minecraftforge.event.entity.EntityJoinLevelEvent;
+import net.minecraftforge.eventbus.api.SubscribeEvent;
+import net.minecraftforge.fml.common.Mod;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * 投射物发射时记录发射者的元素快照（仅服务端）
+ */
+@Mod.EventBusSubscriber(modid = "element_endow", bus = Mod.EventBusSubscriber.Bus.FORGE)
+public class ProjectileSnapshotHandler {
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    @SubscribeEvent
+    public static void onEntityJoinLevel(EntityJoinLevelEvent event) {
+        //从存档加载的投射物已在发射时记录过
+        if (event.getLevel().isClientSide || event.loadedFromDisk()
+                || !(event.getEntity() instanceof Projectile projectile)
+                || !(projectile.getOwner() instanceof LivingEntity owner)) {
+            return;
+        }
+
+        try {
+            if (ProjectileElementSnapshot.isCaptured(projectile)
+                    || !(ElementSystemAPI.getElementSystem() instanceof ElementSystemImpl elementSystem)
+                    || !(elementSystem.getCombinationSystem() instanceof ElementCombinationSystem combinationSystem)) {
+                return;
+            }
+
+            //发射是发射者的首次交互，快照前应用仍待处理的生成绑定
+            EntitySpawnHandler.ensureBindingsApplied(owner);
+            ProjectileElementSnapshot.capture(projectile, owner, elementSystem,
+                    combinationSystem.getCombinationIndex(), combinationSystem.getActiveCombinations(owner));
+        } catch (Exception e) {
+            LOGGER.error("Error capturing projectile element snapshot", e);
+        }
+    }
+}
\ No newline at end of file
@@ -1,6 +1,7 @@
 package com.element_endow.util;
 
 import com.element_endow.api.ElementSystemAPI;
+import com.element_endow.core.snapshot.EntitySnapshot;
 import net.minecraft.network.chat.Component;
 import net.minecraft.network.chat.MutableComponent;
 import net.minecraft.world.entity.LivingEntity;
@@ -15,11 +16,16 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.function.ToDoubleFunction;
 
 public class ConditionChecker {
     private static final Logger LOGGER = LogManager.getLogger();
+    //只依赖世界状态的条件键
+    private static final Set<String> WORLD_CONDITION_KEYS = Set.of("dimension", "weather", "time", "moon_phase", "difficulty");
 
     public static boolean checkConditions(Map<String, Object> conditions,
                                           LivingEntity entity,
@@ -38,43 +44,45 @@ public class ConditionChecker {
             }
 
             if (conditions.containsKey("dimension")) {
-                if (!checkDimensionCondition(conditions.get("dimension"), level)) {
+                if (!checkDimensionCondition(conditions.get("dimension"), level.dimension().location())) {
                     return false;
                 }
             }
 
             if (conditions.containsKey("weather")) {
-                if (!checkWeatherCondition(conditions.get("weather"), level)) {
+                if (!checkWeatherCondition(conditions.get("weather"), level.isRaining(), level.isThundering())) {
                     return false;
                 }
             }
 
             if (conditions.containsKey("time")) {
-                if (!checkTimeCondition(conditions.get("time"), level)) {
+                if (!checkTimeCondition(conditions.get("time"), level.getDayTime())) {
                     return false;
                 }
             }
 
             if (conditions.containsKey("moon_phase")) {
-                if (!checkMoonPhaseCondition(conditions.get("moon_phase"), level)) {
+                if (!checkMoonPhaseCondition(conditions.get("moon_phase"), level.getDayTime())) {
                     return false;
                 }
             }
 
             if (conditions.containsKey("elements")) {
-                if (!checkElementConditions((List<?>) conditions.get("elements"), entity)) {
+                var elementSystem = ElementSystemAPI.getElementSystem();
+                if (!checkElementConditions((List<?>) conditions.get("elements"),
+                        elementId -> elementSystem.getElementValue(entity, elementId))) {
                     return false;
                 }
             }
 
             if (conditions.containsKey("health")) {
-                if (!checkHealthCondition((Map<?, ?>) conditions.get("health"), entity)) {
+                if (!checkHealthCondition((Map<?, ?>) conditions.get("health"), entity.getHealth(), entity.getMaxHealth())) {
                     return false;
                 }
             }
 
             if (conditions.containsKey("difficulty")) {
-                if (!checkDifficultyCondition(conditions.get("difficulty"), level)) {
+                if (!checkDifficultyCondition(conditions.get("difficulty"), level.getDifficulty())) {
                     return false;
                 }
             }
@@ -87,26 +95,145 @@ public class ConditionChecker {
         }
     }
 
+    /**
+     * 基于实体快照检查条件，不访问实体与世界，可在任意线程调用
+     */
+    public static boolean checkConditions(Map<String, Object> conditions, EntitySnapshot snapshot) {
+        if (conditions == null || conditions.isEmpty()) {
+            return true;
+        }
+
+        try {
+            if (conditions.containsKey("biome")) {
+                if (!matchesBiome(conditions.get("biome"), snapshot.biome)) {
+                    return false;
+                }
+            }
+
+            if (conditions.containsKey("dimension")) {
+                if (!checkDimensionCondition(conditions.get("dimension"), snapshot.dimension)) {
+                    return false;
+                }
+            }
+
+            if (conditions.containsKey("weather")) {
+                if (!checkWeatherCondition(conditions.get("weather"), snapshot.raining, snapshot.thundering)) {
+                    return false;
+                }
+            }
+
+            if (conditions.containsKey("time")) {
+                if (!checkTimeCondition(conditions.get("time"), snapshot.dayTime)) {
+                    return false;
+                }
+            }
+
+            if (conditions.containsKey("moon_phase")) {
+                if (!checkMoonPhaseCondition(conditions.get("moon_phase"), snapshot.dayTime)) {
+                    return false;
+                }
+            }
+
+            if (conditions.containsKey("elements")) {
+                var elementSystem = ElementSystemAPI.getElementSystem();
+                if (!checkElementConditions((List<?>) conditions.get("elements"),
+                        elementId -> snapshot.getElementValue(elementSystem.getElementOrdinal(elementId)))) {
+                    return false;
+                }
+            }
+
+            if (conditions.containsKey("health")) {
+                if (!checkHealthCondition((Map<?, ?>) conditions.get("health"), snapshot.health, snapshot.maxHealth)) {
+                    return false;
+                }
+            }
+
+            if (conditions.containsKey("difficulty")) {
+                if (!checkDifficultyCondition(conditions.get("difficulty"), snapshot.difficulty)) {
+                    return false;
+                }
+            }
+
+            return true;
+
+        } catch (Exception e) {
+            LOGGER.error("Error checking conditions for snapshot of {}", snapshot.entity, e);
+            return false;
+        }
+    }
+
+    /**
+     * 拆分条件
+     * @param worldLevel 为true时返回只依赖世界状态的条件（同一世界内对所有实体结果相同），否则返回依赖实体的条件
+     */
+    public static Map<String, Object> partitionConditions(Map<String, Object> conditions, boolean worldLevel) {
+        Map<String, Object> result = new HashMap<>();
+        if (conditions != null) {
+            for (Map.Entry<String, Object> entry : conditions.entrySet()) {
+                if (WORLD_CONDITION_KEYS.contains(entry.getKey()) == worldLevel) {
+                    result.put(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 只检查世界状态条件，不访问实体
+     */
+    public static boolean checkWorldConditions(Map<String, Object> conditions, Level level) {
+        if (conditions == null || conditions.isEmpty()) {
+            return true;
+        }
+
+        try {
+            if (conditions.containsKey("dimension")
+                    && !checkDimensionCondition(conditions.get("dimension"), level.dimension().location())) {
+                return false;
+            }
+            if (conditions.containsKey("weather")
+                    && !checkWeatherCondition(conditions.get("weather"), level.isRaining(), level.isThundering())) {
+                return false;
+            }
+            if (conditions.containsKey("time")
+                    && !checkTimeCondition(conditions.get("time"), level.getDayTime())) {
+                return false;
+            }
+            if (conditions.containsKey("moon_phase")
+                    && !checkMoonPhaseCondition(conditions.get("moon_phase"), level.getDayTime())) {
+                return false;
+            }
+            return !conditions.containsKey("difficulty")
+                    || checkDifficultyCondition(conditions.get("difficulty"), level.getDifficulty());
+        } catch (Exception e) {
+            LOGGER.error("Error checking world conditions in {}", level.dimension().location(), e);
+            return false;
+        }
+    }
+
     private static boolean checkBiomeCondition(Object biomeCondition, Level level, BlockPos pos) {
+        if (!(biomeCondition instanceof String) && !(biomeCondition instanceof List)) {
+            return true;
+        }
+        Biome currentBiome = level.getBiome(pos).value();
+        ResourceLocation currentBiomeId = level.registryAccess().registryOrThrow(net.minecraft.core.registries.Registries.BIOME).getKey(currentBiome);
+        return matchesBiome(biomeCondition, currentBiomeId);
+    }
+
+    private static boolean matchesBiome(Object biomeCondition, ResourceLocation currentBiomeId) {
         if (biomeCondition instanceof String) {
             String requiredBiome = (String) biomeCondition;
-            Biome currentBiome = level.getBiome(pos).value();
-            ResourceLocation currentBiomeId = level.registryAccess().registryOrThrow(net.minecraft.core.registries.Registries.BIOME).getKey(currentBiome);
             return currentBiomeId != null && currentBiomeId.toString().equals(requiredBiome);
 
         } else if (biomeCondition instanceof List) {
             List<String> allowedBiomes = (List<String>) biomeCondition;
-            Biome currentBiome = level.getBiome(pos).value();
-            ResourceLocation currentBiomeId = level.registryAccess().registryOrThrow(net.minecraft.core.registries.Registries.BIOME).getKey(currentBiome);
             return currentBiomeId != null && allowedBiomes.contains(currentBiomeId.toString());
         }
 
         return true;
     }
 
-    private static boolean checkDimensionCondition(Object dimensionCondition, Level level) {
-        ResourceLocation dimensionId = level.dimension().location();
-
+    private static boolean checkDimensionCondition(Object dimensionCondition, ResourceLocation dimensionId) {
         if (dimensionCondition instanceof String) {
             return dimensionId.toString().equals(dimensionCondition);
 
@@ -119,13 +246,13 @@ public class ConditionChecker {
     }
 
 
-    private static boolean checkWeatherCondition(Object weatherCondition, Level level) {
+    private static boolean checkWeatherCondition(Object weatherCondition, boolean raining, boolean thundering) {
         if (weatherCondition instanceof String) {
             String weather = (String) weatherCondition;
             switch (weather.toLowerCase()) {
-                case "clear": return !level.isRaining() && !level.isThundering();
-                case "rain": return level.isRaining() && !level.isThundering();
-                case "thunder": return level.isThundering();
+                case "clear": return !raining && !thundering;
+                case "rain": return raining && !thundering;
+                case "thunder": return thundering;
                 default: return true;
             }
 
@@ -133,19 +260,19 @@ public class ConditionChecker {
             Map<?, ?> weatherMap = (Map<?, ?>) weatherCondition;
             if (weatherMap.containsKey("raining")) {
                 boolean shouldRain = (Boolean) weatherMap.get("raining");
-                if (level.isRaining() != shouldRain) return false;
+                if (raining != shouldRain) return false;
             }
             if (weatherMap.containsKey("thundering")) {
                 boolean shouldThunder = (Boolean) weatherMap.get("thundering");
-                if (level.isThundering() != shouldThunder) return false;
+                if (thundering != shouldThunder) return false;
             }
         }
 
         return true;
     }
 
-    private static boolean checkTimeCondition(Object timeCondition, Level level) {
-        long dayTime = level.getDayTime() % 24000;
+    private static boolean checkTimeCondition(Object timeCondition, long levelDayTime) {
+        long dayTime = levelDayTime % 24000;
 
         if (timeCondition instanceof String) {
             String timeOfDay = (String) timeCondition;
@@ -172,8 +299,8 @@ public class ConditionChecker {
         return true;
     }
 
-    private static boolean checkMoonPhaseCondition(Object moonCondition, Level level) {
-        int moonPhase = (int) (level.getDayTime() / 24000 % 8);
+    private static boolean checkMoonPhaseCondition(Object moonCondition, long levelDayTime) {
+        int moonPhase = (int) (levelDayTime / 24000 % 8);
 
         if (moonCondition instanceof Number) {
             int requiredPhase = ((Number) moonCondition).intValue();
@@ -196,7 +323,7 @@ public class ConditionChecker {
         return true;
     }
 
-    private static boolean checkElementConditions(List<?> elementConditions, LivingEntity entity) {
+    private static boolean checkElementConditions(List<?> elementConditions, ToDoubleFunction<String> valueLookup) {
         for (Object conditionObj : elementConditions) {
             if (conditionObj instanceof Map) {
                 Map<?, ?> condition = (Map<?, ?>) conditionObj;
@@ -204,7 +331,8 @@ public class ConditionChecker {
                 boolean required = !condition.containsKey("required") || (Boolean) condition.get("required");
 
                 if (elementId != null) {
-                    boolean hasElement = ElementSystemAPI.getElementSystem().hasElement(entity, elementId);
+                    double currentValue = valueLookup.applyAsDouble(elementId);
+                    boolean hasElement = currentValue > 0;
 
                     if (required && !hasElement) {
                         return false;
@@ -212,13 +340,11 @@ public class ConditionChecker {
 
                     if (condition.containsKey("min_value")) {
                         double minValue = ((Number) condition.get("min_value")).doubleValue();
-                        double currentValue = ElementSystemAPI.getElementSystem().getElementValue(entity, elementId);
                         if (currentValue < minValue) return false;
                     }
 
                     if (condition.containsKey("max_value")) {
                         double maxValue = ((Number) condition.get("max_value")).doubleValue();
-                        double currentValue = ElementSystemAPI.getElementSystem().getElementValue(entity, elementId);
                         if (currentValue > maxValue) return false;
                     }
                 }
@@ -227,10 +353,7 @@ public class ConditionChecker {
         return true;
     }
 
-    private static boolean checkHealthCondition(Map<?, ?> healthCondition, LivingEntity entity) {
-        float health = entity.getHealth();
-        float maxHealth = entity.getMaxHealth();
-
+    private static boolean checkHealthCondition(Map<?, ?> healthCondition, float health, float maxHealth) {
         if (healthCondition.containsKey("min")) {
             float minHealth = ((Number) healthCondition.get("min")).floatValue();
             if (health < minHealth) return false;
@@ -250,9 +373,7 @@ public class ConditionChecker {
         return true;
     }
 
-    private static boolean checkDifficultyCondition(Object difficultyCondition, Level level) {
-        net.minecraft.world.Difficulty difficulty = level.getDifficulty();
-
+    private static boolean checkDifficultyCondition(Object difficultyCondition, net.minecraft.world.Difficulty difficulty) {
         if (difficultyCondition instanceof String) {
             String requiredDifficulty = (String) difficultyCondition;
             return difficulty.name().equalsIgnoreCase(requiredDifficulty);
@@ -11,6 +11,9 @@ import java.util.*;
 public class MountStackManager {
     private static final Logger LOGGER = LogManager.getLogger();
 
+    /**
+     * 按堆叠方式加入挂载，被堆叠规则拒绝时返回null
+     */
     public static IElementMountSystem.MountData applyStackedMount(
             LivingEntity entity,
             String elementId,
@@ -49,8 +52,10 @@ public class MountStackManager {
                 if (mounts.isEmpty() || amount > mounts.get(0).amount) {
                     mounts.clear();
                     mounts.add(newMount);
+                    break;
                 }
-                break;
+                //已有更高的挂载，保持不变
+                return null;
 
             default:
                 mounts.clear();
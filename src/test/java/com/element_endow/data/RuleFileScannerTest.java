@@ -0,0 +1,227 @@
+package com.element_endow.data;
+
+import com.google.common.hash.Hashing;
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.server.packs.PackResources;
+import net.minecraft.server.packs.resources.IoSupplier;
+import net.minecraft.server.packs.resources.Resource;
+import net.minecraft.server.packs.resources.ResourceManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 规则文件扫描器测试：每个文件只解析一次，重载与缓存还原时不重复解析
+ */
+class RuleFileScannerTest {
+    private static final String DIRECTORY = "reactions";
+    private static final Gson GSON = new Gson();
+
+    private FakeResourceManager resources;
+    private CountingParser parser;
+
+    @BeforeEach
+    void setUp() {
+        resources = new FakeResourceManager();
+        resources.put("fire_water", "{\"id\":\"fire_water\"}");
+        resources.put("ice_fire", "{\"id\":\"ice_fire\"}");
+        resources.put("thunder_water", "{\"id\":\"thunder_water\"}");
+        parser = new CountingParser();
+    }
+
+    @Test
+    void initialScanParsesEachFileOnce() {
+        RuleFileScanner.ScanResult<String> scan = RuleFileScanner.scan(resources, DIRECTORY, GSON, parser,
+                Collections.emptyMap());
+
+        assertEquals(List.of("fire_water", "ice_fire", "thunder_water"), scan.rules);
+        assertEquals(3, scan.added);
+        assertEquals(Map.of("fire_water", 1, "ice_fire", 1, "thunder_water", 1), parser.counts());
+    }
+
+    @Test
+    void reloadReusesUnchangedFiles() {
+        RuleFileScanner.ScanResult<String> first = RuleFileScanner.scan(resources, DIRECTORY, GSON, parser,
+                Collections.emptyMap());
+        RuleFileScanner.ScanResult<String> second = RuleFileScanner.scan(resources, DIRECTORY, GSON, parser,
+                first.files);
+
+        assertEquals(first.rules, second.rules);
+        assertEquals(3, second.kept);
+        assertEquals(3, parser.total());
+    }
+
+    @Test
+    void reloadParsesOnlyChangedFiles() {
+        RuleFileScanner.ScanResult<String> first = RuleFileScanner.scan(resources, DIRECTORY, GSON, parser,
+                Collections.emptyMap());
+        resources.put("ice_fire", "{\"id\":\"ice_fire\",\"priority\":1}");
+        RuleFileScanner.ScanResult<String> second = RuleFileScanner.scan(resources, DIRECTORY, GSON, parser,
+                first.files);
+
+        assertEquals(2, second.kept);
+        assertEquals(1, second.changed);
+        assertEquals(Map.of("fire_water", 1, "ice_fire", 2, "thunder_water", 1), parser.counts());
+    }
+
+    @Test
+    void singleFileReloadParsesOnlyThatFile() {
+        RuleFileScanner.ScanResult<String> first = RuleFileScanner.scan(resources, DIRECTORY, GSON, parser,
+                Collections.emptyMap());
+        resources.put("ice_fire", "{\"id\":\"ice_fire\",\"priority\":1}");
+        RuleFileScanner.ScanResult<String> second = RuleFileScanner.scanFile(resources, DIRECTORY,
+                id("ice_fire"), GSON, parser, first.files);
+
+        assertEquals(3, second.rules.size());
+        assertEquals(1, second.changed);
+        assertEquals(Map.of("fire_water", 1, "ice_fire", 2, "thunder_water", 1), parser.counts());
+    }
+
+    @Test
+    void cacheRestoreSkipsParsing() {
+        Map<ResourceLocation, RuleCache.Entry> cached = new HashMap<>();
+        for (String name : List.of("fire_water", "ice_fire", "thunder_water")) {
+            cached.put(id(name), new RuleCache.Entry(resources.hash(name), new byte[0]));
+        }
+        AtomicInteger restores = new AtomicInteger();
+        Function<RuleCache.Entry, String> restorer = entry -> "restored_" + restores.incrementAndGet();
+
+        RuleFileScanner.ScanResult<String> scan = RuleFileScanner.scan(resources, DIRECTORY, GSON, parser,
+                Collections.emptyMap(), cached, restorer);
+
+        assertEquals(3, scan.restored);
+        assertEquals(3, restores.get());
+        assertEquals(0, parser.total());
+    }
+
+    @Test
+    void staleCacheEntryIsParsedOnce() {
+        Map<ResourceLocation, RuleCache.Entry> cached = new HashMap<>();
+        cached.put(id("fire_water"), new RuleCache.Entry(resources.hash("fire_water"), new byte[0]));
+        cached.put(id("ice_fire"), new RuleCache.Entry(resources.hash("ice_fire") + 1, new byte[0]));
+        AtomicInteger restores = new AtomicInteger();
+        Function<RuleCache.Entry, String> restorer = entry -> "restored_" + restores.incrementAndGet();
+
+        RuleFileScanner.ScanResult<String> scan = RuleFileScanner.scan(resources, DIRECTORY, GSON, parser,
+                Collections.emptyMap(), cached, restorer);
+
+        assertEquals(1, scan.restored);
+        assertEquals(2, scan.added);
+        assertEquals(1, restores.get());
+        assertEquals(Map.of("ice_fire", 1, "thunder_water", 1), parser.counts());
+    }
+
+    @Test
+    void failedRestoreFallsBackToParsing() {
+        Map<ResourceLocation, RuleCache.Entry> cached = new HashMap<>();
+        cached.put(id("fire_water"), new RuleCache.Entry(resources.hash("fire_water"), new byte[0]));
+        Function<RuleCache.Entry, String> restorer = entry -> {
+            throw new IllegalStateException("corrupt entry");
+        };
+
+        RuleFileScanner.ScanResult<String> scan = RuleFileScanner.scan(resources, DIRECTORY, GSON, parser,
+                Collections.emptyMap(), cached, restorer);
+
+        assertEquals(0, scan.restored);
+        assertEquals(3, scan.rules.size());
+        assertEquals(Map.of("fire_water", 1, "ice_fire", 1, "thunder_water", 1), parser.counts());
+    }
+
+    private static ResourceLocation id(String name) {
+        return new ResourceLocation("element_endow", name);
+    }
+
+    //按规则ID计数的解析器
+    private static class CountingParser implements Function<JsonElement, String> {
+        private final Map<String, AtomicInteger> counts = new ConcurrentHashMap<>();
+
+        @Override
+        public String apply(JsonElement json) {
+            String id = json.getAsJsonObject().get("id").getAsString();
+            counts.computeIfAbsent(id, key -> new AtomicInteger()).incrementAndGet();
+            return id;
+        }
+
+        Map<String, Integer> counts() {
+            Map<String, Integer> result = new HashMap<>();
+            counts.forEach((id, count) -> result.put(id, count.get()));
+            return result;
+        }
+
+        int total() {
+            return counts.values().stream().mapToInt(AtomicInteger::get).sum();
+        }
+    }
+
+    //内存中的资源管理器，只提供规则目录下的文件
+    private static class FakeResourceManager implements ResourceManager {
+        private final Map<ResourceLocation, byte[]> files = new TreeMap<>();
+
+        void put(String name, String content) {
+            files.put(new ResourceLocation("element_endow", DIRECTORY + "/" + name + ".json"),
+                    content.getBytes(StandardCharsets.UTF_8));
+        }
+
+        long hash(String name) {
+            byte[] content = files.get(new ResourceLocation("element_endow", DIRECTORY + "/" + name + ".json"));
+            return Hashing.murmur3_128().hashBytes(content).asLong();
+        }
+
+        private Resource resource(byte[] content) {
+            IoSupplier<InputStream> stream = () -> new ByteArrayInputStream(content);
+            return new Resource((PackResources) null, stream);
+        }
+
+        @Override
+        public Optional<Resource> getResource(ResourceLocation location) {
+            byte[] content = files.get(location);
+            return content != null ? Optional.of(resource(content)) : Optional.empty();
+        }
+
+        @Override
+        public Map<ResourceLocation, Resource> listResources(String path, Predicate<ResourceLocation> filter) {
+            Map<ResourceLocation, Resource> result = new TreeMap<>();
+            files.forEach((location, content) -> {
+                if (location.getPath().startsWith(path + "/") && filter.test(location)) {
+                    result.put(location, resource(content));
+                }
+            });
+            return result;
+        }
+
+        @Override
+        public Map<ResourceLocation, List<Resource>> listResourceStacks(String path, Predicate<ResourceLocation> filter) {
+            Map<ResourceLocation, List<Resource>> result = new TreeMap<>();
+            listResources(path, filter).forEach((location, resource) -> result.put(location, List.of(resource)));
+            return result;
+        }
+
+        @Override
+        public List<Resource> getResourceStack(ResourceLocation location) {
+            return getResource(location).map(List::of).orElse(List.of());
+        }
+
+        @Override
+        public Set<String> getNamespaces() {
+            return Set.of("element_endow");
+        }
+
+        @Override
+        public Stream<PackResources> listPacks() {
+            return Stream.empty();
+        }
+    }
+}
\ No newline at end of file
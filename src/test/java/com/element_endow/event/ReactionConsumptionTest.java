@@ -0,0 +1,49 @@
+package com.element_endow.event;
+
+import com.element_endow.api.IElementCombinationSystem;
+import com.element_endow.api.ReactionResult;
+import com.element_endow.data.ReactionLoader;
+import com.element_endow.data.RuleRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 反应消耗测试：一次命中触发一个反应时，元素消耗与挂载只计入一次
+ */
+class ReactionConsumptionTest {
+
+    @Test
+    void singleReactionConsumesDeclaredAmountOnce() {
+        ReactionLoader.ElementReaction reaction = new ReactionLoader.ElementReaction();
+        reaction.id = "melt";
+        reaction.elementA = "element_endow:fire";
+        reaction.elementB = "element_endow:ice";
+        reaction.attackEntry = new ReactionLoader.ReactionEntry();
+        reaction.defenseEntry = new ReactionLoader.ReactionEntry();
+        reaction.consumes = Map.of("element_endow:ice", 25.0);
+        reaction.selfConsumes = Map.of("element_endow:fire", 10.0);
+        reaction.mountData = new ReactionLoader.MountData();
+        reaction.mountData.elementId = "element_endow:water";
+        reaction.mountData.amount = 5.0;
+        reaction.mountData.duration = 100;
+        reaction.mountData.probability = 1.0;
+
+        //攻击与防御求值都匹配同一个反应
+        ReactionLoader loader = new ReactionLoader(new RuleRegistry());
+        ReactionResult attackResult = new ReactionResult();
+        ReactionResult defenseResult = new ReactionResult();
+        loader.applyAttackReaction(reaction, attackResult, null, null);
+        loader.applyDefenseReaction(reaction, defenseResult, null, null);
+
+        ReactionResult combined = ElementAttackEventHandler.combineResults(attackResult, defenseResult,
+                new IElementCombinationSystem.CombinationTriggerResult(),
+                new IElementCombinationSystem.CombinationTriggerResult());
+
+        assertEquals(Map.of("element_endow:ice", 25.0), combined.targetConsumption);
+        assertEquals(Map.of("element_endow:fire", 10.0), combined.selfConsumption);
+        assertEquals(1, combined.mountApplications.size());
+    }
+}
\ No newline at end of file